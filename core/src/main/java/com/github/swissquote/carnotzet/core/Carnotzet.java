@@ -1,13 +1,10 @@
 package com.github.swissquote.carnotzet.core;
 
-import static java.nio.file.Files.exists;
-import static java.nio.file.Files.walk;
 import static java.util.stream.Collectors.toList;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -19,13 +16,22 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import com.github.swissquote.carnotzet.core.docker.engine.DockerEngineClient;
 import com.github.swissquote.carnotzet.core.maven.CarnotzetModuleCoordinates;
 import com.github.swissquote.carnotzet.core.maven.MavenDependencyResolver;
 import com.github.swissquote.carnotzet.core.maven.ResourcesManager;
+import com.github.swissquote.carnotzet.core.metrics.LifecycleMetrics;
+import com.github.swissquote.carnotzet.core.metrics.LifecycleRecorder;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import lombok.Getter;
@@ -76,6 +82,19 @@ public class Carnotzet {
 	@Getter
 	private final Boolean supportLegacyDnsNames;
 
+	private final boolean parallelModuleConfiguration;
+
+	private final Executor moduleConfigurationExecutor;
+
+	@Getter
+	private final LifecycleRecorder lifecycleRecorder;
+
+	/**
+	 * null when the docker CLI must be used
+	 */
+	@Getter
+	private final DockerEngineClient dockerEngineClient;
+
 	private static final boolean IS_OS_WINDOWS = isWindows();
 
 	private static boolean isWindows() {
@@ -88,8 +107,25 @@ public class Carnotzet {
 		}
 	}
 
+	/**
+	 * @return null when the docker CLI must be used
+	 */
+	private static DockerEngineClient createDockerEngineClient(Boolean dockerEngineApi) {
+		if (dockerEngineApi == null || !dockerEngineApi) {
+			return null;
+		}
+		try {
+			return DockerEngineClient.fromEnv();
+		}
+		catch (CarnotzetDefinitionException e) {
+			log.warn("The docker engine API cannot be used ({}), falling back to the docker CLI", e.getMessage());
+			return null;
+		}
+	}
+
 	@SuppressFBWarnings("CT_CONSTRUCTOR_THROW")
 	public Carnotzet(CarnotzetConfig config) {
+		long start = System.nanoTime();
 		log.debug("Creating new carnotzet with config [{}]", config);
 		this.config = config;
 
@@ -115,6 +151,26 @@ public class Carnotzet {
 			resourcesPath = Paths.get("/tmp/carnotzet_" + System.nanoTime());
 		}
 		this.resourceManager = new ResourcesManager(resourcesPath, config.getTopLevelModuleResourcesPath());
+		if (config.getParallelResourceExtraction() != null) {
+			this.resourceManager.setParallelExtraction(config.getParallelResourceExtraction());
+		}
+		if (config.getIncrementalResourceExtraction() != null) {
+			this.resourceManager.setIncrementalExtraction(config.getIncrementalResourceExtraction());
+		}
+		if (config.getIncrementalResourceResolution() != null) {
+			this.resourceManager.setIncrementalResolution(config.getIncrementalResourceResolution());
+		}
+		if (config.getVirtualResources() != null) {
+			this.resourceManager.setVirtualResources(config.getVirtualResources());
+		}
+		if (config.getResourcesCopyStrategy() != null) {
+			this.resourceManager.setCopyStrategy(config.getResourcesCopyStrategy());
+		}
+		if (config.getResourcesIncludes() != null || config.getResourcesExcludes() != null) {
+			this.resourceManager.setExtractionFilter(
+					config.getResourcesIncludes() != null ? config.getResourcesIncludes() : CarnotzetConfig.DEFAULT_RESOURCES_INCLUDES,
+					config.getResourcesExcludes() != null ? config.getResourcesExcludes() : CarnotzetConfig.DEFAULT_RESOURCES_EXCLUDES);
+		}
 
 		if (config.getDefaultDockerRegistry() != null) {
 			this.defaultContainerRegistry = config.getDefaultDockerRegistry();
@@ -158,43 +214,146 @@ public class Carnotzet {
 			this.supportLegacyDnsNames = true;
 		}
 
-		resolver = new MavenDependencyResolver(this::getModuleName, resourcesPath.resolve("maven"));
+		boolean resolveDependenciesInProcess = false;
+		if (config.getResolveDependenciesInProcess() != null) {
+			resolveDependenciesInProcess = config.getResolveDependenciesInProcess();
+		}
+
+		boolean cacheDependencyTrees = false;
+		if (config.getCacheDependencyTrees() != null) {
+			cacheDependencyTrees = config.getCacheDependencyTrees();
+		}
+
+		this.parallelModuleConfiguration = config.getParallelModuleConfiguration() != null && config.getParallelModuleConfiguration();
+		if (config.getModuleConfigurationExecutor() != null) {
+			this.moduleConfigurationExecutor = config.getModuleConfigurationExecutor();
+		} else {
+			this.moduleConfigurationExecutor = ForkJoinPool.commonPool();
+		}
+
+		this.dockerEngineClient = createDockerEngineClient(config.getDockerEngineApi());
+
+		List<LifecycleMetrics> metrics = LifecycleRecorder.loadSinks();
+		if (config.getMetricsListener() != null) {
+			metrics.add(new MetricsListenerLifecycleMetrics(config.getMetricsListener()));
+		}
+		this.lifecycleRecorder = new LifecycleRecorder(metrics);
+
+		resolver = new MavenDependencyResolver(this::getModuleName, resourcesPath.resolve("maven"), resolveDependenciesInProcess,
+				cacheDependencyTrees);
+		resolver.setLifecycleRecorder(lifecycleRecorder);
+
+		long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		log.debug("Carnotzet [{}] created in [{}] ms", topLevelModuleName, durationMillis);
+		lifecycleRecorder.completed(CarnotzetMetricsListener.CREATE, Collections.emptyMap(), durationMillis);
 
 	}
 
 	public List<CarnotzetModule> getModules() {
 		if (modules == null) {
-			modules = resolver.resolve(config.getTopLevelModuleId(), failOnDependencyCycle);
-			if (!IS_OS_WINDOWS || !getResourcesFolder().resolve("expanded-jars").toFile().exists()) {
-				log.debug("extracting resources");
-				resourceManager.extractResources(modules);
+			// when called outside of a runtime operation, the metrics of the computation are reported on their own
+			try (LifecycleRecorder.Operation ignored = lifecycleRecorder.operation(getResourcesFolder())) {
+				computeModules();
 			}
-			log.debug("computing service ids");
-			modules = computeServiceIds(modules);
-			if (!IS_OS_WINDOWS || !getResourcesFolder().resolve("resolved").toFile().exists()) {
-				resourceManager.resolveResources(modules);
+		}
+		return modules;
+	}
+
+	private void computeModules() {
+		long start = System.nanoTime();
+		modules = resolver.resolve(config.getTopLevelModuleId(), failOnDependencyCycle);
+		start = phaseCompleted(CarnotzetMetricsListener.RESOLVE, start);
+		if (mustProcessResources(IS_OS_WINDOWS, resourceManager.isVirtualResources(), getResourcesFolder().resolve("expanded-jars"))) {
+			log.debug("extracting resources");
+			resourceManager.extractResources(modules);
+		}
+		start = phaseCompleted(CarnotzetMetricsListener.EXTRACT, start);
+		log.debug("computing service ids");
+		modules = computeServiceIds(modules);
+		long end = System.nanoTime();
+		// computing service ids is part of the configuration of the modules, resources are resolved in between
+		long configureNanos = end - start;
+		start = end;
+		// mounted files of virtual resources are only rewritten when they changed
+		if (mustProcessResources(IS_OS_WINDOWS, resourceManager.isVirtualResources(), getResourcesFolder().resolve("resolved"))) {
+			resourceManager.resolveResources(modules);
+		}
+		start = phaseCompleted(CarnotzetMetricsListener.RESOLVE_RESOURCES, start);
+		log.debug("configuring modules");
+		modules = configureModules(modules);
+		end = System.nanoTime();
+		configureNanos += end - start;
+		start = end;
+		reportPhase(CarnotzetMetricsListener.CONFIGURE, TimeUnit.NANOSECONDS.toMillis(configureNanos));
+
+		if (config.getExtensions() != null) {
+			for (CarnotzetExtension feature : config.getExtensions()) {
+				log.debug("Extension [{}] enabled", feature.getClass().getSimpleName());
+				modules = feature.apply(this);
 			}
-			log.debug("configuring modules");
-			modules = configureModules(modules);
+		}
+		phaseCompleted(CarnotzetMetricsListener.EXTENSIONS, start);
+		assertNoDuplicateArtifactId(modules);
+		modules = selectModulesForUniqueServiceId(modules);
+	}
 
-			if (config.getExtensions() != null) {
-				for (CarnotzetExtension feature : config.getExtensions()) {
-					log.debug("Extension [{}] enabled", feature.getClass().getSimpleName());
-					modules = feature.apply(this);
+	/**
+	 * On windows, resources left on disk by a previous run are reused. Virtual resources only live in memory, they must always be
+	 * extracted and resolved, even when a previous run (without virtual resources) left its output on disk.
+	 *
+	 * @param output the folder produced by the step
+	 */
+	// package-private for tests
+	static boolean mustProcessResources(boolean windows, boolean virtualResources, Path output) {
+		return virtualResources || !windows || !output.toFile().exists();
+	}
+
+	private List<CarnotzetModule> computeServiceIds(List<CarnotzetModule> modules) {
+		return configureEach(modules, this::computeServiceId);
+	}
+
+	/**
+	 * Applies a function to each module, concurrently if parallelModuleConfiguration is enabled. The order of the modules is kept.
+	 */
+	private List<CarnotzetModule> configureEach(List<CarnotzetModule> modules, Function<CarnotzetModule, CarnotzetModule> function) {
+		if (!parallelModuleConfiguration || modules.size() < 2) {
+			return modules.stream().map(function).collect(toList());
+		}
+		List<CompletableFuture<CarnotzetModule>> futures = modules.stream()
+				.map(module -> CompletableFuture.supplyAsync(() -> function.apply(module), moduleConfigurationExecutor))
+				.collect(toList());
+		List<CarnotzetModule> result = new ArrayList<>(futures.size());
+		for (CompletableFuture<CarnotzetModule> future : futures) {
+			try {
+				result.add(future.join());
+			}
+			catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
 				}
+				throw e;
 			}
-			assertNoDuplicateArtifactId(modules);
-			modules = selectModulesForUniqueServiceId(modules);
 		}
-		return modules;
+		return result;
 	}
 
-	private List<CarnotzetModule> computeServiceIds(List<CarnotzetModule> modules) {
-		return modules.stream().map(this::computeServiceId).collect(toList());
+	/**
+	 * @return the end of the phase, which is the start of the next one
+	 */
+	private long phaseCompleted(String phase, long start) {
+		long end = System.nanoTime();
+		reportPhase(phase, TimeUnit.NANOSECONDS.toMillis(end - start));
+		return end;
+	}
+
+	private void reportPhase(String phase, long durationMillis) {
+		log.debug("Phase [{}] completed in [{}] ms", phase, durationMillis);
+		lifecycleRecorder.completed(phase, Collections.emptyMap(), durationMillis);
 	}
 
 	private CarnotzetModule computeServiceId(CarnotzetModule module) {
-		Map<String, String> ownProperties = readPropertiesFiles(resourceManager.getOwnModuleResourcesPath(module));
+		Map<String, String> ownProperties = readPropertiesFiles(module, false);
 		String serviceId = module.getName();
 		if (ownProperties.containsKey("service.id") && !ownProperties.get("service.id").isEmpty()) {
 			serviceId = ownProperties.get("service.id");
@@ -244,12 +403,12 @@ public class Carnotzet {
 	}
 
 	private List<CarnotzetModule> configureModules(List<CarnotzetModule> modules) {
-		return modules.stream().map(this::configureModule).collect(toList());
+		return configureEach(modules, this::configureModule);
 	}
 
 	private CarnotzetModule configureModule(CarnotzetModule module) {
 		CarnotzetModule.CarnotzetModuleBuilder result = module.toBuilder();
-		Map<String, String> resolvedProperties = readPropertiesFiles(getModuleResourcesPath(module));
+		Map<String, String> resolvedProperties = readPropertiesFiles(module, true);
 		result.properties(resolvedProperties);
 
 		result.imageName(computeImageName(module, resolvedProperties));
@@ -273,19 +432,20 @@ public class Carnotzet {
 		return result.build();
 	}
 
-	private Map<String, String> readPropertiesFiles(Path moduleFilesPath) {
+	private Map<String, String> readPropertiesFiles(CarnotzetModule module, boolean resolved) {
 		Map<String, String> result = new HashMap<>();
 		for (String fileName : propFileNames) {
-			Path filePath = moduleFilesPath.resolve(fileName);
-			if (filePath.toFile().exists()) {
-				Properties props = new Properties();
-				try (InputStream in = Files.newInputStream(filePath)) {
+			try (InputStream in = resolved
+					? resourceManager.openResolvedResource(module, fileName)
+					: resourceManager.openOwnResource(module, fileName)) {
+				if (in != null) {
+					Properties props = new Properties();
 					props.load(in);
 					result.putAll((Map) props);
 				}
-				catch (IOException e) {
-					throw new UncheckedIOException(e);
-				}
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
 		}
 		return result;
@@ -331,12 +491,12 @@ public class Carnotzet {
 
 	private Set<String> computeEnvFiles(CarnotzetModule module) {
 		Set<String> envFiles = new HashSet<>();
-		Path envFilesRoot = getModuleResourcesPath(module).resolve("env");
-		if (!exists(envFilesRoot)) {
-			return Collections.emptySet();
-		}
 		try {
-			envFiles.addAll(walk(envFilesRoot).filter(p -> p.toFile().isFile()).map(Path::toString).collect(toList()));
+			List<Path> files = resourceManager.listResolvedFiles(module, "env");
+			if (files == null) {
+				return Collections.emptySet();
+			}
+			envFiles.addAll(files.stream().map(Path::toString).collect(toList()));
 		}
 		catch (IOException e) {
 			log.error(String.format("Error while reading env files for module: %s", module.getName()), e);
@@ -348,15 +508,13 @@ public class Carnotzet {
 	private Set<String> computeFileVolumes(CarnotzetModule module) {
 		Map<String, String> result = new HashMap<>();
 		Path toMount = getModuleResourcesPath(module).resolve("files");
-		if (!Files.exists(toMount)) {
-			return Collections.emptySet();
-		}
 		try {
-			Files.walk(toMount).forEach((p) -> {
-				if (p.toFile().isFile()) {
-					result.put(p.toAbsolutePath().toString(), "/" + toMount.relativize(p).toString().replaceAll("\\\\", "/"));
-				}
-			});
+			List<Path> files = resourceManager.listResolvedFiles(module, "files");
+			if (files == null) {
+				return Collections.emptySet();
+			}
+			files.forEach((p) -> result.put(p.toAbsolutePath().toString(),
+					"/" + toMount.relativize(p).toString().replaceAll("\\\\", "/")));
 		}
 		catch (IOException e) {
 			log.error(String.format("Error while reading files to mount for module:%s", module.getName()), e);
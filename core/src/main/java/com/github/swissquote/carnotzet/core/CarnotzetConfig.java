@@ -1,10 +1,13 @@
 package com.github.swissquote.carnotzet.core;
 
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import com.github.swissquote.carnotzet.core.maven.CarnotzetModuleCoordinates;
+import com.github.swissquote.carnotzet.core.maven.ResourcesCopyStrategy;
 
 import lombok.Builder;
 import lombok.NonNull;
@@ -19,6 +22,8 @@ public class CarnotzetConfig {
 	public final static String DEFAULT_DOCKER_REGISTRY = "docker.io";
 	public final static String DEFAULT_EXTERNAL_NETWORK_NAME = "docker-compose_jenkins-build-bridge";
 	public final static List<String> DEFAULT_PROP_FILE_NAMES = Collections.singletonList("carnotzet.properties");
+	public final static List<String> DEFAULT_RESOURCES_INCLUDES = Collections.singletonList("**");
+	public final static List<String> DEFAULT_RESOURCES_EXCLUDES = Collections.unmodifiableList(Arrays.asList("META-INF/**", "**/*.class"));
 
 	@NonNull
 	private final CarnotzetModuleCoordinates topLevelModuleId;
@@ -98,4 +103,94 @@ public class CarnotzetConfig {
 	 */
 	private final Boolean supportLegacyDnsNames;
 
+	/**
+	 * Resolve the maven dependency tree in-process using the Maven Resolver API, instead of forking "mvn dependency:tree".<br>
+	 * If the in-process resolution fails, carnotzet falls back to the forked maven build.<br>
+	 * defaults to false
+	 */
+	private final Boolean resolveDependenciesInProcess;
+
+	/**
+	 * Persist resolved dependency trees in ~/.carnotzet/dependency-trees, to avoid resolving them again in later runs.<br>
+	 * A cached tree is discarded as soon as one of the pom files (with their parents and imported BOMs, and the maven-metadata
+	 * files for SNAPSHOTs) it was computed from changes in the local repository.<br>
+	 * defaults to false
+	 */
+	private final Boolean cacheDependencyTrees;
+
+	/**
+	 * Extract module jars concurrently, using up to one thread per available processor.<br>
+	 * defaults to false
+	 */
+	private final Boolean parallelResourceExtraction;
+
+	/**
+	 * Only extract module jars that changed since the previous extraction in the same resources path.
+	 * The top level module is always extracted again, to pick up changes in its resources folder.<br>
+	 * defaults to false
+	 */
+	private final Boolean incrementalResourceExtraction;
+
+	/**
+	 * Only resolve again the configuration of services whose inputs (files copied, merged or overridden in their resolved folder)
+	 * changed since the previous resolution in the same resources path. A service is also resolved again when the files or env
+	 * directories of its resolved folder were modified, for example by its containers. Works best with
+	 * incrementalResourceExtraction, without it the jars are extracted again but the resolved folders are kept.<br>
+	 * defaults to false
+	 */
+	private final Boolean incrementalResourceResolution;
+
+	/**
+	 * How files of the expanded jars are placed in the resolved folders : COPY, HARDLINK or SYMLINK (see ResourcesCopyStrategy).
+	 * Falls back to the next strategy when the file system does not support links.<br>
+	 * defaults to COPY
+	 */
+	private final ResourcesCopyStrategy resourcesCopyStrategy;
+
+	/**
+	 * Globs of the entries of module jars to extract, matched against the entry names (** matches any number of directories).<br>
+	 * defaults to DEFAULT_RESOURCES_INCLUDES
+	 */
+	private final List<String> resourcesIncludes;
+
+	/**
+	 * Globs of the entries of module jars not to extract, they take precedence over the includes.<br>
+	 * defaults to DEFAULT_RESOURCES_EXCLUDES
+	 */
+	private final List<String> resourcesExcludes;
+
+	/**
+	 * Resolve the resources of the modules in memory instead of extracting the jars and resolving them on disk.
+	 * Only the files, env and welcome directories of the resolved folders are written to disk, other files (such as
+	 * carnotzet.properties) are only available through the module properties.<br>
+	 * defaults to false
+	 */
+	private final Boolean virtualResources;
+
+	/**
+	 * Compute the service id and the configuration of the modules concurrently, the order of the modules is preserved.<br>
+	 * defaults to false
+	 */
+	private final Boolean parallelModuleConfiguration;
+
+	/**
+	 * Executor used when parallelModuleConfiguration is enabled.<br>
+	 * defaults to the common fork-join pool
+	 */
+	private final Executor moduleConfigurationExecutor;
+
+	/**
+	 * Notified of the duration of each phase of the lifecycle, in addition to the LifecycleMetrics found on the classpath.<br>
+	 * defaults to none
+	 */
+	private final CarnotzetMetricsListener metricsListener;
+
+	/**
+	 * Query the docker daemon through its REST API (on DOCKER_HOST) instead of forking the docker CLI, to list containers, inspect
+	 * images, exec commands and connect networks. Starting, stopping and pulling still use the CLI.
+	 * A unix socket DOCKER_HOST requires java 16 or later, the CLI is used (with a warning) when the daemon cannot be reached this way.<br>
+	 * defaults to false
+	 */
+	private final Boolean dockerEngineApi;
+
 }
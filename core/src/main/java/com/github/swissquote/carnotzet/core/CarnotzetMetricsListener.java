@@ -0,0 +1,26 @@
+package com.github.swissquote.carnotzet.core;
+
+/**
+ * Receives the duration of each completed phase of the lifecycle of an environment : the computation of the modules (see
+ * Carnotzet.getModules()) and the phases of the runtime, such as starting a service.<br>
+ * This is a simpler alternative to the LifecycleMetrics SPI, it receives the same END events without their tags.
+ */
+public interface CarnotzetMetricsListener {
+
+	/**
+	 * Construction of the Carnotzet instance, reported along with the first lifecycle operation
+	 */
+	String CREATE = "create";
+	/**
+	 * Lookup of the maven home, only done when maven must be forked
+	 */
+	String MAVEN_HOME = "maven-home";
+	String RESOLVE = "resolve";
+	String EXTRACT = "extract";
+	String RESOLVE_RESOURCES = "resolve-resources";
+	String CONFIGURE = "configure";
+	String EXTENSIONS = "extensions";
+
+	void phaseCompleted(String phase, long durationMillis);
+
+}
@@ -43,6 +43,9 @@ public class CarnotzetModule {
 	private final Path jarPath;
 	@Builder.Default
 	private final Integer replicas = 1;
+	// names of the modules this module directly depends on
+	@Builder.Default
+	private final Set<String> dependencies = new HashSet<>();
 
 	public String getShortImageName() {
 		String withoutHost = imageName.replaceFirst(".*/", "");
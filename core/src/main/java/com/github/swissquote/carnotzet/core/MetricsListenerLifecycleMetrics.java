@@ -0,0 +1,24 @@
+package com.github.swissquote.carnotzet.core;
+
+import com.github.swissquote.carnotzet.core.metrics.LifecycleEvent;
+import com.github.swissquote.carnotzet.core.metrics.LifecycleMetrics;
+
+/**
+ * Reports the completed phases of the lifecycle to the CarnotzetMetricsListener of the configuration.
+ */
+class MetricsListenerLifecycleMetrics implements LifecycleMetrics {
+
+	private final CarnotzetMetricsListener listener;
+
+	MetricsListenerLifecycleMetrics(CarnotzetMetricsListener listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public void onEvent(LifecycleEvent event) {
+		if (event.getType() == LifecycleEvent.Type.END) {
+			listener.phaseCompleted(event.getPhase(), event.getDurationMillis());
+		}
+	}
+
+}
@@ -0,0 +1,43 @@
+package com.github.swissquote.carnotzet.core.docker.engine;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.github.swissquote.carnotzet.core.runtime.api.ExecResult;
+
+/**
+ * Queries the docker daemon through its REST API instead of forking the docker CLI.<br>
+ * Only the read and exec operations used by carnotzet are covered, everything else still goes through the CLI.
+ */
+public interface DockerEngineClient {
+
+	/**
+	 * @param all    include stopped containers
+	 * @param labels only return the containers having all these labels with these values
+	 */
+	List<EngineContainer> listContainers(boolean all, Map<String, String> labels);
+
+	/**
+	 * @return null if the image is not present on the docker host
+	 */
+	EngineImage inspectImage(String image);
+
+	/**
+	 * Runs a command in a running container and waits for it to finish.
+	 *
+	 * @return the exit code and the standard output of the command
+	 */
+	ExecResult exec(String containerId, long timeout, TimeUnit timeoutUnit, String... command);
+
+	void connectToNetwork(String network, String containerId);
+
+	/**
+	 * Client of the daemon designated by the DOCKER_HOST environment variable (unix:///var/run/docker.sock by default)
+	 *
+	 * @throws com.github.swissquote.carnotzet.core.CarnotzetDefinitionException if this daemon cannot be reached with this JVM
+	 */
+	static DockerEngineClient fromEnv() {
+		return new HttpDockerEngineClient(DockerEngineTransport.fromEnv());
+	}
+}
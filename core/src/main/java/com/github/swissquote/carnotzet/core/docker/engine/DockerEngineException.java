@@ -0,0 +1,19 @@
+package com.github.swissquote.carnotzet.core.docker.engine;
+
+import lombok.Getter;
+
+/**
+ * The docker daemon answered with an error status.
+ */
+public class DockerEngineException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	@Getter
+	private final int status;
+
+	public DockerEngineException(int status, String message) {
+		super("Docker engine responded with status " + status + " : " + message);
+		this.status = status;
+	}
+}
@@ -0,0 +1,98 @@
+package com.github.swissquote.carnotzet.core.docker.engine;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.URI;
+import java.nio.channels.SocketChannel;
+
+import com.github.swissquote.carnotzet.core.CarnotzetDefinitionException;
+
+/**
+ * Opens connections to the docker daemon.
+ */
+@FunctionalInterface
+public interface DockerEngineTransport {
+
+	String DEFAULT_DOCKER_HOST = "unix:///var/run/docker.sock";
+
+	/**
+	 * @return a connected channel in blocking mode, owned by the caller
+	 */
+	SocketChannel connect() throws IOException;
+
+	static DockerEngineTransport tcp(String host, int port) {
+		return () -> SocketChannel.open(new InetSocketAddress(host, port));
+	}
+
+	/**
+	 * Unix domain sockets are only available in SocketChannel from java 16, they are looked up reflectively to keep java 8 compatibility.
+	 */
+	static DockerEngineTransport unix(String path) {
+		return () -> {
+			try {
+				SocketAddress address = (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress")
+						.getMethod("of", String.class)
+						.invoke(null, path);
+				ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+				SocketChannel channel = (SocketChannel) SocketChannel.class.getMethod("open", ProtocolFamily.class).invoke(null, unix);
+				try {
+					channel.connect(address);
+				}
+				catch (IOException | RuntimeException e) {
+					channel.close();
+					throw e;
+				}
+				return channel;
+			}
+			catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException | IllegalArgumentException e) {
+				throw new CarnotzetDefinitionException("Connecting to the docker daemon through a unix socket requires java 16 or later", e);
+			}
+			catch (InvocationTargetException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				throw new IOException("Cannot connect to unix socket [" + path + "]", cause);
+			}
+		};
+	}
+
+	static boolean isUnixSocketSupported() {
+		try {
+			Class.forName("java.net.UnixDomainSocketAddress");
+			return true;
+		}
+		catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Transport to the daemon designated by the DOCKER_HOST environment variable, only unix and plain tcp hosts are supported.
+	 */
+	static DockerEngineTransport fromEnv() {
+		String dockerHost = System.getenv("DOCKER_HOST");
+		if (dockerHost == null || dockerHost.trim().isEmpty()) {
+			dockerHost = DEFAULT_DOCKER_HOST;
+		}
+		URI uri = URI.create(dockerHost.trim());
+		if ("unix".equals(uri.getScheme())) {
+			if (!isUnixSocketSupported()) {
+				throw new CarnotzetDefinitionException("Connecting to the docker daemon through a unix socket requires java 16 or later");
+			}
+			return unix(uri.getPath());
+		}
+		if ("tcp".equals(uri.getScheme())) {
+			String tlsVerify = System.getenv("DOCKER_TLS_VERIFY");
+			if (tlsVerify != null && !tlsVerify.isEmpty()) {
+				throw new CarnotzetDefinitionException("TLS connections to the docker daemon are not supported by the docker engine client");
+			}
+			return tcp(uri.getHost(), uri.getPort() == -1 ? 2375 : uri.getPort());
+		}
+		throw new CarnotzetDefinitionException("Unsupported DOCKER_HOST [" + dockerHost + "] for the docker engine client");
+	}
+}
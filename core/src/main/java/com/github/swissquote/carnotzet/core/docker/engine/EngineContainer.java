@@ -0,0 +1,48 @@
+package com.github.swissquote.carnotzet.core.docker.engine;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Data;
+
+/**
+ * Container as listed by GET /containers/json
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class EngineContainer {
+
+	@JsonProperty("Id")
+	private String id;
+
+	@JsonProperty("Names")
+	private List<String> names;
+
+	@JsonProperty("Labels")
+	private Map<String, String> labels;
+
+	@JsonProperty("State")
+	private String state;
+
+	@JsonProperty("NetworkSettings")
+	private NetworkSettings networkSettings;
+
+	@Data
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public static class NetworkSettings {
+
+		@JsonProperty("Networks")
+		private Map<String, Network> networks;
+	}
+
+	@Data
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public static class Network {
+
+		@JsonProperty("IPAddress")
+		private String ipAddress;
+	}
+}
@@ -0,0 +1,25 @@
+package com.github.swissquote.carnotzet.core.docker.engine;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.github.swissquote.carnotzet.core.docker.registry.ContainerImageConfig;
+
+import lombok.Data;
+
+/**
+ * Image as returned by GET /images/{name}/json
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class EngineImage {
+
+	@JsonProperty("Id")
+	private String id;
+
+	// ISO-8601, same format as docker inspect -f {{.Created}}
+	@JsonProperty("Created")
+	private String created;
+
+	@JsonProperty("Config")
+	private ContainerImageConfig config;
+}
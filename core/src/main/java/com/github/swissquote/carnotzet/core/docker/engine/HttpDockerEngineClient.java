@@ -0,0 +1,329 @@
+package com.github.swissquote.carnotzet.core.docker.engine;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.SocketTimeoutException;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.swissquote.carnotzet.core.runtime.api.ExecResult;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Minimal HTTP/1.1 client of the Docker Engine API, one connection per request.
+ */
+@Slf4j
+public class HttpDockerEngineClient implements DockerEngineClient {
+
+	private static final ScheduledExecutorService TIMEOUTS = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "carnotzet-docker-engine-timeouts");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private static final int STDOUT = 1;
+
+	private final DockerEngineTransport transport;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	public HttpDockerEngineClient(DockerEngineTransport transport) {
+		this.transport = transport;
+	}
+
+	@Override
+	public List<EngineContainer> listContainers(boolean all, Map<String, String> labels) {
+		StringBuilder path = new StringBuilder("/containers/json?all=").append(all);
+		if (!labels.isEmpty()) {
+			List<String> labelFilters = new ArrayList<>();
+			labels.forEach((k, v) -> labelFilters.add(k + "=" + v));
+			path.append("&filters=").append(urlEncode(toJson(Collections.singletonMap("label", labelFilters))));
+		}
+		Response response = send("GET", path.toString(), null, 0);
+		try {
+			return objectMapper.readValue(response.body,
+					objectMapper.getTypeFactory().constructCollectionType(List.class, EngineContainer.class));
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Cannot parse the list of containers", e);
+		}
+	}
+
+	@Override
+	public EngineImage inspectImage(String image) {
+		Response response = send("GET", "/images/" + image + "/json", null, 0, 404);
+		if (response.status == 404) {
+			return null;
+		}
+		try {
+			return objectMapper.readValue(response.body, EngineImage.class);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Cannot parse the description of image [" + image + "]", e);
+		}
+	}
+
+	@Override
+	public ExecResult exec(String containerId, long timeout, TimeUnit timeoutUnit, String... command) {
+		long deadline = System.nanoTime() + timeoutUnit.toNanos(timeout);
+
+		Map<String, Object> create = new LinkedHashMap<>();
+		create.put("AttachStdout", true);
+		create.put("AttachStderr", false);
+		create.put("Cmd", Arrays.asList(command));
+		String execId = readTree(send("POST", "/containers/" + containerId + "/exec", create, remainingMillis(deadline))).path("Id").asText();
+
+		Map<String, Object> start = new LinkedHashMap<>();
+		start.put("Detach", false);
+		start.put("Tty", false);
+		byte[] output = demultiplex(send("POST", "/exec/" + execId + "/start", start, remainingMillis(deadline)).body);
+
+		int exitCode = readTree(send("GET", "/exec/" + execId + "/json", null, remainingMillis(deadline))).path("ExitCode").asInt();
+		return new ExecResult(exitCode, new String(output, StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void connectToNetwork(String network, String containerId) {
+		send("POST", "/networks/" + network + "/connect", Collections.singletonMap("Container", containerId), 0);
+	}
+
+	private static long remainingMillis(long deadline) {
+		long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+		if (remaining <= 0) {
+			throw new UncheckedIOException(new SocketTimeoutException("Timed out waiting for the docker daemon"));
+		}
+		return remaining;
+	}
+
+	/**
+	 * @param timeoutMillis the connection is closed when it expires, 0 to wait forever
+	 * @param accepted      error statuses returned to the caller instead of throwing a DockerEngineException
+	 */
+	private Response send(String method, String path, Object body, long timeoutMillis, int... accepted) {
+		byte[] payload = body == null ? null : toJson(body).getBytes(StandardCharsets.UTF_8);
+		Response response;
+		try (SocketChannel channel = transport.connect()) {
+			ScheduledFuture<?> timeout = timeoutMillis > 0 ? TIMEOUTS.schedule(() -> closeQuietly(channel), timeoutMillis, TimeUnit.MILLISECONDS) : null;
+			try {
+				writeRequest(Channels.newOutputStream(channel), method, path, payload);
+				response = readResponse(new BufferedInputStream(Channels.newInputStream(channel)));
+			}
+			catch (IOException e) {
+				if (timeout != null && timeout.isDone()) {
+					throw new SocketTimeoutException("Timed out waiting for the docker daemon on " + method + " " + path);
+				}
+				throw e;
+			}
+			finally {
+				if (timeout != null) {
+					timeout.cancel(false);
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Docker engine request " + method + " " + path + " failed", e);
+		}
+		if (response.status >= 400 && Arrays.stream(accepted).noneMatch(s -> s == response.status)) {
+			throw new DockerEngineException(response.status, errorMessage(response));
+		}
+		return response;
+	}
+
+	private static void writeRequest(OutputStream out, String method, String path, byte[] payload) throws IOException {
+		StringBuilder head = new StringBuilder()
+				.append(method).append(' ').append(path).append(" HTTP/1.1\r\n")
+				.append("Host: docker\r\n")
+				.append("Connection: close\r\n");
+		if (payload != null) {
+			head.append("Content-Type: application/json\r\n");
+			head.append("Content-Length: ").append(payload.length).append("\r\n");
+		}
+		head.append("\r\n");
+		out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+		if (payload != null) {
+			out.write(payload);
+		}
+		out.flush();
+	}
+
+	private static Response readResponse(InputStream in) throws IOException {
+		String statusLine = readLine(in);
+		String[] parts = statusLine.split(" ", 3);
+		if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+			throw new IOException("Invalid HTTP status line [" + statusLine + "]");
+		}
+		int status = Integer.parseInt(parts[1]);
+		Map<String, String> headers = new HashMap<>();
+		for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+			int colon = line.indexOf(':');
+			if (colon > 0) {
+				headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+			}
+		}
+		byte[] body;
+		String contentLength = headers.get("content-length");
+		if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+			body = readChunked(in);
+		} else if (contentLength != null) {
+			body = readFully(in, Integer.parseInt(contentLength));
+		} else {
+			// connection: close, the body ends with the stream
+			body = readToEnd(in);
+		}
+		return new Response(status, body);
+	}
+
+	private static byte[] readChunked(InputStream in) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		while (true) {
+			String sizeLine = readLine(in);
+			int semicolon = sizeLine.indexOf(';');
+			int size = Integer.parseInt((semicolon >= 0 ? sizeLine.substring(0, semicolon) : sizeLine).trim(), 16);
+			if (size == 0) {
+				// skip trailers
+				String trailer;
+				do {
+					trailer = readLine(in);
+				} while (!trailer.isEmpty());
+				return body.toByteArray();
+			}
+			body.write(readFully(in, size));
+			readLine(in);
+		}
+	}
+
+	private static byte[] readFully(InputStream in, int length) throws IOException {
+		byte[] result = new byte[length];
+		int offset = 0;
+		while (offset < length) {
+			int read = in.read(result, offset, length - offset);
+			if (read < 0) {
+				throw new EOFException("Unexpected end of response");
+			}
+			offset += read;
+		}
+		return result;
+	}
+
+	private static byte[] readToEnd(InputStream in) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			body.write(buffer, 0, read);
+		}
+		return body.toByteArray();
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) != '\n') {
+			if (b < 0) {
+				throw new EOFException("Unexpected end of response");
+			}
+			line.write(b);
+		}
+		String result = new String(line.toByteArray(), StandardCharsets.ISO_8859_1);
+		return result.endsWith("\r") ? result.substring(0, result.length() - 1) : result;
+	}
+
+	/**
+	 * Exec output without tty is multiplexed : each frame has an 8 bytes header (stream type, 3 unused bytes, big endian size).
+	 */
+	private static byte[] demultiplex(byte[] raw) {
+		ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+		int i = 0;
+		while (i + 8 <= raw.length) {
+			int type = raw[i];
+			int size = (raw[i + 4] & 0xff) << 24 | (raw[i + 5] & 0xff) << 16 | (raw[i + 6] & 0xff) << 8 | raw[i + 7] & 0xff;
+			int start = i + 8;
+			int end = Math.min(raw.length, start + size);
+			if (type == STDOUT) {
+				stdout.write(raw, start, end - start);
+			}
+			i = end;
+		}
+		return stdout.toByteArray();
+	}
+
+	private String errorMessage(Response response) {
+		String body = new String(response.body, StandardCharsets.UTF_8);
+		try {
+			JsonNode message = objectMapper.readTree(body).get("message");
+			return message != null ? message.asText() : body;
+		}
+		catch (IOException e) {
+			return body;
+		}
+	}
+
+	private JsonNode readTree(Response response) {
+		try {
+			return objectMapper.readTree(response.body);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Cannot parse docker engine response", e);
+		}
+	}
+
+	private String toJson(Object value) {
+		try {
+			return objectMapper.writeValueAsString(value);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static String urlEncode(String value) {
+		try {
+			return URLEncoder.encode(value, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void closeQuietly(SocketChannel channel) {
+		try {
+			channel.close();
+		}
+		catch (IOException e) {
+			log.debug("Failed to close docker engine connection", e);
+		}
+	}
+
+	private static final class Response {
+		private final int status;
+		private final byte[] body;
+
+		Response(int status, byte[] body) {
+			this.status = status;
+			this.body = body;
+		}
+	}
+}
@@ -1,19 +1,9 @@
 package com.github.swissquote.carnotzet.core.docker.registry;
 
-import static java.util.stream.Collectors.joining;
-
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
-import java.net.Proxy;
-import java.net.ProxySelector;
-import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
@@ -25,11 +15,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.github.swissquote.carnotzet.core.CarnotzetDefinitionException;
 import com.github.swissquote.carnotzet.core.CarnotzetModule;
+import com.github.swissquote.carnotzet.core.docker.engine.DockerEngineClient;
+import com.github.swissquote.carnotzet.core.docker.engine.EngineImage;
 import com.github.swissquote.carnotzet.core.runtime.DefaultCommandRunner;
 import com.github.swissquote.carnotzet.core.runtime.api.PullPolicy;
 import com.github.swissquote.carnotzet.core.util.FileSystemCache;
 
-import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -38,7 +29,12 @@ import lombok.extern.slf4j.Slf4j;
 public class DockerRegistry {
 
 	public static final DockerRegistry INSTANCE = new DockerRegistry();
+	/**
+	 * @deprecated image manifests are now cached in CARNOTZET_IMAGE_MANIFESTS_CACHE_DIRECTORY, this file is no longer used
+	 */
+	@Deprecated
 	public static final String CARNOTZET_IMAGE_MANIFESTS_CACHE_FILENAME = ".carnotzet_image_manifests.cache";
+	public static final String CARNOTZET_IMAGE_MANIFESTS_CACHE_DIRECTORY = ".carnotzet/image-manifests";
 	public static final String CARNOTZET_MANIFEST_DOWNLOAD_RETRIES = "manifest.download.retries.number.max";
 	public static final String CARNOTZET_MANIFEST_RETRY_DELAY_SECONDS = "manifest.download.retries.delay.secs";
 
@@ -47,22 +43,52 @@ public class DockerRegistry {
 	private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
 
 	private final DockerConfig config = DockerConfig.fromEnv();
+	private final RegistryHttpClient httpClient = new RegistryHttpClient();
 	private final FileSystemCache<ContainerImageV1> imageManifestCache =
-			new FileSystemCache<ContainerImageV1>(Paths.get(System.getProperty("user.home"), CARNOTZET_IMAGE_MANIFESTS_CACHE_FILENAME),
+			new FileSystemCache<ContainerImageV1>(Paths.get(System.getProperty("user.home"), CARNOTZET_IMAGE_MANIFESTS_CACHE_DIRECTORY),
 					ContainerImageV1.class);
 
 	public static void pullImage(CarnotzetModule module, PullPolicy policy) {
+		pullImage(module, policy, null);
+	}
+
+	/**
+	 * @param engine used to inspect the local image, null to use the docker CLI
+	 */
+	public static void pullImage(CarnotzetModule module, PullPolicy policy, DockerEngineClient engine) {
+		try {
+			pullImageIfNeeded(module, policy, engine);
+		}
+		catch (CarnotzetDefinitionException e) {
+			log.warn(e.getMessage());
+		}
+	}
+
+	/**
+	 * @return true if the image was pulled, false if the policy decided it was not needed
+	 * @throws CarnotzetDefinitionException if docker pull failed
+	 */
+	public static boolean pullImageIfNeeded(CarnotzetModule module, PullPolicy policy) {
+		return pullImageIfNeeded(module, policy, null);
+	}
+
+	/**
+	 * @param engine used to inspect the local image, null to use the docker CLI
+	 * @return true if the image was pulled, false if the policy decided it was not needed
+	 * @throws CarnotzetDefinitionException if docker pull failed
+	 */
+	public static boolean pullImageIfNeeded(CarnotzetModule module, PullPolicy policy, DockerEngineClient engine) {
 
 		String imageName = module.getImageName();
 		if (imageName == null) {
 			// This module has no image. There is nothing to pull in any case
-			return;
+			return false;
 		}
 
 		// fetch metadata if the policy needs it to take its decision
 		Instant localTimestamp = null;
 		if (policy.requiresLocalMetadata()) {
-			localTimestamp = getLocalImageTimestamp(imageName);
+			localTimestamp = getLocalImageTimestamp(imageName, engine);
 		}
 
 		ImageMetaData registryImageMetadata = null;
@@ -71,9 +97,14 @@ public class DockerRegistry {
 		}
 
 		// pull if needed
-		if (policy.shouldPullImage(module, localTimestamp, registryImageMetadata)) {
-			DefaultCommandRunner.INSTANCE.runCommand("docker", "pull", imageName);
+		if (!policy.shouldPullImage(module, localTimestamp, registryImageMetadata)) {
+			return false;
 		}
+		int exitCode = DefaultCommandRunner.INSTANCE.runCommand("docker", "pull", imageName);
+		if (exitCode != 0) {
+			throw new CarnotzetDefinitionException("docker pull [" + imageName + "] exited with [" + exitCode + "]");
+		}
+		return true;
 	}
 
 	// Return null if the image is not found on the remote registry
@@ -89,10 +120,19 @@ public class DockerRegistry {
 	}
 
 	// returns null if the image doesn't exist on the docker host
-	private static Instant getLocalImageTimestamp(String imageName) {
+	private static Instant getLocalImageTimestamp(String imageName, DockerEngineClient engine) {
 		// Use docker inspect
 		try {
-			String isoDatetime = DefaultCommandRunner.INSTANCE.runCommandAndCaptureOutput("docker", "inspect", "-f", "{{.Created}}", imageName);
+			String isoDatetime;
+			if (engine != null) {
+				EngineImage image = engine.inspectImage(imageName);
+				if (image == null) {
+					return null;
+				}
+				isoDatetime = image.getCreated();
+			} else {
+				isoDatetime = DefaultCommandRunner.INSTANCE.runCommandAndCaptureOutput("docker", "inspect", "-f", "{{.Created}}", imageName);
+			}
 			return Instant.from(DateTimeFormatter.ISO_ZONED_DATE_TIME.parse(isoDatetime));
 		}
 		catch (RuntimeException e) {
@@ -154,57 +194,7 @@ public class DockerRegistry {
 	}
 
 	private String downloadWithoutRetry(URL url, String accept, String auth) {
-		try {
-			String oldValue = System.getProperty("java.net.useSystemProxies");
-			System.setProperty("java.net.useSystemProxies", "true"); // default is false...
-			Proxy proxy = ProxySelector.getDefault().select(url.toURI()).get(0);
-			if (oldValue != null) {
-				System.setProperty("java.net.useSystemProxies", oldValue);
-			} else {
-				System.getProperties().remove("java.net.useSystemProxies");
-			}
-			log.debug("Using proxy: [{}]", proxy);
-			HttpURLConnection connection = (HttpURLConnection) url.openConnection(proxy);
-			try {
-				connection.setRequestMethod("GET");
-				connection.setRequestProperty("Accept", accept);
-				if (auth != null) {
-					connection.setRequestProperty("Authorization", "Basic " + auth);
-				}
-				connection.setConnectTimeout(1000);
-				connection.setReadTimeout(5000);
-				connection.connect();
-				int responseCode = connection.getResponseCode();
-				String responseBody = readInputStreamToString(connection);
-				if (responseCode < 200 || responseCode >= 400) {
-					throw new CarnotzetDefinitionException("Received response code [" + responseCode + "] with body: [" + responseBody + "]");
-				}
-				log.debug("Received response code [{}] from [{}]", responseCode, url);
-				return responseBody;
-			}
-			finally {
-				connection.disconnect();
-			}
-		}
-		catch (IOException | URISyntaxException e) {
-			throw new CarnotzetDefinitionException("Could not download from [" + url + "]", e);
-		}
-
-	}
-
-	private String readInputStreamToString(@NonNull HttpURLConnection connection) throws IOException {
-		InputStream inputStream = connection.getInputStream();
-		InputStreamReader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
-		BufferedReader bufferedReader = new BufferedReader(reader);
-		try {
-			return bufferedReader.lines().collect(joining("\n"));
-		}
-		finally {
-			bufferedReader.close();
-			reader.close();
-			inputStream.close();
-		}
-
+		return httpClient.get(url, accept, auth);
 	}
 
 	private ContainerImageV1 getImageManifest(ImageRef imageRef, DistributionManifestV2 distributionManifest) {
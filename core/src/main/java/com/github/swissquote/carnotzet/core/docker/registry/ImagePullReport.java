@@ -0,0 +1,35 @@
+package com.github.swissquote.carnotzet.core.docker.registry;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.Value;
+
+/**
+ * Outcome of pulling the images of an environment
+ */
+@Value
+public class ImagePullReport {
+
+	private final List<String> pulled;
+
+	private final List<String> upToDate;
+
+	// image -> error message
+	private final Map<String, String> failures;
+
+	private final long durationMillis;
+
+	public boolean hasFailures() {
+		return !failures.isEmpty();
+	}
+
+	public String summary() {
+		StringBuilder summary = new StringBuilder()
+				.append("Pulled ").append(pulled.size())
+				.append(" image(s), ").append(upToDate.size()).append(" up to date, ")
+				.append(failures.size()).append(" failed in ").append(durationMillis).append(" ms");
+		failures.forEach((image, message) -> summary.append(System.lineSeparator()).append("  ").append(image).append(" : ").append(message));
+		return summary.toString();
+	}
+}
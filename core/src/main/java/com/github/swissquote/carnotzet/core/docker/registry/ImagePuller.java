@@ -0,0 +1,106 @@
+package com.github.swissquote.carnotzet.core.docker.registry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+
+import com.github.swissquote.carnotzet.core.CarnotzetDefinitionException;
+import com.github.swissquote.carnotzet.core.CarnotzetModule;
+import com.github.swissquote.carnotzet.core.docker.engine.DockerEngineClient;
+import com.github.swissquote.carnotzet.core.runtime.api.PullPolicy;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pulls the images of several modules concurrently, each image only once even if it is used by several modules.<br>
+ * The pull policy (local and registry metadata) is also evaluated concurrently, a failing image does not stop the others.
+ */
+@Slf4j
+public class ImagePuller {
+
+	public static final int DEFAULT_PARALLELISM = 4;
+
+	private final int parallelism;
+
+	// returns true if the image was pulled, throws if the pull failed
+	private final BiPredicate<CarnotzetModule, PullPolicy> pullIfNeeded;
+
+	public ImagePuller(int parallelism) {
+		this(parallelism, DockerRegistry::pullImageIfNeeded);
+	}
+
+	/**
+	 * @param engine used to inspect local images, null to use the docker CLI
+	 */
+	public ImagePuller(int parallelism, DockerEngineClient engine) {
+		this(parallelism, (module, policy) -> DockerRegistry.pullImageIfNeeded(module, policy, engine));
+	}
+
+	ImagePuller(int parallelism, BiPredicate<CarnotzetModule, PullPolicy> pullIfNeeded) {
+		this.parallelism = Math.max(1, parallelism);
+		this.pullIfNeeded = pullIfNeeded;
+	}
+
+	public ImagePullReport pull(Collection<CarnotzetModule> modules, PullPolicy policy) {
+		long start = System.nanoTime();
+		Map<String, CarnotzetModule> byImage = new LinkedHashMap<>();
+		for (CarnotzetModule module : modules) {
+			if (module.getImageName() != null) {
+				byImage.putIfAbsent(module.getImageName(), module);
+			}
+		}
+		List<String> pulled = Collections.synchronizedList(new ArrayList<>());
+		List<String> upToDate = Collections.synchronizedList(new ArrayList<>());
+		Map<String, String> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+		if (!byImage.isEmpty()) {
+			AtomicInteger done = new AtomicInteger();
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, byImage.size()));
+			try {
+				List<Future<?>> futures = new ArrayList<>();
+				byImage.forEach((image, module) -> futures.add(executor.submit(() -> {
+					String outcome;
+					try {
+						if (pullIfNeeded.test(module, policy)) {
+							pulled.add(image);
+							outcome = "pulled";
+						} else {
+							upToDate.add(image);
+							outcome = "up to date";
+						}
+					}
+					catch (RuntimeException e) {
+						log.debug("Failed to pull image [{}]", image, e);
+						failures.put(image, e.getMessage());
+						outcome = "failed";
+					}
+					log.info("[{}/{}] {} : {}", done.incrementAndGet(), byImage.size(), image, outcome);
+				})));
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CarnotzetDefinitionException(e);
+			}
+			catch (ExecutionException e) {
+				throw new CarnotzetDefinitionException(e.getCause());
+			}
+			finally {
+				executor.shutdownNow();
+			}
+		}
+		return new ImagePullReport(new ArrayList<>(pulled), new ArrayList<>(upToDate), new LinkedHashMap<>(failures),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+	}
+}
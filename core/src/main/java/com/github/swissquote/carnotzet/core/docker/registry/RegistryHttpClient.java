@@ -0,0 +1,250 @@
+package com.github.swissquote.carnotzet.core.docker.registry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.swissquote.carnotzet.core.CarnotzetDefinitionException;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * HTTP client of docker registries, safe for concurrent use.<br>
+ * Connections are kept alive and reused by the JDK as long as responses are fully read, the proxy is resolved once per host,
+ * and bearer tokens obtained from auth challenges are cached per scope until they expire.
+ */
+@Slf4j
+public class RegistryHttpClient {
+
+	private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+	private static final int READ_TIMEOUT_MILLIS = 5000;
+	// tokens without expires_in are valid for 60 seconds (https://docs.docker.com/registry/spec/auth/token/)
+	private static final long DEFAULT_TOKEN_TTL_SECONDS = 60;
+	private static final Pattern CHALLENGE_PARAMETER = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+
+	private final Function<URI, Proxy> proxySelector;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	// scheme://host:port -> proxy
+	private final Map<String, Proxy> proxies = new ConcurrentHashMap<>();
+
+	// repository url -> last bearer challenge received for it, to authenticate the next requests upfront
+	private final Map<String, BearerChallenge> challenges = new ConcurrentHashMap<>();
+
+	private final Map<BearerChallenge, Token> tokens = new ConcurrentHashMap<>();
+
+	public RegistryHttpClient() {
+		this(RegistryHttpClient::systemProxy);
+	}
+
+	public RegistryHttpClient(Function<URI, Proxy> proxySelector) {
+		this.proxySelector = proxySelector;
+	}
+
+	/**
+	 * @param basicAuth base64 encoded credentials for the registry, or null
+	 * @return the body of the response
+	 * @throws CarnotzetDefinitionException if the registry responds with an error
+	 */
+	public String get(URL url, String accept, String basicAuth) {
+		try {
+			String repository = repositoryOf(url);
+			BearerChallenge known = challenges.get(repository);
+			Response response = send(url, accept, known != null ? "Bearer " + getToken(known, basicAuth) : basic(basicAuth));
+			if (response.getStatus() == HttpURLConnection.HTTP_UNAUTHORIZED) {
+				BearerChallenge challenge = BearerChallenge.parse(response.getAuthenticate());
+				if (challenge != null) {
+					log.debug("Registry requested a bearer token for [{}]", challenge);
+					if (challenge.equals(known)) {
+						// the cached token was rejected
+						tokens.remove(challenge);
+					}
+					challenges.put(repository, challenge);
+					response = send(url, accept, "Bearer " + getToken(challenge, basicAuth));
+				}
+			}
+			if (response.getStatus() < 200 || response.getStatus() >= 400) {
+				throw new CarnotzetDefinitionException("Received response code [" + response.getStatus() + "] with body: [" + response.getBody() + "]");
+			}
+			log.debug("Received response code [{}] from [{}]", response.getStatus(), url);
+			return response.getBody();
+		}
+		catch (IOException e) {
+			throw new CarnotzetDefinitionException("Could not download from [" + url + "]", e);
+		}
+	}
+
+	private String getToken(BearerChallenge challenge, String basicAuth) throws IOException {
+		Token token = tokens.get(challenge);
+		if (token != null && token.getExpiresAt() > System.nanoTime()) {
+			return token.getValue();
+		}
+		StringBuilder tokenUrl = new StringBuilder(challenge.getRealm());
+		char separator = challenge.getRealm().contains("?") ? '&' : '?';
+		if (challenge.getService() != null) {
+			tokenUrl.append(separator).append("service=").append(urlEncode(challenge.getService()));
+			separator = '&';
+		}
+		if (challenge.getScope() != null) {
+			tokenUrl.append(separator).append("scope=").append(urlEncode(challenge.getScope()));
+		}
+		Response response = send(new URL(tokenUrl.toString()), "application/json", basic(basicAuth));
+		if (response.getStatus() != HttpURLConnection.HTTP_OK) {
+			throw new CarnotzetDefinitionException("Could not get a token from [" + challenge.getRealm() + "], received response code ["
+					+ response.getStatus() + "] with body: [" + response.getBody() + "]");
+		}
+		JsonNode json = objectMapper.readTree(response.getBody());
+		String value = json.hasNonNull("token") ? json.get("token").asText() : json.path("access_token").asText();
+		long ttl = json.path("expires_in").asLong(DEFAULT_TOKEN_TTL_SECONDS);
+		// renew a bit early, the token must still be valid when the registry receives the request
+		tokens.put(challenge, new Token(value, System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(0, ttl - 5))));
+		return value;
+	}
+
+	private Response send(URL url, String accept, String authorization) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection(proxyFor(url));
+		connection.setRequestMethod("GET");
+		connection.setRequestProperty("Accept", accept);
+		if (authorization != null) {
+			connection.setRequestProperty("Authorization", authorization);
+		}
+		connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+		connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+		int status = connection.getResponseCode();
+		// reading the whole body (even on errors) and not disconnecting lets the JDK reuse the connection
+		InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+		String body = in == null ? "" : readFully(in);
+		return new Response(status, body, connection.getHeaderField("WWW-Authenticate"));
+	}
+
+	private Proxy proxyFor(URL url) {
+		String key = url.getProtocol() + "://" + url.getHost() + ":" + url.getPort();
+		return proxies.computeIfAbsent(key, k -> {
+			try {
+				Proxy proxy = proxySelector.apply(url.toURI());
+				log.debug("Using proxy [{}] for [{}]", proxy, k);
+				return proxy;
+			}
+			catch (URISyntaxException e) {
+				throw new CarnotzetDefinitionException("Invalid registry url [" + url + "]", e);
+			}
+		});
+	}
+
+	/**
+	 * The system proxies are only looked up when java.net.useSystemProxies is set, it is toggled for the duration of the lookup.
+	 */
+	private static synchronized Proxy systemProxy(URI uri) {
+		String oldValue = System.getProperty("java.net.useSystemProxies");
+		System.setProperty("java.net.useSystemProxies", "true"); // default is false...
+		try {
+			List<Proxy> proxies = ProxySelector.getDefault().select(uri);
+			return proxies.isEmpty() ? Proxy.NO_PROXY : proxies.get(0);
+		}
+		finally {
+			if (oldValue != null) {
+				System.setProperty("java.net.useSystemProxies", oldValue);
+			} else {
+				System.getProperties().remove("java.net.useSystemProxies");
+			}
+		}
+	}
+
+	/**
+	 * Tokens are scoped to a repository, requests to the same repository can reuse the same challenge
+	 */
+	private static String repositoryOf(URL url) {
+		String s = url.toString();
+		for (String marker : new String[] {"/manifests/", "/blobs/"}) {
+			int index = s.indexOf(marker);
+			if (index >= 0) {
+				return s.substring(0, index);
+			}
+		}
+		return s;
+	}
+
+	private static String basic(String basicAuth) {
+		return basicAuth == null ? null : "Basic " + basicAuth;
+	}
+
+	private static String readFully(InputStream in) throws IOException {
+		try (InputStream input = in) {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = input.read(buffer)) >= 0) {
+				body.write(buffer, 0, read);
+			}
+			return new String(body.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static String urlEncode(String value) {
+		try {
+			return URLEncoder.encode(value, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Value
+	private static class Response {
+		private final int status;
+		private final String body;
+		private final String authenticate;
+	}
+
+	@Value
+	private static class Token {
+		private final String value;
+		private final long expiresAt;
+	}
+
+	@Value
+	static class BearerChallenge {
+		private final String realm;
+		private final String service;
+		private final String scope;
+
+		/**
+		 * Parses a WWW-Authenticate header such as : Bearer realm="https://auth.docker.io/token",service="registry.docker.io",scope="..."
+		 *
+		 * @return null if it is not a bearer challenge
+		 */
+		static BearerChallenge parse(String header) {
+			if (header == null || !header.regionMatches(true, 0, "Bearer ", 0, 7)) {
+				return null;
+			}
+			Map<String, String> parameters = new HashMap<>();
+			Matcher m = CHALLENGE_PARAMETER.matcher(header.substring(7));
+			while (m.find()) {
+				parameters.put(m.group(1).toLowerCase(), m.group(2));
+			}
+			String realm = parameters.get("realm");
+			return realm == null ? null : new BearerChallenge(realm, parameters.get("service"), parameters.get("scope"));
+		}
+	}
+}
@@ -0,0 +1,368 @@
+package com.github.swissquote.carnotzet.core.maven;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.swissquote.carnotzet.core.util.Sha256;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Persists resolved dependency trees on disk, so they survive across JVM runs.<br>
+ * A cached tree is only used if its fingerprint still matches : the fingerprint is a hash of the pom files (with their parent
+ * poms and the BOMs they import) of every node in the tree, plus the local and remote maven-metadata files of SNAPSHOT versions.
+ * Any change to those files in the local repository automatically invalidates the entry. Trees importing a BOM whose version
+ * cannot be resolved are not cached.
+ */
+@Slf4j
+class DependencyTreeCache {
+
+	private static final String SNAPSHOT = "-SNAPSHOT";
+	private static final Pattern METADATA_FILE = Pattern.compile("maven-metadata-.+\\.xml");
+	private static final Pattern PROPERTY = Pattern.compile("\\$\\{([^}]+)}");
+	private static final int MAX_INTERPOLATION_DEPTH = 10;
+	private static final int BUFFER_SIZE = 8192;
+
+	private final Path cacheFolder;
+	private final ObjectMapper jsonMapper = new ObjectMapper();
+
+	DependencyTreeCache(Path cacheFolder) {
+		this.cacheFolder = cacheFolder;
+	}
+
+	/**
+	 * @return the cached tree, or null if there is no entry or if it is outdated
+	 */
+	Node get(CarnotzetModuleCoordinates topLevelModuleId, Path localRepoPath) {
+		Path entry = cacheFolder.resolve(getEntryName(topLevelModuleId, localRepoPath));
+		if (!entry.toFile().exists()) {
+			return null;
+		}
+		try {
+			JsonNode json = jsonMapper.readTree(entry.toFile());
+			Node tree = fromJson(json.get("tree"), null);
+			String fingerprint = computeFingerprint(tree, localRepoPath);
+			if (fingerprint == null || !fingerprint.equals(json.path("fingerprint").asText())) {
+				log.debug("Dependency tree cache entry [{}] is outdated", entry);
+				return null;
+			}
+			log.debug("Using cached dependency tree [{}]", entry);
+			return tree;
+		}
+		catch (IOException | RuntimeException e) {
+			log.debug("Ignoring unreadable dependency tree cache entry [{}] : {}", entry, e.toString());
+			return null;
+		}
+	}
+
+	void put(CarnotzetModuleCoordinates topLevelModuleId, Path localRepoPath, Node tree) {
+		String entryName = getEntryName(topLevelModuleId, localRepoPath);
+		Path entry = cacheFolder.resolve(entryName);
+		try {
+			String fingerprint = computeFingerprint(tree, localRepoPath);
+			if (fingerprint == null) {
+				log.debug("Dependency tree of [{}] cannot be fingerprinted, it is not cached", topLevelModuleId);
+				return;
+			}
+			ObjectNode json = jsonMapper.createObjectNode();
+			json.put("fingerprint", fingerprint);
+			json.set("tree", toJson(tree));
+			Files.createDirectories(cacheFolder);
+			// write then move, so that concurrent readers never see a partially written entry
+			Path tmp = Files.createTempFile(cacheFolder, entryName, ".tmp");
+			jsonMapper.writeValue(tmp.toFile(), json);
+			Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException | RuntimeException e) {
+			log.warn("Could not write dependency tree cache entry [{}] : {}", entry, e.toString());
+		}
+	}
+
+	private String getEntryName(CarnotzetModuleCoordinates topLevelModuleId, Path localRepoPath) {
+		return Sha256.getSHA(topLevelModuleId + "@" + localRepoPath.toAbsolutePath()) + ".json";
+	}
+
+	/**
+	 * @return null if the tree cannot be fingerprinted reliably (an imported BOM whose version cannot be resolved)
+	 */
+	private String computeFingerprint(Node tree, Path localRepoPath) throws IOException {
+		// sorted, to get a stable fingerprint regardless of the tree traversal order
+		Set<String> gavs = new TreeSet<>();
+		Deque<Node> toVisit = new ArrayDeque<>();
+		toVisit.push(tree);
+		while (!toVisit.isEmpty()) {
+			Node node = toVisit.pop();
+			gavs.add(node.getGroupId() + ":" + node.getArtifactId() + ":" + node.getVersion());
+			node.getChildNodes().forEach(toVisit::push);
+		}
+
+		Fingerprint fingerprint = new Fingerprint(localRepoPath);
+		for (String gav : gavs) {
+			String[] parts = gav.split(":");
+			if (!fingerprint.digestPom(parts[0], parts[1], parts[2])) {
+				return null;
+			}
+		}
+		return Sha256.toHexString(fingerprint.digest.digest());
+	}
+
+	/**
+	 * Digest of the pom files a tree was computed from, with their parents and the BOMs they import.
+	 */
+	private static final class Fingerprint {
+
+		private final MessageDigest digest = newDigest();
+		private final Path localRepoPath;
+		private final Set<String> visited = new TreeSet<>();
+		// pom files are read at most once, parents are shared by many nodes
+		private final Map<Path, Optional<Model>> models = new HashMap<>();
+
+		private Fingerprint(Path localRepoPath) {
+			this.localRepoPath = localRepoPath;
+		}
+
+		/**
+		 * Adds the pom file of the given artifact, its parents and its imported BOMs to the digest.
+		 * Missing files are part of the fingerprint too, so that a cached tree is not used after a cleanup of the local repository.
+		 *
+		 * @return false if the version of an imported BOM cannot be resolved
+		 */
+		private boolean digestPom(String groupId, String artifactId, String version) throws IOException {
+			if (!visited.add(groupId + ":" + artifactId + ":" + version)) {
+				return true;
+			}
+			Path versionFolder = getVersionFolder(groupId, artifactId, version);
+			Path pom = versionFolder.resolve(artifactId + "-" + version + ".pom");
+			digestFile(digest, pom);
+			if (version.endsWith(SNAPSHOT)) {
+				// maven-metadata-local.xml and maven-metadata-${repositoryId}.xml select the snapshot that is used
+				try (Stream<Path> files = Files.list(versionFolder)) {
+					List<Path> metadata = files.filter(f -> METADATA_FILE.matcher(versionFolder.relativize(f).toString()).matches())
+							.sorted()
+							.collect(Collectors.toList());
+					for (Path file : metadata) {
+						digestFile(digest, file);
+					}
+				}
+				catch (NoSuchFileException e) {
+					// the missing pom file is already part of the digest
+				}
+			}
+			Model model = readModel(pom);
+			if (model == null) {
+				return true;
+			}
+			Parent parent = model.getParent();
+			if (parent != null && parent.getVersion() != null && !digestPom(parent.getGroupId(), parent.getArtifactId(), parent.getVersion())) {
+				return false;
+			}
+			if (model.getDependencyManagement() == null) {
+				return true;
+			}
+			Properties properties = null;
+			for (Dependency dependency : model.getDependencyManagement().getDependencies()) {
+				if (!"import".equals(dependency.getScope()) || !"pom".equals(dependency.getType())) {
+					continue;
+				}
+				if (properties == null) {
+					properties = getProperties(model);
+				}
+				String bomGroupId = interpolate(dependency.getGroupId(), properties);
+				String bomVersion = interpolate(dependency.getVersion(), properties);
+				if (bomGroupId == null || bomVersion == null) {
+					log.debug("Cannot resolve the imported BOM [{}:{}] in [{}]", dependency.getGroupId(), dependency.getArtifactId(), pom);
+					return false;
+				}
+				if (!digestPom(bomGroupId, dependency.getArtifactId(), bomVersion)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private Path getVersionFolder(String groupId, String artifactId, String version) {
+			return localRepoPath.resolve(groupId.replace(".", "/")).resolve(artifactId).resolve(version);
+		}
+
+		/**
+		 * Properties of the model and its parents (the closest definition wins), with the project coordinates.
+		 */
+		private Properties getProperties(Model model) throws IOException {
+			Deque<Model> lineage = new ArrayDeque<>();
+			Model current = model;
+			while (current != null) {
+				lineage.push(current);
+				Parent parent = current.getParent();
+				current = parent == null || parent.getVersion() == null ? null
+						: readModel(getVersionFolder(parent.getGroupId(), parent.getArtifactId(), parent.getVersion())
+						.resolve(parent.getArtifactId() + "-" + parent.getVersion() + ".pom"));
+			}
+			Properties properties = new Properties();
+			for (Model m : lineage) {
+				properties.putAll(m.getProperties());
+			}
+			Parent parent = model.getParent();
+			String groupId = model.getGroupId() != null ? model.getGroupId() : parent == null ? null : parent.getGroupId();
+			String version = model.getVersion() != null ? model.getVersion() : parent == null ? null : parent.getVersion();
+			setIfNotNull(properties, "project.groupId", groupId);
+			setIfNotNull(properties, "project.version", version);
+			if (parent != null) {
+				setIfNotNull(properties, "project.parent.groupId", parent.getGroupId());
+				setIfNotNull(properties, "project.parent.version", parent.getVersion());
+			}
+			return properties;
+		}
+
+		private Model readModel(Path pom) throws IOException {
+			Optional<Model> model = models.get(pom);
+			if (model == null) {
+				model = Optional.ofNullable(DependencyTreeCache.readModel(pom));
+				models.put(pom, model);
+			}
+			return model.orElse(null);
+		}
+	}
+
+	private static void setIfNotNull(Properties properties, String key, String value) {
+		if (value != null) {
+			properties.setProperty(key, value);
+		}
+	}
+
+	/**
+	 * @return null if a property is not defined
+	 */
+	static String interpolate(String value, Properties properties) {
+		String result = value;
+		// properties may reference other properties
+		for (int i = 0; result != null && result.contains("${") && i < MAX_INTERPOLATION_DEPTH; i++) {
+			Matcher matcher = PROPERTY.matcher(result);
+			StringBuffer sb = new StringBuffer();
+			while (matcher.find()) {
+				String replacement = properties.getProperty(matcher.group(1));
+				if (replacement == null) {
+					return null;
+				}
+				matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+			}
+			matcher.appendTail(sb);
+			result = sb.toString();
+		}
+		return result == null || result.contains("${") ? null : result;
+	}
+
+	private static void digestFile(MessageDigest digest, Path file) throws IOException {
+		digest.update(file.toString().getBytes(StandardCharsets.UTF_8));
+		if (!file.toFile().exists()) {
+			digest.update((byte) 0);
+			return;
+		}
+		digest.update((byte) 1);
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream in = Files.newInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+	}
+
+	private static Model readModel(Path pom) throws IOException {
+		if (!pom.toFile().exists()) {
+			return null;
+		}
+		try (BufferedReader in = Files.newBufferedReader(pom, StandardCharsets.UTF_8)) {
+			return new MavenXpp3Reader().read(in, false);
+		}
+		catch (XmlPullParserException e) {
+			log.debug("Could not parse pom file [{}] : {}", pom, e.toString());
+			return null;
+		}
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance(Sha256.ALGORITHM);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private ObjectNode toJson(Node node) {
+		ObjectNode json = jsonMapper.createObjectNode();
+		json.put("groupId", node.getGroupId());
+		json.put("artifactId", node.getArtifactId());
+		json.put("packaging", node.getPackaging());
+		json.put("classifier", node.getClassifier());
+		json.put("version", node.getVersion());
+		json.put("scope", node.getScope());
+		json.put("description", node.getDescription());
+		json.put("omitted", node.isOmitted());
+		ArrayNode children = json.putArray("children");
+		for (Node child : node.getChildNodes()) {
+			children.add(toJson(child));
+		}
+		return json;
+	}
+
+	private Node fromJson(JsonNode json, Node parent) {
+		Node node = new Node(
+				text(json, "groupId"),
+				text(json, "artifactId"),
+				text(json, "packaging"),
+				text(json, "classifier"),
+				text(json, "version"),
+				text(json, "scope"),
+				text(json, "description"),
+				json.path("omitted").asBoolean(),
+				null,
+				new LinkedList<>()
+		);
+		if (parent != null) {
+			parent.addChildNode(node);
+		}
+		for (JsonNode child : json.path("children")) {
+			fromJson(child, node);
+		}
+		return node;
+	}
+
+	private static String text(JsonNode json, String field) {
+		JsonNode value = json.get(field);
+		return value == null || value.isNull() ? null : value.asText();
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.github.swissquote.carnotzet.core.maven;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.Value;
+
+/**
+ * Classifies the content of an expanded jar in a single walk :<br>
+ * - entries at the root of the jar, which belong to the module itself (unless they are named after another module)<br>
+ * - regular files in sub-directories, grouped by the name of their first directory, which may be the service id of a module
+ * they override or merge into.
+ */
+@Getter
+final class ExpandedJarIndex {
+
+	private final Path root;
+
+	private final List<Entry> rootEntries = new ArrayList<>();
+
+	private final Map<String, List<Entry>> filesByFirstDirectory = new LinkedHashMap<>();
+
+	// all entries but the root, in walk order
+	private final List<Entry> entries = new ArrayList<>();
+
+	private ExpandedJarIndex(Path root) {
+		this.root = root;
+	}
+
+	static ExpandedJarIndex build(Path root, int maxDepth) throws IOException {
+		ExpandedJarIndex index = new ExpandedJarIndex(root);
+		Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), maxDepth, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+				if (!dir.equals(root)) {
+					index.add(dir, attrs);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				index.add(file, attrs);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return index;
+	}
+
+	private void add(Path path, BasicFileAttributes attrs) {
+		Path relativePath = root.relativize(path);
+		Entry entry = new Entry(path, relativePath, attrs.isDirectory(), attrs.isRegularFile(), attrs.size(),
+				attrs.lastModifiedTime().toMillis());
+		entries.add(entry);
+		if (relativePath.getNameCount() == 1) {
+			rootEntries.add(entry);
+		} else if (entry.isRegularFile()) {
+			filesByFirstDirectory.computeIfAbsent(relativePath.getName(0).toString(), k -> new ArrayList<>()).add(entry);
+		}
+	}
+
+	@Value
+	static class Entry {
+		private final Path path;
+		private final Path relativePath;
+		private final boolean directory;
+		private final boolean regularFile;
+		private final long size;
+		private final long lastModified;
+
+		boolean isMerge() {
+			return path.toString().endsWith(".merge");
+		}
+
+		String getFirstDirectory() {
+			return relativePath.getName(0).toString();
+		}
+	}
+}
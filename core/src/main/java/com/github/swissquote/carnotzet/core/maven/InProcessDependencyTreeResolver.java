@@ -0,0 +1,240 @@
+package com.github.swissquote.carnotzet.core.maven;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.apache.maven.settings.Mirror;
+import org.apache.maven.settings.Profile;
+import org.apache.maven.settings.Repository;
+import org.apache.maven.settings.Server;
+import org.apache.maven.settings.Settings;
+import org.apache.maven.settings.building.DefaultSettingsBuilderFactory;
+import org.apache.maven.settings.building.DefaultSettingsBuildingRequest;
+import org.apache.maven.settings.building.SettingsBuildingException;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.supplier.RepositorySystemSupplier;
+import org.eclipse.aether.util.graph.manager.DependencyManagerUtils;
+import org.eclipse.aether.util.graph.transformer.ConflictResolver;
+import org.eclipse.aether.util.repository.AuthenticationBuilder;
+import org.eclipse.aether.util.repository.DefaultAuthenticationSelector;
+import org.eclipse.aether.util.repository.DefaultMirrorSelector;
+import org.eclipse.aether.util.repository.DefaultProxySelector;
+
+import com.github.swissquote.carnotzet.core.CarnotzetDefinitionException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Builds the same verbose dependency tree as "mvn dependency:tree -Dverbose", but in-process using the Maven Resolver API.<br>
+ * Nodes that lost a version conflict (or are duplicates) are kept in the tree as omitted leaves, which is what the
+ * TopologicalSorter expects.<br>
+ * Remote repositories, mirrors, servers and proxies are read from the user (and global, if maven.home is set) settings.xml.
+ */
+@Slf4j
+class InProcessDependencyTreeResolver {
+
+	private static final String CENTRAL_URL = "https://repo.maven.apache.org/maven2/";
+
+	private final RepositorySystem system;
+
+	private final File userSettingsFile;
+
+	private final File globalSettingsFile;
+
+	InProcessDependencyTreeResolver() {
+		this(Paths.get(System.getProperty("user.home"), ".m2", "settings.xml").toFile(),
+				System.getProperty("maven.home") == null ? null : new File(System.getProperty("maven.home"), "conf/settings.xml"));
+	}
+
+	/**
+	 * @param globalSettingsFile may be null
+	 */
+	InProcessDependencyTreeResolver(File userSettingsFile, File globalSettingsFile) {
+		this.system = new RepositorySystemSupplier().get();
+		this.userSettingsFile = userSettingsFile;
+		this.globalSettingsFile = globalSettingsFile;
+	}
+
+	Node resolveDependencyTree(CarnotzetModuleCoordinates topLevelModuleId, Path localRepoPath) {
+		Settings settings = readSettings();
+		DefaultRepositorySystemSession session = newSession(settings, localRepoPath);
+
+		Artifact root = new DefaultArtifact(topLevelModuleId.getGroupId(), topLevelModuleId.getArtifactId(), "jar",
+				topLevelModuleId.getVersion());
+		CollectRequest request = new CollectRequest(new Dependency(root, null), getRemoteRepositories(session, settings));
+		request.setRequestContext("carnotzet");
+		log.debug("Collecting dependencies of [{}] using repositories {}", root, request.getRepositories());
+		try {
+			DependencyNode tree = system.collectDependencies(session, request).getRoot();
+			return toNode(tree, Collections.newSetFromMap(new IdentityHashMap<>()));
+		}
+		catch (DependencyCollectionException e) {
+			throw new CarnotzetDefinitionException("Could not collect dependencies of [" + topLevelModuleId + "]", e);
+		}
+	}
+
+	/**
+	 * Downloads the jars of the given modules in a single resolution request, the resolver fetches them in parallel.
+	 * Failures are not reported here, the caller is expected to check which jars are still missing afterwards.
+	 */
+	void resolveArtifacts(List<CarnotzetModuleCoordinates> modules, Path localRepoPath) {
+		Settings settings = readSettings();
+		DefaultRepositorySystemSession session = newSession(settings, localRepoPath);
+		List<RemoteRepository> repositories = getRemoteRepositories(session, settings);
+		List<ArtifactRequest> requests = new ArrayList<>();
+		for (CarnotzetModuleCoordinates module : modules) {
+			Artifact artifact = new DefaultArtifact(module.getGroupId(), module.getArtifactId(), module.getClassifier(), "jar",
+					module.getVersion());
+			requests.add(new ArtifactRequest(artifact, repositories, "carnotzet"));
+		}
+		try {
+			system.resolveArtifacts(session, requests);
+		}
+		catch (ArtifactResolutionException e) {
+			log.debug("Some module jars could not be resolved : {}", e.getMessage());
+		}
+	}
+
+	private DefaultRepositorySystemSession newSession(Settings settings, Path localRepoPath) {
+		DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
+		// keep losers of version conflicts in the graph, same as dependency:tree -Dverbose
+		session.setConfigProperty(ConflictResolver.CONFIG_PROP_VERBOSE, true);
+		session.setConfigProperty(DependencyManagerUtils.CONFIG_PROP_VERBOSE, true);
+		session.setLocalRepositoryManager(system.newLocalRepositoryManager(session, new LocalRepository(localRepoPath.toFile())));
+		session.setOffline(settings.isOffline());
+		session.setSystemProperties(System.getProperties());
+
+		DefaultMirrorSelector mirrors = new DefaultMirrorSelector();
+		for (Mirror mirror : settings.getMirrors()) {
+			mirrors.add(mirror.getId(), mirror.getUrl(), mirror.getLayout(), false, mirror.isBlocked(), mirror.getMirrorOf(),
+					mirror.getMirrorOfLayouts());
+		}
+		session.setMirrorSelector(mirrors);
+
+		DefaultAuthenticationSelector authentications = new DefaultAuthenticationSelector();
+		for (Server server : settings.getServers()) {
+			authentications.add(server.getId(), new AuthenticationBuilder()
+					.addUsername(server.getUsername())
+					.addPassword(server.getPassword())
+					.addPrivateKey(server.getPrivateKey(), server.getPassphrase())
+					.build());
+		}
+		session.setAuthenticationSelector(authentications);
+
+		DefaultProxySelector proxies = new DefaultProxySelector();
+		settings.getProxies().stream().filter(org.apache.maven.settings.Proxy::isActive).forEach(proxy -> proxies.add(
+				new org.eclipse.aether.repository.Proxy(proxy.getProtocol(), proxy.getHost(), proxy.getPort(),
+						new AuthenticationBuilder().addUsername(proxy.getUsername()).addPassword(proxy.getPassword()).build()),
+				proxy.getNonProxyHosts()));
+		session.setProxySelector(proxies);
+
+		return session;
+	}
+
+	private List<RemoteRepository> getRemoteRepositories(DefaultRepositorySystemSession session, Settings settings) {
+		List<RemoteRepository> repositories = new ArrayList<>();
+		List<String> activeProfiles = settings.getActiveProfiles();
+		for (Profile profile : settings.getProfiles()) {
+			boolean activeByDefault = profile.getActivation() != null && profile.getActivation().isActiveByDefault();
+			if (!activeProfiles.contains(profile.getId()) && !activeByDefault) {
+				continue;
+			}
+			for (Repository repository : profile.getRepositories()) {
+				repositories.add(toRemoteRepository(repository));
+			}
+		}
+		if (repositories.stream().noneMatch(r -> "central".equals(r.getId()))) {
+			repositories.add(new RemoteRepository.Builder("central", "default", CENTRAL_URL).build());
+		}
+		// applies mirrors, authentication and proxies configured in the session
+		return system.newResolutionRepositories(session, repositories);
+	}
+
+	private RemoteRepository toRemoteRepository(Repository repository) {
+		RemoteRepository.Builder builder = new RemoteRepository.Builder(repository.getId(), repository.getLayout(), repository.getUrl());
+		if (repository.getReleases() != null) {
+			builder.setReleasePolicy(new RepositoryPolicy(repository.getReleases().isEnabled(),
+					repository.getReleases().getUpdatePolicy(), repository.getReleases().getChecksumPolicy()));
+		}
+		if (repository.getSnapshots() != null) {
+			builder.setSnapshotPolicy(new RepositoryPolicy(repository.getSnapshots().isEnabled(),
+					repository.getSnapshots().getUpdatePolicy(), repository.getSnapshots().getChecksumPolicy()));
+		}
+		return builder.build();
+	}
+
+	private Settings readSettings() {
+		DefaultSettingsBuildingRequest request = new DefaultSettingsBuildingRequest();
+		request.setSystemProperties(System.getProperties());
+		request.setUserSettingsFile(userSettingsFile);
+		if (globalSettingsFile != null) {
+			request.setGlobalSettingsFile(globalSettingsFile);
+		}
+		try {
+			return new DefaultSettingsBuilderFactory().newInstance().build(request).getEffectiveSettings();
+		}
+		catch (SettingsBuildingException e) {
+			throw new CarnotzetDefinitionException("Could not read maven settings", e);
+		}
+	}
+
+	/**
+	 * Converts a resolver graph node to the same representation as the one produced by TreeTextParser.
+	 * The ancestors set guards against cycles, which the resolver may represent as back-references in the graph.
+	 */
+	private Node toNode(DependencyNode dependencyNode, Set<DependencyNode> ancestors) {
+		Artifact artifact = dependencyNode.getArtifact();
+		Dependency dependency = dependencyNode.getDependency();
+		DependencyNode winner = (DependencyNode) dependencyNode.getData().get(ConflictResolver.NODE_DATA_WINNER);
+
+		String scope = dependency == null || dependency.getScope().isEmpty() ? null : dependency.getScope();
+		String classifier = artifact.getClassifier().isEmpty() ? null : artifact.getClassifier();
+		String description = null;
+		if (winner != null) {
+			String winnerVersion = winner.getArtifact().getBaseVersion();
+			description = winnerVersion.equals(artifact.getBaseVersion()) ? "omitted for duplicate" : "omitted for conflict with " + winnerVersion;
+		}
+		Node node = new Node(
+				artifact.getGroupId(),
+				artifact.getArtifactId(),
+				artifact.getProperty("type", artifact.getExtension()),
+				classifier,
+				artifact.getBaseVersion(),
+				// the root node is the project itself, it has no scope in dependency:tree
+				ancestors.isEmpty() ? null : scope,
+				description,
+				winner != null,
+				null,
+				new LinkedList<>()
+		);
+		if (winner != null || !ancestors.add(dependencyNode)) {
+			return node;
+		}
+		for (DependencyNode child : dependencyNode.getChildren()) {
+			node.addChildNode(toNode(child, ancestors));
+		}
+		ancestors.remove(dependencyNode);
+		return node;
+	}
+
+}
@@ -0,0 +1,141 @@
+package com.github.swissquote.carnotzet.core.maven;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.github.swissquote.carnotzet.core.CarnotzetDefinitionException;
+
+import lombok.Getter;
+
+/**
+ * Extracts the entries of a jar that match at least one include glob and no exclude glob.<br>
+ * Globs are matched against entry names, using / as separator : ** matches any number of directories, * and ? never match a /.
+ * Each entry is written through a file channel, and keeps the modification time recorded in the jar.
+ */
+final class JarExtractor {
+
+	private static final long TRANSFER_SIZE = 1024 * 1024;
+
+	@Getter
+	private final List<String> includes;
+
+	@Getter
+	private final List<String> excludes;
+
+	private final List<Pattern> includePatterns;
+
+	private final List<Pattern> excludePatterns;
+
+	JarExtractor(List<String> includes, List<String> excludes) {
+		this.includes = includes;
+		this.excludes = excludes;
+		this.includePatterns = toPatterns(includes);
+		this.excludePatterns = toPatterns(excludes);
+	}
+
+	void extract(Path jar, Path destination) throws IOException {
+		Path root = destination.toAbsolutePath().normalize();
+		try (ZipFile zip = new ZipFile(jar.toFile())) {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (!isIncluded(entry.getName())) {
+					continue;
+				}
+				Path target = root.resolve(entry.getName()).normalize();
+				if (!target.startsWith(root)) {
+					throw new CarnotzetDefinitionException("Entry [" + entry.getName() + "] of [" + jar + "] would be extracted outside of ["
+							+ root + "]");
+				}
+				if (entry.isDirectory()) {
+					Files.createDirectories(target);
+					continue;
+				}
+				Path parent = target.getParent();
+				if (parent != null) {
+					Files.createDirectories(parent);
+				}
+				write(zip, entry, target);
+			}
+		}
+	}
+
+	boolean isIncluded(String name) {
+		return (includePatterns.isEmpty() || matchesAny(includePatterns, name)) && !matchesAny(excludePatterns, name);
+	}
+
+	private static void write(ZipFile zip, ZipEntry entry, Path target) throws IOException {
+		try (InputStream in = zip.getInputStream(entry);
+				ReadableByteChannel source = Channels.newChannel(in);
+				FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			long position = 0;
+			long transferred;
+			while ((transferred = out.transferFrom(source, position, TRANSFER_SIZE)) > 0) {
+				position += transferred;
+			}
+		}
+		if (entry.getTime() != -1) {
+			Files.setLastModifiedTime(target, FileTime.fromMillis(entry.getTime()));
+		}
+	}
+
+	private static boolean matchesAny(List<Pattern> patterns, String name) {
+		for (Pattern pattern : patterns) {
+			if (pattern.matcher(name).matches()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List<Pattern> toPatterns(List<String> globs) {
+		List<Pattern> patterns = new ArrayList<>();
+		if (globs != null) {
+			for (String glob : globs) {
+				patterns.add(toPattern(glob.trim()));
+			}
+		}
+		return patterns;
+	}
+
+	static Pattern toPattern(String glob) {
+		StringBuilder regex = new StringBuilder();
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+				i++;
+				if (i + 1 < glob.length() && glob.charAt(i + 1) == '/') {
+					// **/ also matches no directory at all
+					i++;
+					regex.append("(?:.*/)?");
+				} else {
+					regex.append(".*");
+				}
+			} else if (c == '*') {
+				regex.append("[^/]*");
+			} else if (c == '?') {
+				regex.append("[^/]");
+			} else {
+				if ("\\.[]{}()+-^$|".indexOf(c) >= 0) {
+					regex.append('\\');
+				}
+				regex.append(c);
+			}
+		}
+		return Pattern.compile(regex.toString());
+	}
+}
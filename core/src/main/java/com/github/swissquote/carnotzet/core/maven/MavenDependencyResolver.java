@@ -10,8 +10,14 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -24,10 +30,13 @@ import org.apache.maven.shared.invoker.Invoker;
 import org.apache.maven.shared.invoker.MavenInvocationException;
 
 import com.github.swissquote.carnotzet.core.CarnotzetDefinitionException;
+import com.github.swissquote.carnotzet.core.CarnotzetMetricsListener;
 import com.github.swissquote.carnotzet.core.CarnotzetModule;
+import com.github.swissquote.carnotzet.core.metrics.LifecycleRecorder;
 import com.github.swissquote.carnotzet.core.runtime.DefaultCommandRunner;
 
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -35,6 +44,8 @@ public class MavenDependencyResolver {
 
 	private static final String MAVEN_HOME_PROPERTY = "maven.home";
 	private static final String M2_HOME = "M2_HOME";
+	private static final String MAVEN_HOME_CACHE_KEY = "mavenHome";
+	private static final String LOCAL_REPO_PATH_CACHE_KEY = "m2LocalRepoPath";
 
 	private final Function<CarnotzetModuleCoordinates, String> moduleNameProvider;
 
@@ -43,55 +54,157 @@ public class MavenDependencyResolver {
 	private final Invoker maven = new DefaultInvoker();
 	private final TopologicalSorter topologicalSorter = new TopologicalSorter();
 	private final ConcurrentHashMap<CarnotzetModuleCoordinates, Node> dependencyTreeCache = new ConcurrentHashMap<>();
+	private final boolean resolveInProcess;
+	private final DependencyTreeCache persistentDependencyTreeCache;
 	private Path localRepoPath;
+	private boolean mavenHomeConfigured;
+
+	/**
+	 * Notified of the time spent finding the maven home, may be null
+	 */
+	@Setter
+	private volatile LifecycleRecorder lifecycleRecorder;
 
 	public MavenDependencyResolver(Function<CarnotzetModuleCoordinates, String> moduleNameProvider, Path resourcesPath) {
+		this(moduleNameProvider, resourcesPath, false);
+	}
+
+	public MavenDependencyResolver(Function<CarnotzetModuleCoordinates, String> moduleNameProvider, Path resourcesPath,
+			boolean resolveInProcess) {
+		this(moduleNameProvider, resourcesPath, resolveInProcess, false);
+	}
+
+	/**
+	 * @param resolveInProcess when true, the dependency tree is computed in-process with the Maven Resolver API instead of forking
+	 *                         "mvn dependency:tree". The forked build is still used as a fallback if the in-process resolution fails.
+	 * @param cacheDependencyTrees when true, resolved dependency trees are persisted in ~/.carnotzet/dependency-trees and reused
+	 *                             across JVM runs as long as the pom files they were computed from are unchanged.
+	 */
+	public MavenDependencyResolver(Function<CarnotzetModuleCoordinates, String> moduleNameProvider, Path resourcesPath,
+			boolean resolveInProcess, boolean cacheDependencyTrees) {
 		this.moduleNameProvider = moduleNameProvider;
 		this.resourcesPath = resourcesPath;
-
-		File mavenHome = getMavenHome();
-		if (mavenHome != null) {
-			maven.setMavenHome(mavenHome);
-		}
+		this.resolveInProcess = resolveInProcess;
+		this.persistentDependencyTreeCache = cacheDependencyTrees
+				? new DependencyTreeCache(getUserConfigFolder().resolve("dependency-trees")) : null;
 	}
 
 	public List<CarnotzetModule> resolve(CarnotzetModuleCoordinates topLevelModuleId, Boolean failOnCycle) {
 		log.debug("Resolving module dependencies");
 		Node tree = getDependenciesTree(topLevelModuleId);
-		log.debug("Computing topological ordering of GAs in full dependency tree before resolution (maven2)");
-		List<Node> topology = topologicalSorter.sort(tree, failOnCycle);
+		log.debug("Computing topological ordering of carnotzet modules in dependency tree before resolution (maven2)");
+		// third party artifacts are only used to connect modules, they are projected out before sorting
+		Map<Node, List<Node>> dependencies = new IdentityHashMap<>();
+		List<Node> topology = topologicalSorter.sort(tree, failOnCycle,
+				n -> isInteresting(n) && moduleNameProvider.apply(toCoordinates(n)) != null, dependencies::put);
 		topology = filterInterestingNodes(topology);
 		String topLevelModuleName = moduleNameProvider.apply(topLevelModuleId);
-		List<CarnotzetModule> result = convertNodesToModules(topology, topLevelModuleName);
+		List<CarnotzetModule> result = convertNodesToModules(topology, topLevelModuleName, dependencies);
 		ensureJarFilesAreDownloaded(result, topLevelModuleId);
 		return result;
 	}
 
 	public Node getDependenciesTree(CarnotzetModuleCoordinates topLevelModuleId) {
 		return dependencyTreeCache.computeIfAbsent(topLevelModuleId, moduleId -> {
-			Path pomFile = getPomFile(moduleId);
-			return resolveDependencyTree(pomFile);
+			if (persistentDependencyTreeCache == null) {
+				return computeDependenciesTree(moduleId);
+			}
+			Node tree = persistentDependencyTreeCache.get(moduleId, getLocalRepoPath());
+			if (tree == null) {
+				tree = computeDependenciesTree(moduleId);
+				persistentDependencyTreeCache.put(moduleId, getLocalRepoPath(), tree);
+			}
+			return tree;
 		});
 	}
 
+	private Node computeDependenciesTree(CarnotzetModuleCoordinates moduleId) {
+		if (resolveInProcess) {
+			try {
+				return resolveDependencyTreeInProcess(moduleId);
+			}
+			catch (RuntimeException | LinkageError e) {
+				log.warn("In-process dependency resolution failed, falling back to mvn dependency:tree : {}", e.toString());
+				log.debug("In-process dependency resolution failure", e);
+			}
+		}
+		return resolveDependencyTreeWithMaven(moduleId);
+	}
+
+	// package-private for tests, the in-process and forked resolutions are replaced by stubs
+
+	Node resolveDependencyTreeInProcess(CarnotzetModuleCoordinates moduleId) {
+		return new InProcessDependencyTreeResolver().resolveDependencyTree(moduleId, getLocalRepoPath());
+	}
+
+	Node resolveDependencyTreeWithMaven(CarnotzetModuleCoordinates moduleId) {
+		return resolveDependencyTree(getPomFile(moduleId));
+	}
+
+	void setLocalRepoPath(Path localRepoPath) {
+		this.localRepoPath = localRepoPath;
+	}
+
 	private List<Node> filterInterestingNodes(List<Node> topology) {
 		return topology.stream()
-				.filter(n -> n.getScope() == null || "compile".equals(n.getScope()) || "runtime".equals(n.getScope()))
+				.filter(this::isInteresting)
 				.collect(Collectors.toList());
 	}
 
+	private boolean isInteresting(Node n) {
+		return n.getScope() == null || "compile".equals(n.getScope()) || "runtime".equals(n.getScope());
+	}
+
+	private CarnotzetModuleCoordinates toCoordinates(Node artifact) {
+		return new CarnotzetModuleCoordinates(
+				artifact.getGroupId(),
+				artifact.getArtifactId(),
+				artifact.getVersion(),
+				artifact.getClassifier());
+	}
+
+	/**
+	 * Finds all missing jars in one pass and downloads them at once, then reports every jar that is still missing in a single error.
+	 */
 	private void ensureJarFilesAreDownloaded(List<CarnotzetModule> result, CarnotzetModuleCoordinates topLevelModuleId) {
-		for (CarnotzetModule module : result) {
-			if (!module.getJarPath().toFile().exists()) {
-				downloadJars(topLevelModuleId);
-				if (!module.getJarPath().toFile().exists()) {
-					throw new CarnotzetDefinitionException("Unable to find jar [" + module.getJarPath() + "]");
-				}
+		List<CarnotzetModule> missing = findModulesWithMissingJar(result);
+		if (missing.isEmpty()) {
+			return;
+		}
+		log.debug("Downloading [{}] missing module jars", missing.size());
+		if (resolveInProcess) {
+			try {
+				downloadJarsInProcess(missing.stream().map(CarnotzetModule::getId).collect(Collectors.toList()));
 			}
+			catch (RuntimeException | LinkageError e) {
+				log.warn("In-process download of module jars failed, falling back to mvn dependency:get : {}", e.toString());
+				log.debug("In-process download failure", e);
+			}
+			missing = findModulesWithMissingJar(missing);
+		}
+		if (!missing.isEmpty()) {
+			// a single transitive download of the top level module fetches the jars of all modules
+			downloadJarsWithMaven(topLevelModuleId);
+			missing = findModulesWithMissingJar(missing);
+		}
+		if (!missing.isEmpty()) {
+			throw new CarnotzetDefinitionException("Unable to find jars " + missing.stream()
+					.map(module -> "[" + module.getJarPath() + "]")
+					.collect(Collectors.joining(", ")));
 		}
 	}
 
-	private void downloadJars(CarnotzetModuleCoordinates topLevelModuleId) {
+	private List<CarnotzetModule> findModulesWithMissingJar(List<CarnotzetModule> modules) {
+		return modules.stream()
+				.filter(module -> !module.getJarPath().toFile().exists())
+				.collect(Collectors.toList());
+	}
+
+	void downloadJarsInProcess(List<CarnotzetModuleCoordinates> modules) {
+		new InProcessDependencyTreeResolver().resolveArtifacts(modules, getLocalRepoPath());
+	}
+
+	void downloadJarsWithMaven(CarnotzetModuleCoordinates topLevelModuleId) {
 		// format : groupId:artifactId:version[:packaging[:classifier]]
 		String gav = topLevelModuleId.getGroupId() + ":" + topLevelModuleId.getArtifactId() + ":" + topLevelModuleId.getVersion() + ":jar";
 		if (topLevelModuleId.getClassifier() != null) {
@@ -101,24 +214,28 @@ public class MavenDependencyResolver {
 		executeMavenBuild(Arrays.asList("org.apache.maven.plugins:maven-dependency-plugin:2.10:get -Dartifact=" + gav), null);
 	}
 
-	private List<CarnotzetModule> convertNodesToModules(List<Node> nodes, String topLevelModuleName) {
+	private List<CarnotzetModule> convertNodesToModules(List<Node> nodes, String topLevelModuleName, Map<Node, List<Node>> dependencies) {
 		List<CarnotzetModule> result = new ArrayList<>();
 
 		for (Node artifact : nodes) {
-			CarnotzetModuleCoordinates coord = new CarnotzetModuleCoordinates(
-					artifact.getGroupId(),
-					artifact.getArtifactId(),
-					artifact.getVersion(),
-					artifact.getClassifier());
+			CarnotzetModuleCoordinates coord = toCoordinates(artifact);
 			String name = moduleNameProvider.apply(coord);
 			if (name == null) {
 				continue;
 			}
+			Set<String> dependencyNames = new LinkedHashSet<>();
+			for (Node dependency : dependencies.getOrDefault(artifact, Collections.emptyList())) {
+				String dependencyName = isInteresting(dependency) ? moduleNameProvider.apply(toCoordinates(dependency)) : null;
+				if (dependencyName != null) {
+					dependencyNames.add(dependencyName);
+				}
+			}
 			CarnotzetModule module = CarnotzetModule.builder()
 					.id(coord)
 					.name(name)
 					.topLevelModuleName(topLevelModuleName)
 					.jarPath(getJarFile(coord))
+					.dependencies(dependencyNames)
 					.build();
 			result.add(module);
 		}
@@ -166,7 +283,9 @@ public class MavenDependencyResolver {
 
 	}
 
-	private void executeMavenBuild(List<String> goals, InvocationOutputHandler outputHandler) {
+	// package-private for tests, forks maven
+	void executeMavenBuild(List<String> goals, InvocationOutputHandler outputHandler) {
+		configureMavenHome();
 		log.debug("Invoking maven with goals {}", goals);
 		InvocationRequest request = new DefaultInvocationRequest();
 		request.setBatchMode(true);
@@ -194,7 +313,28 @@ public class MavenDependencyResolver {
 		return str == null || str.trim().isEmpty();
 	}
 
-	private static File getMavenHome() {
+	/**
+	 * The maven home is only needed to fork maven, it is resolved lazily because finding it may itself require a fork.
+	 */
+	// package-private for tests
+	synchronized void configureMavenHome() {
+		if (mavenHomeConfigured) {
+			return;
+		}
+		long start = System.nanoTime();
+		File mavenHome = getMavenHome();
+		if (mavenHome != null) {
+			maven.setMavenHome(mavenHome);
+		}
+		mavenHomeConfigured = true;
+		long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		log.debug("Resolved maven home [{}] in [{}] ms", mavenHome, durationMillis);
+		if (lifecycleRecorder != null) {
+			lifecycleRecorder.completed(CarnotzetMetricsListener.MAVEN_HOME, Collections.emptyMap(), durationMillis);
+		}
+	}
+
+	private File getMavenHome() {
 		if (!isBlank(System.getProperty(MAVEN_HOME_PROPERTY))) {
 			File mavenHome = new File(System.getProperty(MAVEN_HOME_PROPERTY));
 			if (mavenHome.exists()) {
@@ -208,7 +348,32 @@ public class MavenDependencyResolver {
 			}
 		}
 
-		// Get it directly from maven
+		File mavenHome = getCachedMavenHome();
+		if (mavenHome == null) {
+			log.warn("Could not find a maven home in {} or {} or by calling mvn", MAVEN_HOME_PROPERTY, M2_HOME);
+		}
+		return mavenHome;
+	}
+
+	/**
+	 * A cached maven home that does not exist anymore (maven was upgraded or uninstalled) is looked up again.
+	 */
+	// package-private for tests
+	File getCachedMavenHome() {
+		String cached = readUserConfigCache(MAVEN_HOME_CACHE_KEY);
+		if (!isBlank(cached) && new File(cached).exists()) {
+			return new File(cached);
+		}
+
+		File mavenHome = getMavenHomeFromMaven();
+		if (mavenHome != null) {
+			writeUserConfigCache(MAVEN_HOME_CACHE_KEY, mavenHome.getAbsolutePath());
+		}
+		return mavenHome;
+	}
+
+	// package-private for tests, forks maven
+	File getMavenHomeFromMaven() {
 		String out = DefaultCommandRunner.INSTANCE.runCommandAndCaptureOutput("mvn", "help:evaluate", "-Dexpression=maven.home");
 		String[] lines = out.split("\\R");
 		for (String line : lines) {
@@ -221,8 +386,6 @@ public class MavenDependencyResolver {
 				return mavenHome;
 			}
 		}
-
-		log.warn("Could not find a maven home in {} or {} or by calling mvn", MAVEN_HOME_PROPERTY, M2_HOME);
 		return null;
 	}
 
@@ -247,54 +410,63 @@ public class MavenDependencyResolver {
 
 	private Path getLocalRepoPath() {
 		if (this.localRepoPath == null || !this.localRepoPath.toFile().exists()) {
-			readUserConfigCache();
+			String cached = readUserConfigCache(LOCAL_REPO_PATH_CACHE_KEY);
+			if (cached != null) {
+				this.localRepoPath = Paths.get(cached);
+			}
 			if (this.localRepoPath == null || !this.localRepoPath.toFile().exists()) {
 				getLocalRepoLocationFromMaven();
 				if (this.localRepoPath == null || !this.localRepoPath.toFile().exists()) {
 					throw new CarnotzetDefinitionException("Could not locate maven local repository path");
 				}
-				writeDotConfigCache();
+				writeUserConfigCache(LOCAL_REPO_PATH_CACHE_KEY, this.localRepoPath.toString());
 			}
 
 		}
 		return this.localRepoPath;
 	}
 
-	private void writeDotConfigCache() {
+	private void getLocalRepoLocationFromMaven() {
+		LocalRepoLocationOutputHandler handler = new LocalRepoLocationOutputHandler();
+		executeMavenBuild(Arrays.asList("help:evaluate -Dexpression=settings.localRepository"), handler);
+		this.localRepoPath = Paths.get(handler.getResult());
+	}
+
+	/**
+	 * Values that are expensive to probe from the environment (they require forking maven) are cached in ~/.carnotzet,
+	 * one file per key. Callers must validate the cached value, as the environment may have changed since it was written.
+	 */
+	private void writeUserConfigCache(String key, String value) {
 		Path userConfigFolder = getUserConfigFolder();
 		if (!userConfigFolder.toFile().exists()) {
 			if (!userConfigFolder.toFile().mkdirs()) {
 				throw new CarnotzetDefinitionException("Could not create directory [" + userConfigFolder + "]");
 			}
 		}
-		Path localRepoPathCache = userConfigFolder.resolve("m2LocalRepoPath");
+		Path cacheFile = userConfigFolder.resolve(key);
 		try {
-			Files.write(localRepoPathCache, this.localRepoPath.toString().getBytes(StandardCharsets.UTF_8));
+			Files.write(cacheFile, value.getBytes(StandardCharsets.UTF_8));
 		}
 		catch (IOException e) {
-			log.warn("Could not write file [{}]", localRepoPathCache);
+			log.warn("Could not write file [{}]", cacheFile);
 		}
 	}
 
-	private void getLocalRepoLocationFromMaven() {
-		LocalRepoLocationOutputHandler handler = new LocalRepoLocationOutputHandler();
-		executeMavenBuild(Arrays.asList("help:evaluate -Dexpression=settings.localRepository"), handler);
-		this.localRepoPath = Paths.get(handler.getResult());
-	}
-
-	private void readUserConfigCache() {
-		Path localRepoPathCache = getUserConfigFolder().resolve("m2LocalRepoPath");
-		if (localRepoPathCache.toFile().exists()) {
+	private String readUserConfigCache(String key) {
+		Path cacheFile = getUserConfigFolder().resolve(key);
+		if (cacheFile.toFile().exists()) {
 			try {
-				this.localRepoPath = Paths.get(new String(Files.readAllBytes(localRepoPathCache), StandardCharsets.UTF_8));
+				return new String(Files.readAllBytes(cacheFile), StandardCharsets.UTF_8);
 			}
 			catch (IOException e) {
-				log.warn("unable to read file [{}]", localRepoPathCache);
+				log.warn("unable to read file [{}]", cacheFile);
 			}
 		}
+		return null;
 	}
 
-	private Path getUserConfigFolder() {
+	// package-private for tests
+	Path getUserConfigFolder() {
 		return Paths.get(System.getProperty("user.home")).resolve(".carnotzet");
 	}
 
@@ -1,14 +1,11 @@
 package com.github.swissquote.carnotzet.core.maven;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.Reader;
-import java.util.ArrayList;
 import java.util.LinkedList;
-import java.util.List;
 
 final class ParseUtils {
 
+	private static final int MAX_TOKENS = 7;
+
 	private ParseUtils() {
 		// static method holder
 	}
@@ -16,21 +13,24 @@ final class ParseUtils {
 	/**
 	 * Parses a string representing a Maven artifact in standard notation.
 	 *
+	 * @param line  the line containing the artifact
+	 * @param start index of the first character of the artifact in the line
 	 * @return an instance of {@link Node} representing the artifact.
 	 */
-	static Node parseArtifactString(final String artifact, int id) {
-		final List<String> tokens = new ArrayList<String>(7);
-		int tokenStart = 0;
+	static Node parseArtifactString(final String line, final int start) {
+		final String[] tokens = new String[MAX_TOKENS];
+		int tokenCount = 0;
+		int tokenStart = start;
 		boolean tokenStarted = false;
 		boolean hasDescription = false;
 		boolean omitted = false;
-		int tokenEnd = 0;
-		for (; tokenEnd < artifact.length(); tokenEnd++) {
-			final char c = artifact.charAt(tokenEnd);
+		int tokenEnd = start;
+		for (; tokenEnd < line.length(); tokenEnd++) {
+			final char c = line.charAt(tokenEnd);
 			switch (c) {
 				case ' ': // in descriptions only
 					if (tokenStarted && !hasDescription) {
-						tokens.add(artifact.substring(tokenStart, tokenEnd));
+						tokenCount = addToken(tokens, tokenCount, line, tokenStart, tokenEnd);
 						tokenStarted = false;
 						hasDescription = true;
 					}
@@ -38,7 +38,7 @@ final class ParseUtils {
 
 				case ':':
 				case ')': //end of descriptions and omitted artifacts
-					tokens.add(artifact.substring(tokenStart, tokenEnd));
+					tokenCount = addToken(tokens, tokenCount, line, tokenStart, tokenEnd);
 					tokenStarted = false;
 					continue;
 
@@ -46,7 +46,7 @@ final class ParseUtils {
 					continue;
 
 				case '(': // in omitted artifacts
-					if (tokenEnd == 0) {
+					if (tokenEnd == start) {
 						omitted = true;
 					}
 					continue;
@@ -61,7 +61,7 @@ final class ParseUtils {
 
 		//last token
 		if (tokenStarted) {
-			tokens.add(artifact.substring(tokenStart, tokenEnd));
+			tokenCount = addToken(tokens, tokenCount, line, tokenStart, tokenEnd);
 		}
 
 		String groupId;
@@ -72,58 +72,58 @@ final class ParseUtils {
 		String scope;
 		String description;
 
-		if (tokens.size() == 4) {
+		if (tokenCount == 4) {
 
-			groupId = tokens.get(0);
-			artifactId = tokens.get(1);
-			packaging = tokens.get(2);
-			version = tokens.get(3);
+			groupId = tokens[0];
+			artifactId = tokens[1];
+			packaging = tokens[2];
+			version = tokens[3];
 			scope = null;
 			description = null;
 			classifier = null;
 
-		} else if (tokens.size() == 5) {
+		} else if (tokenCount == 5) {
 
-			groupId = tokens.get(0);
-			artifactId = tokens.get(1);
-			packaging = tokens.get(2);
-			version = tokens.get(3);
-			scope = tokens.get(4);
+			groupId = tokens[0];
+			artifactId = tokens[1];
+			packaging = tokens[2];
+			version = tokens[3];
+			scope = tokens[4];
 			description = null;
 			classifier = null;
 
-		} else if (tokens.size() == 6) {
+		} else if (tokenCount == 6) {
 
 			if (hasDescription) {
-				groupId = tokens.get(0);
-				artifactId = tokens.get(1);
-				packaging = tokens.get(2);
-				version = tokens.get(3);
-				scope = tokens.get(4);
-				description = tokens.get(5);
+				groupId = tokens[0];
+				artifactId = tokens[1];
+				packaging = tokens[2];
+				version = tokens[3];
+				scope = tokens[4];
+				description = tokens[5];
 				classifier = null;
 			} else {
-				groupId = tokens.get(0);
-				artifactId = tokens.get(1);
-				packaging = tokens.get(2);
-				classifier = tokens.get(3);
-				version = tokens.get(4);
-				scope = tokens.get(5);
+				groupId = tokens[0];
+				artifactId = tokens[1];
+				packaging = tokens[2];
+				classifier = tokens[3];
+				version = tokens[4];
+				scope = tokens[5];
 				description = null;
 			}
 
-		} else if (tokens.size() == 7) {
+		} else if (tokenCount == MAX_TOKENS) {
 
-			groupId = tokens.get(0);
-			artifactId = tokens.get(1);
-			packaging = tokens.get(2);
-			classifier = tokens.get(3);
-			version = tokens.get(4);
-			scope = tokens.get(5);
-			description = tokens.get(6);
+			groupId = tokens[0];
+			artifactId = tokens[1];
+			packaging = tokens[2];
+			classifier = tokens[3];
+			version = tokens[4];
+			scope = tokens[5];
+			description = tokens[6];
 
 		} else {
-			throw new IllegalStateException("Wrong number of tokens: " + tokens.size() + " for artifact: " + artifact);
+			throw new IllegalStateException("Wrong number of tokens: " + tokenCount + " for artifact: " + line.substring(start));
 		}
 
 		final Node node = new Node(
@@ -142,19 +142,14 @@ final class ParseUtils {
 
 	}
 
-	static List<String> splitLines(final Reader reader) throws IOException {
-		String line = null;
-		final BufferedReader br;
-		if (reader instanceof BufferedReader) {
-			br = (BufferedReader) reader;
-		} else {
-			br = new BufferedReader(reader);
-		}
-		final List<String> lines = new ArrayList<>();
-		while ((line = br.readLine()) != null) {
-			lines.add(line);
+	/**
+	 * Tokens beyond the maximum are only counted, the artifact string is invalid anyway.
+	 */
+	private static int addToken(String[] tokens, int tokenCount, String line, int tokenStart, int tokenEnd) {
+		if (tokenCount < tokens.length) {
+			tokens[tokenCount] = line.substring(tokenStart, tokenEnd);
 		}
-		return lines;
+		return tokenCount + 1;
 	}
 
 }
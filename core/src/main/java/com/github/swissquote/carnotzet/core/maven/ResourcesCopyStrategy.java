@@ -0,0 +1,27 @@
+package com.github.swissquote.carnotzet.core.maven;
+
+/**
+ * How files of the expanded jars are placed in the resolved folders of the services.<br>
+ * Files that are merged afterwards are always detached from the expanded jars first, so that merges never write through a link.
+ * Files in the files/ and env/ directories are bind mounted read-write in containers, they are always copied.
+ * When a strategy is not supported by the file system (links across devices, missing privileges on Windows...), the next one
+ * in the list below is used instead.
+ */
+public enum ResourcesCopyStrategy {
+
+	/**
+	 * Files are copied, this is the default.
+	 */
+	COPY,
+
+	/**
+	 * Files that are not mounted in containers are hard linked.
+	 */
+	HARDLINK,
+
+	/**
+	 * Files that are not mounted in containers are replaced by absolute symbolic links to the expanded jars, falls back to
+	 * HARDLINK, then COPY.
+	 */
+	SYMLINK
+}
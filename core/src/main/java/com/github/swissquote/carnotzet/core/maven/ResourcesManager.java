@@ -1,54 +1,137 @@
 package com.github.swissquote.carnotzet.core.maven;
 
 import static java.nio.file.Files.exists;
-import static java.nio.file.Files.find;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
-import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.ServiceLoader;
-import java.util.function.BiPredicate;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import com.github.swissquote.carnotzet.core.CarnotzetConfig;
 import com.github.swissquote.carnotzet.core.CarnotzetDefinitionException;
 import com.github.swissquote.carnotzet.core.CarnotzetModule;
 import com.github.swissquote.carnotzet.core.config.FileMerger;
+import com.github.swissquote.carnotzet.core.util.Sha256;
 
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import net.lingala.zip4j.ZipFile;
-import net.lingala.zip4j.exception.ZipException;
 
 @Slf4j
 @RequiredArgsConstructor
 public class ResourcesManager {
 
 	private static final int FIND_MAX_DEPTH = 200;
+	private static final String MANIFEST_SUFFIX = ".manifest";
+	private static final String FINGERPRINTS_FILE = "resolved.fingerprints";
+	// directories of the resolved folders that are mounted in containers or read from disk (welcome pages)
+	private static final List<String> MATERIALIZED_DIRECTORIES = Collections.unmodifiableList(Arrays.asList("files", "env", "welcome"));
+
+	// directories of the resolved folders that are bind mounted read-write in containers, their files are never linked
+	private static final List<String> MOUNTED_DIRECTORIES = Collections.unmodifiableList(Arrays.asList("files", "env"));
 
 	@Getter
 	private final Path resourcesRoot;
 	private final Path expandedJars;
 	private final Path resolved;
+	private final Path fingerprints;
 	private final Path topLevelModuleResourcesPath;
 	private final ServiceLoader<FileMerger> fileMergers;
 
+	/**
+	 * When true, module jars are extracted concurrently, using up to one thread per available processor.
+	 */
+	@Setter
+	private boolean parallelExtraction;
+
+	/**
+	 * When true, jars that did not change since the last extraction (according to the manifest written next to each expanded
+	 * jar) are not extracted again. The top level module is always extracted, to pick up changes in its resources folder.
+	 */
+	@Setter
+	private boolean incrementalExtraction;
+
+	/**
+	 * When true, only the resolved folders of services whose inputs changed since the last resolution are computed again.
+	 * The inputs of a service are fingerprinted using the size and modification time of every expanded jar file that is copied,
+	 * merged or overridden into its resolved folder. The mounted directories (files and env) of the resolved folder are
+	 * fingerprinted the same way, a service is also resolved again when its containers or a user modified them.<br>
+	 * The resolved folders are kept when the jars are extracted again, extracted files keep the modification time of their jar
+	 * entry.
+	 */
+	@Setter
+	private boolean incrementalResolution;
+
+	/**
+	 * How the files of the expanded jars are placed in the resolved folders.
+	 */
+	@Setter
+	private ResourcesCopyStrategy copyStrategy = ResourcesCopyStrategy.COPY;
+
+	/**
+	 * When true, expanded-jars/ and resolved/ are not written to disk : the resources are read from the jars and resolved in
+	 * memory, and only the files, env and welcome directories of the resolved folders are written. Parallel and incremental
+	 * extraction, incremental resolution and the copy strategy do not apply in this mode.
+	 */
+	@Getter
+	@Setter
+	private boolean virtualResources;
+
+	private ResourcesOverlay overlay;
+
+	// only the jar entries that can be part of the configuration of a module are extracted
+	private JarExtractor jarExtractor = new JarExtractor(CarnotzetConfig.DEFAULT_RESOURCES_INCLUDES,
+			CarnotzetConfig.DEFAULT_RESOURCES_EXCLUDES);
+
+	// copyStrategy, or the strategy it fell back to during the current resolution
+	private ResourcesCopyStrategy effectiveCopyStrategy;
+
 	public ResourcesManager(Path resourcesRoot, Path topLevelModuleResourcesPath) {
 		this.resourcesRoot = resourcesRoot;
 		this.expandedJars = resourcesRoot.resolve("expanded-jars");
 		this.resolved = resourcesRoot.resolve("resolved");
+		this.fingerprints = resourcesRoot.resolve(FINGERPRINTS_FILE);
 		this.topLevelModuleResourcesPath = topLevelModuleResourcesPath;
 		this.fileMergers = ServiceLoader.load(FileMerger.class);
 	}
 
+	/**
+	 * Sets the globs of the jar entries to extract (see JarExtractor), null means everything for includes and nothing for excludes.
+	 */
+	public void setExtractionFilter(List<String> includes, List<String> excludes) {
+		this.jarExtractor = new JarExtractor(includes, excludes);
+	}
+
 	public Path getResolvedModuleResourcesPath(CarnotzetModule module) {
 		return resolved.resolve(module.getServiceId());
 	}
@@ -57,6 +140,53 @@ public class ResourcesManager {
 		return expandedJars.resolve(module.getName());
 	}
 
+	/**
+	 * @return the content of a file of the jar of the module, or null if there is no such file
+	 */
+	public InputStream openOwnResource(CarnotzetModule module, String path) throws IOException {
+		if (virtualResources) {
+			return getOverlay().openOwn(module.getName(), path);
+		}
+		return open(getOwnModuleResourcesPath(module).resolve(path));
+	}
+
+	/**
+	 * @return the content of a resolved file of the module, or null if there is no such file
+	 */
+	public InputStream openResolvedResource(CarnotzetModule module, String path) throws IOException {
+		if (virtualResources) {
+			return getOverlay().openResolved(module.getServiceId(), path);
+		}
+		return open(getResolvedModuleResourcesPath(module).resolve(path));
+	}
+
+	/**
+	 * @return the files of a directory of the resolved folder of the module, or null if the directory does not exist
+	 */
+	public List<Path> listResolvedFiles(CarnotzetModule module, String directory) throws IOException {
+		if (virtualResources) {
+			return getOverlay().listResolved(resolved, module.getServiceId(), directory);
+		}
+		Path root = getResolvedModuleResourcesPath(module).resolve(directory);
+		if (!exists(root)) {
+			return null;
+		}
+		try (Stream<Path> walk = Files.walk(root)) {
+			return walk.filter(p -> p.toFile().isFile()).collect(Collectors.toList());
+		}
+	}
+
+	private ResourcesOverlay getOverlay() {
+		if (overlay == null) {
+			throw new IllegalStateException("Resources must be extracted before being read");
+		}
+		return overlay;
+	}
+
+	private static InputStream open(Path file) throws IOException {
+		return file.toFile().exists() ? Files.newInputStream(file) : null;
+	}
+
 	private static void copyDirectory(String sourceDirectoryLocation, String destinationDirectoryLocation)
 			throws IOException {
 		try (Stream<Path> walk = Files.walk(Paths.get(sourceDirectoryLocation))) {
@@ -66,7 +196,7 @@ public class ResourcesManager {
 
 				// Don't try to overwrite directories that already exist
 				if (!(Files.isDirectory(source) && Files.exists(destination))) {
-					Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING);
+					Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
 				}
 			}
 		}
@@ -82,29 +212,40 @@ public class ResourcesManager {
 	public void extractResources(List<CarnotzetModule> modules) {
 
 		try {
+			if (virtualResources) {
+				log.debug("Indexing jars resources");
+				overlay = ResourcesOverlay.index(modules, jarExtractor, topLevelModuleResourcesPath);
+				return;
+			}
 			log.debug("Extracting jars resources to [{}]", resourcesRoot);
-			Files.walk(resourcesRoot)
-					.sorted(Comparator.reverseOrder())
-					.map(Path::toFile)
-					.forEach(File::delete);
-			if (!expandedJars.toFile().mkdirs()) {
-				throw new CarnotzetDefinitionException("Could not create directory [" + resourcesRoot + "]");
+			if (incrementalExtraction && expandedJars.toFile().exists()) {
+				cleanForIncrementalExtraction(modules);
+			} else {
+				if (incrementalResolution) {
+					deleteAllBut(expandedJars);
+					deleteRecursively(expandedJars);
+				} else {
+					deleteRecursively(resourcesRoot);
+				}
+				if (!expandedJars.toFile().mkdirs()) {
+					throw new CarnotzetDefinitionException("Could not create directory [" + resourcesRoot + "]");
+				}
 			}
 			String topLevelModuleName = modules.get(0).getTopLevelModuleName();
 
+			// modules sharing a name are extracted in the same directory, they must be extracted sequentially, in order
+			Map<String, List<CarnotzetModule>> modulesByName = new LinkedHashMap<>();
 			for (CarnotzetModule module : modules) {
-				// First copy all of the resources in the .jar of the module
-				copyModuleResources(module, expandedJars.resolve(module.getName()));
-
-				// If the module is the top level one, then we attempt to overwrite the files from the jar
-				// with fresher files coming directly from the source resource folder
-				if (module.getName().equals(topLevelModuleName)
-						&& topLevelModuleResourcesPath != null
-						&& topLevelModuleResourcesPath.toFile().exists()) {
+				modulesByName.computeIfAbsent(module.getName(), name -> new ArrayList<>()).add(module);
+			}
 
-					copyDirectory(topLevelModuleResourcesPath.toString(),
-							expandedJars.resolve(topLevelModuleName).toString());
+			int threads = parallelExtraction ? Math.min(Runtime.getRuntime().availableProcessors(), modulesByName.size()) : 1;
+			if (threads <= 1) {
+				for (List<CarnotzetModule> sameNameModules : modulesByName.values()) {
+					extractModules(sameNameModules, topLevelModuleName);
 				}
+			} else {
+				extractModulesInParallel(modulesByName.values(), topLevelModuleName, threads);
 			}
 		}
 		catch (IOException ex) {
@@ -112,6 +253,172 @@ public class ResourcesManager {
 		}
 	}
 
+	private void extractModulesInParallel(Iterable<List<CarnotzetModule>> modulesByName, String topLevelModuleName, int threads)
+			throws IOException {
+		log.debug("Extracting jars using [{}] threads", threads);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Void>> extractions = new ArrayList<>();
+			for (List<CarnotzetModule> sameNameModules : modulesByName) {
+				extractions.add(executor.submit(() -> {
+					extractModules(sameNameModules, topLevelModuleName);
+					return null;
+				}));
+			}
+			for (Future<Void> extraction : extractions) {
+				waitFor(extraction);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void waitFor(Future<Void> extraction) throws IOException {
+		try {
+			extraction.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CarnotzetDefinitionException(e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new CarnotzetDefinitionException(cause);
+		}
+	}
+
+	private void extractModules(List<CarnotzetModule> sameNameModules, String topLevelModuleName) throws IOException {
+		String name = sameNameModules.get(0).getName();
+		Path manifest = expandedJars.resolve(name + MANIFEST_SUFFIX);
+		boolean topLevel = name.equals(topLevelModuleName);
+		if (incrementalExtraction) {
+			if (!topLevel && isUpToDate(sameNameModules, manifest)) {
+				log.debug("Jar of module [{}] did not change since last extraction, skipping it", name);
+				return;
+			}
+			// the manifest is only written back once the extraction is complete
+			Files.deleteIfExists(manifest);
+			deleteRecursively(expandedJars.resolve(name));
+		}
+
+		for (CarnotzetModule module : sameNameModules) {
+			// First copy all of the resources in the .jar of the module
+			copyModuleResources(module, expandedJars.resolve(module.getName()));
+
+			// If the module is the top level one, then we attempt to overwrite the files from the jar
+			// with fresher files coming directly from the source resource folder
+			if (module.getName().equals(topLevelModuleName)
+					&& topLevelModuleResourcesPath != null
+					&& topLevelModuleResourcesPath.toFile().exists()) {
+
+				copyDirectory(topLevelModuleResourcesPath.toString(),
+						expandedJars.resolve(topLevelModuleName).toString());
+			}
+		}
+
+		if (incrementalExtraction && !topLevel) {
+			writeManifest(sameNameModules, manifest);
+		}
+	}
+
+	/**
+	 * Removes everything but the expanded jars of the given modules (and their manifests) from the resources root.
+	 */
+	private void cleanForIncrementalExtraction(List<CarnotzetModule> modules) throws IOException {
+		deleteAllBut(expandedJars);
+		Set<String> names = new HashSet<>();
+		for (CarnotzetModule module : modules) {
+			names.add(module.getName());
+			names.add(module.getName() + MANIFEST_SUFFIX);
+		}
+		try (Stream<Path> children = Files.list(expandedJars)) {
+			for (Path child : (Iterable<Path>) children::iterator) {
+				Path fileName = child.getFileName();
+				if (fileName == null || !names.contains(fileName.toString())) {
+					deleteRecursively(child);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Size and modification time are checked first, the checksum of a jar is only computed when one of them changed.
+	 */
+	private boolean isUpToDate(List<CarnotzetModule> sameNameModules, Path manifestPath) throws IOException {
+		if (!manifestPath.toFile().exists() || !expandedJars.resolve(sameNameModules.get(0).getName()).toFile().exists()) {
+			return false;
+		}
+		Properties manifest = new Properties();
+		try (InputStream in = Files.newInputStream(manifestPath)) {
+			manifest.load(in);
+		}
+		if (!String.valueOf(sameNameModules.size()).equals(manifest.getProperty("jars"))
+				|| !String.valueOf(jarExtractor.getIncludes()).equals(manifest.getProperty("includes"))
+				|| !String.valueOf(jarExtractor.getExcludes()).equals(manifest.getProperty("excludes"))) {
+			return false;
+		}
+		boolean touched = false;
+		for (int i = 0; i < sameNameModules.size(); i++) {
+			Path jar = sameNameModules.get(i).getJarPath();
+			if (!jar.toFile().exists() || !jar.toAbsolutePath().toString().equals(manifest.getProperty("jar." + i + ".path"))) {
+				return false;
+			}
+			String size = String.valueOf(Files.size(jar));
+			String mtime = String.valueOf(Files.getLastModifiedTime(jar).toMillis());
+			boolean sameSize = size.equals(manifest.getProperty("jar." + i + ".size"));
+			boolean sameTime = mtime.equals(manifest.getProperty("jar." + i + ".mtime"));
+			if (!sameSize || !sameTime) {
+				if (!Sha256.getSHA(jar).equals(manifest.getProperty("jar." + i + ".sha256"))) {
+					return false;
+				}
+				touched = true;
+			}
+		}
+		if (touched) {
+			// same content, record the new size and modification time to avoid computing checksums next time
+			writeManifest(sameNameModules, manifestPath);
+		}
+		return true;
+	}
+
+	private void writeManifest(List<CarnotzetModule> sameNameModules, Path manifestPath) throws IOException {
+		Properties manifest = new Properties();
+		manifest.setProperty("jars", String.valueOf(sameNameModules.size()));
+		manifest.setProperty("includes", String.valueOf(jarExtractor.getIncludes()));
+		manifest.setProperty("excludes", String.valueOf(jarExtractor.getExcludes()));
+		for (int i = 0; i < sameNameModules.size(); i++) {
+			Path jar = sameNameModules.get(i).getJarPath();
+			manifest.setProperty("jar." + i + ".path", jar.toAbsolutePath().toString());
+			manifest.setProperty("jar." + i + ".size", String.valueOf(Files.size(jar)));
+			manifest.setProperty("jar." + i + ".mtime", String.valueOf(Files.getLastModifiedTime(jar).toMillis()));
+			manifest.setProperty("jar." + i + ".sha256", Sha256.getSHA(jar));
+		}
+		try (OutputStream out = Files.newOutputStream(manifestPath)) {
+			manifest.store(out, "Jars extracted in " + expandedJars.resolve(sameNameModules.get(0).getName()));
+		}
+	}
+
+	private static void deleteRecursively(Path path) throws IOException {
+		if (!path.toFile().exists()) {
+			return;
+		}
+		try (Stream<Path> walk = Files.walk(path)) {
+			walk.sorted(Comparator.reverseOrder())
+					.map(Path::toFile)
+					.forEach(File::delete);
+		}
+	}
+
 	/**
 	 * Compute overrides and merges between module files in expanded jars
 	 * The serviceId of the modules must be filled.
@@ -120,13 +427,49 @@ public class ResourcesManager {
 	 */
 	public void resolveResources(List<CarnotzetModule> modules) {
 		try {
+			if (virtualResources) {
+				log.debug("Resolving resources overrides and merges in memory, writing mounted files to [{}]", resolved);
+				getOverlay().resolve(modules, this::getFileMerger);
+				getOverlay().materialize(resolved, MATERIALIZED_DIRECTORIES);
+				return;
+			}
 			log.debug("Resolving resources overrides and merges in [{}]", resourcesRoot);
-			List<CarnotzetModule> processedModules = new ArrayList<>();
+			effectiveCopyStrategy = copyStrategy;
+			// each expanded jar is walked only once, the index is used for fingerprints, copies, merges and overrides
+			Map<String, ExpandedJarIndex> indexes = new HashMap<>();
+			for (CarnotzetModule module : modules) {
+				if (!indexes.containsKey(module.getName())) {
+					indexes.put(module.getName(), ExpandedJarIndex.build(expandedJars.resolve(module.getName()), FIND_MAX_DEPTH));
+				}
+			}
+
+			Predicate<String> isDirty = serviceId -> true;
+			Properties newFingerprints = null;
+			if (incrementalResolution) {
+				newFingerprints = computeFingerprints(modules, indexes);
+				Set<String> dirty = prepareIncrementalResolution(newFingerprints);
+				log.debug("Resolving resources of services {}", dirty);
+				isDirty = dirty::contains;
+			}
+			ProcessedModules processedModules = new ProcessedModules();
 			for (CarnotzetModule module : modules) {
 				processedModules.add(module);
-				copyOwnResources(processedModules, module);
-				mergeFiles(processedModules, module);
-				overrideFiles(processedModules, module);
+				ExpandedJarIndex index = indexes.get(module.getName());
+				if (isDirty.test(module.getServiceId())) {
+					copyOwnResources(processedModules, module, index);
+				}
+				mergeFiles(processedModules, module, index, isDirty);
+				overrideFiles(processedModules, module, index, isDirty);
+			}
+			if (newFingerprints != null) {
+				Properties stored = new Properties();
+				for (String serviceId : newFingerprints.stringPropertyNames()) {
+					stored.setProperty(serviceId, newFingerprints.getProperty(serviceId) + ":"
+							+ fingerprintMountedFiles(resolved.resolve(serviceId)));
+				}
+				try (OutputStream out = Files.newOutputStream(fingerprints)) {
+					stored.store(out, "Inputs and mounted files of resolved services");
+				}
 			}
 		}
 		catch (IOException ex) {
@@ -134,12 +477,158 @@ public class ResourcesManager {
 		}
 	}
 
+	/**
+	 * Removes everything from the resources root but the given child, and the resolved folders when they are resolved incrementally.
+	 */
+	private void deleteAllBut(Path kept) throws IOException {
+		if (!resourcesRoot.toFile().exists()) {
+			return;
+		}
+		try (Stream<Path> children = Files.list(resourcesRoot)) {
+			for (Path child : (Iterable<Path>) children::iterator) {
+				boolean keepResolved = incrementalResolution && (child.equals(resolved) || child.equals(fingerprints));
+				if (!child.equals(kept) && !keepResolved) {
+					deleteRecursively(child);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Deletes the resolved folders of services that changed or that are not part of the environment anymore.
+	 *
+	 * @return the service ids to resolve again
+	 */
+	private Set<String> prepareIncrementalResolution(Properties newFingerprints) throws IOException {
+		Properties oldFingerprints = new Properties();
+		if (fingerprints.toFile().exists()) {
+			try (InputStream in = Files.newInputStream(fingerprints)) {
+				oldFingerprints.load(in);
+			}
+			// an interrupted resolution must not leave fingerprints that do not match the resolved folders
+			Files.delete(fingerprints);
+		}
+		Set<String> dirty = new HashSet<>();
+		for (String serviceId : newFingerprints.stringPropertyNames()) {
+			String oldFingerprint = oldFingerprints.getProperty(serviceId, "");
+			Path resolvedService = resolved.resolve(serviceId);
+			// the mounted files are only fingerprinted when the inputs did not change
+			if (!oldFingerprint.startsWith(newFingerprints.getProperty(serviceId) + ":")
+					|| !resolvedService.toFile().exists()
+					|| !oldFingerprint.equals(newFingerprints.getProperty(serviceId) + ":" + fingerprintMountedFiles(resolvedService))) {
+				dirty.add(serviceId);
+				deleteRecursively(resolved.resolve(serviceId));
+			}
+		}
+		if (resolved.toFile().exists()) {
+			try (Stream<Path> children = Files.list(resolved)) {
+				for (Path child : (Iterable<Path>) children::iterator) {
+					Path fileName = child.getFileName();
+					if (fileName == null || !newFingerprints.containsKey(fileName.toString())) {
+						deleteRecursively(child);
+					}
+				}
+			}
+		}
+		return dirty;
+	}
+
+	/**
+	 * Mirrors what copyOwnResources, mergeFiles and overrideFiles read : for each service, every file of the expanded jars
+	 * that ends up in its resolved folder is recorded, in processing order, along with the module that provides it.
+	 */
+	private Properties computeFingerprints(List<CarnotzetModule> modules, Map<String, ExpandedJarIndex> indexes) {
+		Map<String, MessageDigest> digests = new LinkedHashMap<>();
+		for (CarnotzetModule module : modules) {
+			digests.computeIfAbsent(module.getServiceId(), serviceId -> newDigest());
+		}
+		for (MessageDigest digest : digests.values()) {
+			for (FileMerger merger : fileMergers) {
+				update(digest, "merger:" + merger.getClass().getName());
+			}
+		}
+
+		ProcessedModules processedModules = new ProcessedModules();
+		for (int i = 0; i < modules.size(); i++) {
+			CarnotzetModule module = modules.get(i);
+			processedModules.add(module);
+			String contributor = i + ":" + module.getName() + ":";
+			MessageDigest own = digests.get(module.getServiceId());
+			update(own, contributor + "own");
+
+			List<ExpandedJarIndex.Entry> entries = new ArrayList<>(indexes.get(module.getName()).getEntries());
+			entries.sort(Comparator.comparing(ExpandedJarIndex.Entry::getRelativePath));
+			for (ExpandedJarIndex.Entry entry : entries) {
+				Path relativePath = entry.getRelativePath();
+				String firstDirectory = entry.getFirstDirectory();
+				String description = relativePath + "/";
+				if (!entry.isDirectory()) {
+					description = relativePath + ":" + entry.getSize() + ":" + entry.getLastModified();
+				}
+				// copyOwnResources : regular files at the root, and directories that are not named after a processed module
+				if (relativePath.getNameCount() == 1 && !entry.isDirectory() || !processedModules.matchesName(firstDirectory)) {
+					update(own, contributor + description);
+				}
+				// mergeFiles and overrideFiles : regular files in a directory named after a processed service
+				if (relativePath.getNameCount() > 1 && entry.isRegularFile() && processedModules.getByServiceId(firstDirectory) != null) {
+					update(digests.get(firstDirectory), contributor + description);
+				}
+			}
+		}
+
+		Properties result = new Properties();
+		digests.forEach((serviceId, digest) -> result.setProperty(serviceId, Sha256.toHexString(digest.digest())));
+		return result;
+	}
+
+	/**
+	 * Files and env are mounted in the containers, which may write to them : the resolved output of a service can only be reused
+	 * when they are unchanged since its resolution.
+	 */
+	private String fingerprintMountedFiles(Path resolvedService) throws IOException {
+		MessageDigest digest = newDigest();
+		for (String directory : MOUNTED_DIRECTORIES) {
+			Path root = resolvedService.resolve(directory);
+			if (!Files.isDirectory(root)) {
+				continue;
+			}
+			List<Path> files;
+			try (Stream<Path> walk = Files.walk(root)) {
+				files = walk.sorted().collect(Collectors.toList());
+			}
+			for (Path file : files) {
+				BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+				Path relativePath = resolvedService.relativize(file);
+				String description = relativePath + "/";
+				if (!attributes.isDirectory()) {
+					description = relativePath + ":" + attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+				}
+				update(digest, description);
+			}
+		}
+		return Sha256.toHexString(digest.digest());
+	}
+
+	private static void update(MessageDigest digest, String entry) {
+		digest.update(entry.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) '\n');
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance(Sha256.ALGORITHM);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/**
 	 * Copies the resources from the specified module that affects itself. Resources that affect dependencies of the
 	 * specified module are not copied.
 	 */
-	private void copyOwnResources(List<CarnotzetModule> processedModules, CarnotzetModule module) throws IOException {
-		Path expandedJarPath = expandedJars.resolve(module.getName());
+	private void copyOwnResources(ProcessedModules processedModules, CarnotzetModule module, ExpandedJarIndex index)
+			throws IOException {
 		Path resolvedModulePath = resolved.resolve(module.getServiceId());
 		if (!resolvedModulePath.toFile().exists() && !resolvedModulePath.toFile().mkdirs()) {
 			throw new CarnotzetDefinitionException("Could not create directory " + resolvedModulePath);
@@ -147,70 +636,66 @@ public class ResourcesManager {
 
 		// copy all regular files at the root of the expanded jar (such as carnotzet.properties)
 		// copy all directories that do not reconfigure another module from the expanded jar recursively
-		Files.find(expandedJarPath, 1, isRegularFile().or(nameMatchesModule(processedModules).negate()))
-				.forEach(source -> {
-					try {
-						if (Files.isRegularFile(source)) {
-							Files.copy(source, resolvedModulePath.resolve(source.getFileName()), StandardCopyOption.REPLACE_EXISTING);
-						} else if (Files.isDirectory(source)) {
-							copyDirectory(source.toString(), resolvedModulePath.resolve(source.getFileName()).toString());
-						}
-					}
-					catch (IOException e) {
-						throw new UncheckedIOException(e);
-					}
-				});
+		for (ExpandedJarIndex.Entry entry : index.getRootEntries()) {
+			Path source = entry.getPath();
+			if (!entry.isRegularFile() && processedModules.matchesName(entry.getFirstDirectory())) {
+				continue;
+			}
+			if (Files.isRegularFile(source)) {
+				placeFile(source, resolvedModulePath.resolve(entry.getRelativePath()));
+			} else if (Files.isDirectory(source)) {
+				placeDirectory(source, resolvedModulePath.resolve(entry.getRelativePath()));
+			}
+		}
 	}
 
 	/**
 	 * Merge the content of files in processed modules and a given module. Note that when this method is called, all the dependencies
 	 * of the specified module have been fully processed, and their currently resolved files are available in ${resolved}/${dep}.
 	 */
-	private void mergeFiles(List<CarnotzetModule> processedModules, CarnotzetModule module) throws IOException {
-		Path moduleExpandedJarPath = expandedJars.resolve(module.getName());
-
-		//going through all the files of the module in target/carnotzet folder
-		find(moduleExpandedJarPath, FIND_MAX_DEPTH, isPotentialMerge()).forEach(mergingFilePath -> {
+	private void mergeFiles(ProcessedModules processedModules, CarnotzetModule module, ExpandedJarIndex index,
+			Predicate<String> isTarget) throws IOException {
+		for (Map.Entry<String, List<ExpandedJarIndex.Entry>> directory : index.getFilesByFirstDirectory().entrySet()) {
+			String mergedModuleName = directory.getKey(); // ${mergedModule}
+			CarnotzetModule mergedModule = processedModules.getByServiceId(mergedModuleName);
+			if (mergedModule == null || !isTarget.test(mergedModuleName)) {
+				continue;
+			}
+			for (ExpandedJarIndex.Entry entry : directory.getValue()) {
+				if (entry.isMerge()) {
+					mergeFile(module, mergedModule, entry);
+				}
+			}
+		}
+	}
 
-			Path relativePath = Paths.get(moduleExpandedJarPath.relativize(mergingFilePath).toString().replace(".merge", ""));
-			Path mergedModulePath = relativePath.subpath(0, 1).getFileName();
-			if (mergedModulePath == null) {
-				// should not happen
+	private void mergeFile(CarnotzetModule module, CarnotzetModule mergedModule, ExpandedJarIndex.Entry entry) throws IOException {
+		Path mergingFilePath = entry.getPath();
+		Path relativePath = Paths.get(entry.getRelativePath().toString().replace(".merge", ""));
+		Path toMergeFile = resolved.resolve(relativePath); // ${resolved}/${mergedModule}/path/to/file
+		FileMerger fileMerger = getFileMerger(toMergeFile);
+		if (fileMerger == null) {
+			log.error("Found [{}] file in module [{}] but there is no registered FileMerger to merge"
+							+ " it with [{}]. Merge file will be ignored",
+					mergingFilePath, module.getName(), toMergeFile);
+			return;
+		}
+		if (!exists(toMergeFile)) {
+			Path toMergeParent = toMergeFile.getParent();
+			if (toMergeParent == null) {
 				return;
 			}
-			String mergedModuleName = mergedModulePath.toString(); // ${mergedModule}
-			processedModules.stream()
-					.filter(m -> m.getServiceId().equals(mergedModuleName))
-					.findFirst()
-					.ifPresent(mergedModule -> {
-						Path toMergeFile = resolved.resolve(relativePath); // ${resolved}/${mergedModule}/path/to/file
-						FileMerger fileMerger = getFileMerger(toMergeFile);
-						if (fileMerger == null) {
-							log.error("Found [{}] file in module [{}] but there is no registered FileMerger to merge"
-											+ " it with [{}]. Merge file will be ignored",
-									mergingFilePath, module.getName(), toMergeFile);
-							return;
-						}
-						if (!exists(toMergeFile)) {
-							Path toMergeParent = toMergeFile.getParent();
-							if (toMergeParent == null) {
-								return;
-							}
-							try {
-								if (!toMergeParent.toFile().exists() && !toMergeParent.toFile().mkdirs()) {
-									throw new IOException("Unable to create directory " + toMergeFile.getParent());
-								}
-								Files.createFile(toMergeFile);
-							}
-							catch (IOException e) {
-								throw new UncheckedIOException(e);
-							}
-							log.debug("Created empty file [{}]", toMergeFile);
-						}
-						fileMerger.merge(toMergeFile, mergingFilePath, toMergeFile);
-						log.debug("Merged [{}] from [{}] into [{}]", mergingFilePath, mergedModule.getServiceId(), toMergeFile);
-					});
-		});
+			if (!toMergeParent.toFile().exists() && !toMergeParent.toFile().mkdirs()) {
+				throw new IOException("Unable to create directory " + toMergeFile.getParent());
+			}
+			Files.createFile(toMergeFile);
+			log.debug("Created empty file [{}]", toMergeFile);
+		}
+		if (copyStrategy != ResourcesCopyStrategy.COPY) {
+			detach(toMergeFile);
+		}
+		fileMerger.merge(toMergeFile, mergingFilePath, toMergeFile);
+		log.debug("Merged [{}] from [{}] into [{}]", mergingFilePath, mergedModule.getServiceId(), toMergeFile);
 	}
 
 	/**
@@ -220,70 +705,107 @@ public class ResourcesManager {
 	 *
 	 * @param processedModules modules that have been processed so far
 	 * @param module           new module to process
+	 * @param index            the files of the expanded jar of the module
+	 * @param isTarget         filters the service ids whose files may be overridden
 	 */
-	private void overrideFiles(List<CarnotzetModule> processedModules, CarnotzetModule module) throws IOException {
-		Path moduleExpandedJarPath = expandedJars.resolve(module.getName());
+	private void overrideFiles(ProcessedModules processedModules, CarnotzetModule module, ExpandedJarIndex index,
+			Predicate<String> isTarget) throws IOException {
+		for (Map.Entry<String, List<ExpandedJarIndex.Entry>> directory : index.getFilesByFirstDirectory().entrySet()) {
+			String overriddenModuleName = directory.getKey(); // ${overridenModule}
+			CarnotzetModule overriddenModule = processedModules.getByServiceId(overriddenModuleName);
+			if (overriddenModule == null || !isTarget.test(overriddenModuleName)) {
+				continue;
+			}
+			for (ExpandedJarIndex.Entry entry : directory.getValue()) {
+				if (entry.isMerge()) {
+					continue;
+				}
+				// ${resolved}/${overrideModule}/path/to/file
+				Path toOverrideFile = resolved.resolve(entry.getRelativePath());
+				Path toOverrideParent = toOverrideFile.getParent();
+				if (toOverrideParent == null) {
+					continue;
+				}
+				if (!toOverrideParent.toFile().exists() && !toOverrideParent.toFile().mkdirs()) {
+					throw new IOException("Unable to create directory " + toOverrideFile.getParent());
+				}
+				placeFile(entry.getPath(), toOverrideFile);
+				log.debug("Overridden [" + toOverrideFile.getFileName() + "] "
+						+ "in [" + overriddenModule.getServiceId() + "] "
+						+ "with file from [" + module.getName() + "]");
+			}
+		}
+	}
 
-		//going through all the files of the module in target/carnotzet folder
-		find(moduleExpandedJarPath, FIND_MAX_DEPTH, isPotentialOverride()).forEach(overridingFilePath -> {
+	private void placeDirectory(Path source, Path destination) throws IOException {
+		try (Stream<Path> walk = Files.walk(source)) {
+			for (Path file : (Iterable<Path>) walk::iterator) {
+				Path target = destination.resolve(source.relativize(file).toString());
+				if (Files.isDirectory(file)) {
+					// Don't try to overwrite directories that already exist
+					if (!Files.exists(target)) {
+						Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+					}
+				} else {
+					placeFile(file, target);
+				}
+			}
+		}
+	}
 
-			Path relativePath = moduleExpandedJarPath.relativize(overridingFilePath); // ${overridenModule}/path/to/file
-			Path overriddenModulePath = relativePath.subpath(0, 1).getFileName();
-			if (overriddenModulePath == null) {
-				// should not happen
+	/**
+	 * Places a file of an expanded jar in a resolved folder according to the copy strategy, replacing any existing file.
+	 * Files that are mounted in containers are always copied, a container writing to them must not modify the expanded jars.
+	 */
+	private void placeFile(Path source, Path destination) throws IOException {
+		if (isMounted(destination)) {
+			Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+			return;
+		}
+		if (effectiveCopyStrategy == ResourcesCopyStrategy.SYMLINK) {
+			try {
+				Files.deleteIfExists(destination);
+				Files.createSymbolicLink(destination, source.toAbsolutePath());
 				return;
 			}
-			String overriddenModuleName = overriddenModulePath.toString(); // ${overridenModule}
-			processedModules.stream()
-					.filter(m -> m.getServiceId().equals(overriddenModuleName))
-					.findFirst()
-					.ifPresent(overriddenModule -> {
-						Path toOverrideFile = resolved.resolve(relativePath); // ${resolved}/${overrideModule}/path/to/file
-						Path toOverrideParent = toOverrideFile.getParent();
-						if (toOverrideParent == null) {
-							return;
-						}
-						try {
-							if (!toOverrideParent.toFile().exists() && !toOverrideParent.toFile().mkdirs()) {
-								throw new IOException("Unable to create directory " + toOverrideFile.getParent());
-							}
-							Files.copy(overridingFilePath, toOverrideFile, StandardCopyOption.REPLACE_EXISTING);
-							log.debug("Overridden [" + toOverrideFile.getFileName() + "] "
-									+ "in [" + overriddenModule.getServiceId() + "] "
-									+ "with file from [" + module.getName() + "]");
-						}
-						catch (IOException e) {
-							throw new UncheckedIOException(e);
-						}
-					});
-		});
-	}
-
-	private BiPredicate<Path, BasicFileAttributes> isPotentialMerge() {
-		return isRegularFile().and(nameEndsWithMerge());
-	}
-
-	private BiPredicate<Path, BasicFileAttributes> isPotentialOverride() {
-		return isRegularFile().and(nameEndsWithMerge().negate());
-	}
-
-	private BiPredicate<Path, BasicFileAttributes> isRegularFile() {
-		return (filePath, fileAttr) -> fileAttr.isRegularFile();
-	}
-
-	private BiPredicate<Path, BasicFileAttributes> nameEndsWithMerge() {
-		return (filePath, fileAttr) -> filePath.toAbsolutePath().toString().endsWith(".merge");
-	}
-
-	private BiPredicate<Path, BasicFileAttributes> nameMatchesModule(List<CarnotzetModule> modules) {
-		return (filePath, fileAttr) -> {
-			Path fileName = filePath.getFileName();
-			if (fileName == null) {
-				// Should not happen
-				return false;
+			catch (UnsupportedOperationException | IOException e) {
+				fallBack(ResourcesCopyStrategy.HARDLINK, e);
+			}
+		}
+		if (effectiveCopyStrategy == ResourcesCopyStrategy.HARDLINK) {
+			try {
+				Files.deleteIfExists(destination);
+				Files.createLink(destination, source);
+				return;
 			}
-			return modules.stream().anyMatch(m -> m.getServiceId().equals(fileName.toString()) || m.getName().equals(fileName.toString()));
-		};
+			catch (UnsupportedOperationException | IOException e) {
+				fallBack(ResourcesCopyStrategy.COPY, e);
+			}
+		}
+		Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+	}
+
+	/**
+	 * True for ${resolved}/${service}/files/** and ${resolved}/${service}/env/**
+	 */
+	private boolean isMounted(Path destination) {
+		Path relative = resolved.relativize(destination);
+		return relative.getNameCount() > 2 && MOUNTED_DIRECTORIES.contains(relative.getName(1).toString());
+	}
+
+	private void fallBack(ResourcesCopyStrategy strategy, Exception cause) {
+		log.info("Resources cannot be placed with strategy [{}] ({}), falling back to [{}]", effectiveCopyStrategy, cause.toString(),
+				strategy);
+		effectiveCopyStrategy = strategy;
+	}
+
+	/**
+	 * Replaces a file that may be linked to an expanded jar by a copy of its content, so that it can be written safely.
+	 */
+	private static void detach(Path file) throws IOException {
+		Path copy = Paths.get(file.toString() + ".detached");
+		Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+		Files.move(copy, file, StandardCopyOption.REPLACE_EXISTING);
 	}
 
 	/**
@@ -298,14 +820,32 @@ public class ResourcesManager {
 		return null;
 	}
 
-	private void copyModuleResources(CarnotzetModule module, Path moduleResourcesPath) {
-		try {
-			ZipFile f = new ZipFile(module.getJarPath().toFile());
-			f.extractAll(moduleResourcesPath.toAbsolutePath().toString());
+	private void copyModuleResources(CarnotzetModule module, Path moduleResourcesPath) throws IOException {
+		jarExtractor.extract(module.getJarPath(), moduleResourcesPath);
+	}
+
+	/**
+	 * Modules processed so far, indexed by name and service id.
+	 */
+	static final class ProcessedModules {
+
+		private final Set<String> namesAndServiceIds = new HashSet<>();
+
+		private final Map<String, CarnotzetModule> byServiceId = new HashMap<>();
+
+		void add(CarnotzetModule module) {
+			namesAndServiceIds.add(module.getName());
+			namesAndServiceIds.add(module.getServiceId());
+			// the first module processed for a service id wins, as with variants only one is actually used
+			byServiceId.putIfAbsent(module.getServiceId(), module);
 		}
-		catch (ZipException e) {
-			throw new CarnotzetDefinitionException(e);
+
+		boolean matchesName(String name) {
+			return namesAndServiceIds.contains(name);
 		}
 
+		CarnotzetModule getByServiceId(String serviceId) {
+			return byServiceId.get(serviceId);
+		}
 	}
 }
@@ -0,0 +1,416 @@
+package com.github.swissquote.carnotzet.core.maven;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.github.swissquote.carnotzet.core.CarnotzetDefinitionException;
+import com.github.swissquote.carnotzet.core.CarnotzetModule;
+import com.github.swissquote.carnotzet.core.config.FileMerger;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In memory view of the resources of the modules, used instead of expanded-jars/ and resolved/ when virtual resources are
+ * enabled.<br>
+ * Each module has a layer of entries, read from the central directory of its jar (and from the resources folder of the top level
+ * module). The resolved view of a service only references the entries it is made of, following the same copy, merge and
+ * override rules as the ResourcesManager. Merged files are computed when they are first read, and only the directories that
+ * are mounted in containers are written to disk.
+ */
+@Slf4j
+final class ResourcesOverlay {
+
+	private static final String MERGE_SUFFIX = ".merge";
+
+	// module name -> relative path -> source
+	private final Map<String, Map<String, Source>> layers;
+
+	// service id -> relative path -> source
+	private final Map<String, Map<String, Source>> services = new LinkedHashMap<>();
+
+	private ResourcesOverlay(Map<String, Map<String, Source>> layers) {
+		this.layers = layers;
+	}
+
+	/**
+	 * Builds the layers of the given modules, modules sharing a name share a layer in which the last jar wins.
+	 */
+	static ResourcesOverlay index(List<CarnotzetModule> modules, JarExtractor filter, Path topLevelModuleResourcesPath)
+			throws IOException {
+		String topLevelModuleName = modules.get(0).getTopLevelModuleName();
+		Map<String, Map<String, Source>> layers = new HashMap<>();
+		for (CarnotzetModule module : modules) {
+			Map<String, Source> layer = layers.computeIfAbsent(module.getName(), name -> new LinkedHashMap<>());
+			indexJar(module.getJarPath(), filter, layer);
+			// same as the extraction : fresher files from the source resources folder win over the jar of the top level module
+			if (module.getName().equals(topLevelModuleName)
+					&& topLevelModuleResourcesPath != null
+					&& topLevelModuleResourcesPath.toFile().exists()) {
+				indexDirectory(topLevelModuleResourcesPath, layer);
+			}
+		}
+		return new ResourcesOverlay(layers);
+	}
+
+	private static void indexJar(Path jar, JarExtractor filter, Map<String, Source> layer) throws IOException {
+		try (ZipFile zip = new ZipFile(jar.toFile())) {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (entry.isDirectory() || !filter.isIncluded(entry.getName())) {
+					continue;
+				}
+				Path normalized = Paths.get(entry.getName()).normalize();
+				if (normalized.isAbsolute() || normalized.startsWith("..")) {
+					throw new CarnotzetDefinitionException("Entry [" + entry.getName() + "] of [" + jar + "] is outside of the jar");
+				}
+				layer.put(toKey(normalized), new JarEntrySource(jar, entry.getName(), entry.getSize(), entry.getTime()));
+			}
+		}
+	}
+
+	private static void indexDirectory(Path directory, Map<String, Source> layer) throws IOException {
+		try (Stream<Path> walk = Files.walk(directory)) {
+			for (Path file : (Iterable<Path>) walk::iterator) {
+				if (Files.isRegularFile(file)) {
+					layer.put(toKey(directory.relativize(file)), new FileSource(file, Files.size(file),
+							Files.getLastModifiedTime(file).toMillis()));
+				}
+			}
+		}
+	}
+
+	private static String toKey(Path relativePath) {
+		StringBuilder key = new StringBuilder();
+		for (Path name : relativePath) {
+			if (key.length() > 0) {
+				key.append('/');
+			}
+			key.append(name);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Computes the resolved view of each service.
+	 *
+	 * @param modules ordered from leaves to top level module
+	 * @param mergers finds the FileMerger that can merge a given file, or returns null
+	 */
+	void resolve(List<CarnotzetModule> modules, Function<Path, FileMerger> mergers) {
+		services.clear();
+		ResourcesManager.ProcessedModules processedModules = new ResourcesManager.ProcessedModules();
+		for (CarnotzetModule module : modules) {
+			processedModules.add(module);
+			Map<String, Source> layer = layers.getOrDefault(module.getName(), Collections.emptyMap());
+			Map<String, Source> own = services.computeIfAbsent(module.getServiceId(), serviceId -> new TreeMap<>());
+
+			// own resources : files at the root, and directories that do not reconfigure another module
+			for (Map.Entry<String, Source> entry : layer.entrySet()) {
+				int slash = entry.getKey().indexOf('/');
+				if (slash < 0 || !processedModules.matchesName(entry.getKey().substring(0, slash))) {
+					own.put(entry.getKey(), entry.getValue());
+				}
+			}
+			// merges, then overrides, in directories named after processed services
+			for (Map.Entry<String, Source> entry : layer.entrySet()) {
+				if (entry.getKey().endsWith(MERGE_SUFFIX)) {
+					merge(processedModules, module, entry.getKey(), entry.getValue(), mergers);
+				}
+			}
+			for (Map.Entry<String, Source> entry : layer.entrySet()) {
+				String serviceId = getTargetServiceId(processedModules, entry.getKey());
+				if (serviceId != null && !entry.getKey().endsWith(MERGE_SUFFIX)) {
+					services.get(serviceId).put(entry.getKey().substring(serviceId.length() + 1), entry.getValue());
+					log.debug("Overridden [{}] in [{}] with file from [{}]", entry.getKey(), serviceId, module.getName());
+				}
+			}
+		}
+	}
+
+	private void merge(ResourcesManager.ProcessedModules processedModules, CarnotzetModule module, String key, Source source,
+			Function<Path, FileMerger> mergers) {
+		String serviceId = getTargetServiceId(processedModules, key);
+		if (serviceId == null) {
+			return;
+		}
+		String target = key.substring(serviceId.length() + 1).replace(MERGE_SUFFIX, "");
+		Path targetPath = Paths.get(target);
+		FileMerger fileMerger = mergers.apply(targetPath);
+		if (fileMerger == null) {
+			log.error("Found [{}] file in module [{}] but there is no registered FileMerger to merge"
+							+ " it with [{}] of [{}]. Merge file will be ignored",
+					key, module.getName(), target, serviceId);
+			return;
+		}
+		Map<String, Source> service = services.get(serviceId);
+		Path fileName = targetPath.getFileName();
+		service.put(target, new MergedSource(service.get(target), source, fileMerger, fileName == null ? target : fileName.toString()));
+		log.debug("Merged [{}] from [{}] into [{}]", key, module.getName(), target);
+	}
+
+	private static String getTargetServiceId(ResourcesManager.ProcessedModules processedModules, String key) {
+		int slash = key.indexOf('/');
+		if (slash < 0) {
+			return null;
+		}
+		String firstDirectory = key.substring(0, slash);
+		return processedModules.getByServiceId(firstDirectory) == null ? null : firstDirectory;
+	}
+
+	/**
+	 * Writes the files of the given directories of each resolved service to disk. Files that did not change are left untouched
+	 * and files that are not part of the resolved view anymore are deleted.
+	 */
+	void materialize(Path resolved, List<String> directories) throws IOException {
+		try (Jars jars = new Jars()) {
+			for (Map.Entry<String, Map<String, Source>> service : services.entrySet()) {
+				Path serviceRoot = resolved.resolve(service.getKey());
+				Set<Path> expected = new HashSet<>();
+				for (Map.Entry<String, Source> entry : service.getValue().entrySet()) {
+					if (isIn(directories, entry.getKey())) {
+						Path target = serviceRoot.resolve(entry.getKey());
+						expected.add(target);
+						write(entry.getValue(), target, jars);
+					}
+				}
+				deleteOtherFiles(serviceRoot, directories, expected);
+			}
+		}
+	}
+
+	private static boolean isIn(List<String> directories, String key) {
+		int slash = key.indexOf('/');
+		return slash > 0 && directories.contains(key.substring(0, slash));
+	}
+
+	private static void write(Source source, Path target, Jars jars) throws IOException {
+		if (Files.isRegularFile(target)) {
+			boolean upToDate;
+			if (source.getLastModified() >= 0) {
+				upToDate = Files.size(target) == source.getSize() && Files.getLastModifiedTime(target).toMillis() == source.getLastModified();
+			} else {
+				upToDate = Arrays.equals(Files.readAllBytes(target), read(source, jars));
+			}
+			if (upToDate) {
+				return;
+			}
+		}
+		Path parent = target.getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		try (InputStream in = source.open(jars)) {
+			Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+		if (source.getLastModified() >= 0) {
+			Files.setLastModifiedTime(target, FileTime.fromMillis(source.getLastModified()));
+		}
+	}
+
+	private static void deleteOtherFiles(Path serviceRoot, List<String> directories, Set<Path> expected) throws IOException {
+		for (String directory : directories) {
+			Path root = serviceRoot.resolve(directory);
+			if (!root.toFile().exists()) {
+				continue;
+			}
+			try (Stream<Path> walk = Files.walk(root)) {
+				for (Path file : (Iterable<Path>) walk::iterator) {
+					if (Files.isRegularFile(file) && !expected.contains(file)) {
+						Files.delete(file);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the content of a file of the jar of the given module, or null if there is no such file
+	 */
+	InputStream openOwn(String moduleName, String path) throws IOException {
+		return open(layers.getOrDefault(moduleName, Collections.emptyMap()).get(path));
+	}
+
+	/**
+	 * @return the content of a resolved file of the given service, or null if there is no such file
+	 */
+	InputStream openResolved(String serviceId, String path) throws IOException {
+		return open(services.getOrDefault(serviceId, Collections.emptyMap()).get(path));
+	}
+
+	/**
+	 * @return the materialized files of a directory of a resolved service, or null if there is no such directory
+	 */
+	List<Path> listResolved(Path resolved, String serviceId, String directory) {
+		List<Path> result = new ArrayList<>();
+		for (String key : services.getOrDefault(serviceId, Collections.emptyMap()).keySet()) {
+			if (key.startsWith(directory + "/")) {
+				result.add(resolved.resolve(serviceId).resolve(key));
+			}
+		}
+		return result.isEmpty() ? null : result;
+	}
+
+	private static InputStream open(Source source) throws IOException {
+		if (source == null) {
+			return null;
+		}
+		try (Jars jars = new Jars()) {
+			return new ByteArrayInputStream(read(source, jars));
+		}
+	}
+
+	private static byte[] read(Source source, Jars jars) throws IOException {
+		try (InputStream in = source.open(jars)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = in.read(buffer)) != -1) {
+				out.write(buffer, 0, count);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	/**
+	 * Content of a resolved file, size and modification time are -1 when unknown.
+	 */
+	private interface Source {
+
+		InputStream open(Jars jars) throws IOException;
+
+		long getSize();
+
+		long getLastModified();
+	}
+
+	@Getter
+	@RequiredArgsConstructor
+	private static final class JarEntrySource implements Source {
+		private final Path jar;
+		private final String name;
+		private final long size;
+		private final long lastModified;
+
+		@Override
+		public InputStream open(Jars jars) throws IOException {
+			ZipFile zip = jars.get(jar);
+			ZipEntry entry = zip.getEntry(name);
+			if (entry == null) {
+				throw new IOException("Entry [" + name + "] not found in [" + jar + "]");
+			}
+			return zip.getInputStream(entry);
+		}
+	}
+
+	@Getter
+	@RequiredArgsConstructor
+	private static final class FileSource implements Source {
+		private final Path file;
+		private final long size;
+		private final long lastModified;
+
+		@Override
+		public InputStream open(Jars jars) throws IOException {
+			return Files.newInputStream(file);
+		}
+	}
+
+	/**
+	 * A file merged into another one, the result is computed once, through temporary files since FileMerger works on paths.
+	 */
+	@RequiredArgsConstructor
+	private static final class MergedSource implements Source {
+		// null when the file is only created by the merge
+		private final Source base;
+		private final Source merging;
+		private final FileMerger fileMerger;
+		private final String fileName;
+		private byte[] content;
+
+		// the configuration of modules may read resolved files concurrently
+		@Override
+		public synchronized InputStream open(Jars jars) throws IOException {
+			if (content == null) {
+				content = merge(jars);
+			}
+			return new ByteArrayInputStream(content);
+		}
+
+		private byte[] merge(Jars jars) throws IOException {
+			Path directory = Files.createTempDirectory("carnotzet-merge");
+			Path file1 = directory.resolve(fileName);
+			Path file2 = directory.resolve(fileName + MERGE_SUFFIX);
+			try {
+				Files.write(file1, base == null ? new byte[0] : read(base, jars));
+				Files.write(file2, read(merging, jars));
+				fileMerger.merge(file1, file2, file1);
+				return Files.readAllBytes(file1);
+			}
+			finally {
+				Files.deleteIfExists(file1);
+				Files.deleteIfExists(file2);
+				Files.deleteIfExists(directory);
+			}
+		}
+
+		@Override
+		public long getSize() {
+			return -1;
+		}
+
+		@Override
+		public long getLastModified() {
+			return -1;
+		}
+	}
+
+	/**
+	 * Jars opened while reading sources, so that the central directory of a jar is only read once.
+	 */
+	private static final class Jars implements Closeable {
+
+		private final Map<Path, ZipFile> opened = new HashMap<>();
+
+		ZipFile get(Path jar) throws IOException {
+			ZipFile zip = opened.get(jar);
+			if (zip == null) {
+				zip = new ZipFile(jar.toFile());
+				opened.put(jar, zip);
+			}
+			return zip;
+		}
+
+		@Override
+		public void close() throws IOException {
+			for (ZipFile zip : opened.values()) {
+				zip.close();
+			}
+		}
+	}
+}
@@ -1,135 +1,229 @@
 package com.github.swissquote.carnotzet.core.maven;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
-import java.util.Set;
-import java.util.Stack;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import com.github.swissquote.carnotzet.core.CarnotzetDefinitionException;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Topologically order the dependency graph<br>
  * https://en.wikipedia.org/wiki/Topological_sorting<br>
+ * Each GA is assigned an int id once, the graph and the visit state are then only manipulated as int arrays.
+ * The traversal is iterative, so that deep graphs cannot overflow the call stack. The input tree is not modified.
  */
 @Slf4j
 public class TopologicalSorter {
 
 	public List<Node> sort(Node root, boolean failOnCycles) {
-		return new Sort(root, failOnCycles).compute();
+		return new Sort(root, failOnCycles, null).compute();
+	}
+
+	/**
+	 * Sorts only the nodes matching isModule (and the root).<br>
+	 * The graph is first projected onto those nodes : a module depends on another one if there is a path between them that only
+	 * goes through non module nodes. Sorting and cycle detection then only scale with the number of modules.
+	 */
+	public List<Node> sort(Node root, boolean failOnCycles, Predicate<Node> isModule) {
+		return new Sort(root, failOnCycles, isModule).compute();
+	}
+
+	/**
+	 * Same as sort(root, failOnCycles, isModule), the direct module dependencies of each sorted node are also given to
+	 * dependencies, in the order of the dependency tree.
+	 */
+	public List<Node> sort(Node root, boolean failOnCycles, Predicate<Node> isModule, BiConsumer<Node, List<Node>> dependencies) {
+		Sort sort = new Sort(root, failOnCycles, isModule);
+		List<Node> result = sort.compute();
+		sort.visitDependencies(dependencies);
+		return result;
 	}
 
-	@RequiredArgsConstructor
 	private static final class Sort {
 
+		private static final byte NEW = 0;
+		private static final byte TEMPORARY = 1;
+		private static final byte PERMANENT = 2;
+
 		private final Node root;
 
-		private final Boolean failOnCycles;
+		private final boolean failOnCycles;
+
+		private final Predicate<Node> isModule;
 
-		private final Map<GA, Node> resolvedNodes = new HashMap<>();
+		// groupId -> artifactId -> id, nested to avoid allocating a key for each lookup
+		private final Map<String, Map<String, Integer>> ids = new HashMap<>();
 
-		// Only used to provide nice error messages in case of cycles
-		private final Stack<Node> stack = new Stack<>();
+		// resolved (not omitted) node for each id
+		private final List<Node> resolvedNodes = new ArrayList<>();
 
-		// for cycles detection
-		private final Set<GA> temporaryMarkers = new HashSet<>();
-		private final Set<GA> permanentMarkers = new HashSet<>();
+		// ids of the dependencies of each id, omitted nodes are replaced by the resolved node of the same GA
+		private int[][] graph;
 
-		private final List<Node> result = new ArrayList<>();
+		Sort(Node root, boolean failOnCycles, Predicate<Node> isModule) {
+			this.root = root;
+			this.failOnCycles = failOnCycles;
+			this.isModule = isModule;
+		}
+
+		private void visitDependencies(BiConsumer<Node, List<Node>> dependencies) {
+			for (int id = 0; id < graph.length; id++) {
+				List<Node> children = new ArrayList<>(graph[id].length);
+				for (int child : graph[id]) {
+					children.add(resolvedNodes.get(child));
+				}
+				dependencies.accept(resolvedNodes.get(id), children);
+			}
+		}
 
 		private List<Node> compute() {
 			// sorting the resolved tree is not enough because of omitted nodes, see unit tests for counter examples.
-			getGraphFromResolvedTree(root);
-			depthFirst(root);
-			return result;
+			findResolvedNodes();
+			buildGraph();
+			int rootId = getId(root);
+			if (isModule != null) {
+				graph = new Projection(graph, getModules(rootId), cycle -> reportCycle(cycle, 0, cycle.length)).compute();
+			}
+			return depthFirst(rootId);
 		}
 
-		private void getGraphFromResolvedTree(Node n) {
-			findResolvedNodes(n);
-			for (Node r : resolvedNodes.values()) {
-				replaceOmittedNodesByResolved(r.getChildNodes());
+		private boolean[] getModules(int rootId) {
+			boolean[] modules = new boolean[graph.length];
+			for (int id = 0; id < modules.length; id++) {
+				modules[id] = id == rootId || isModule.test(resolvedNodes.get(id));
 			}
+			return modules;
 		}
 
-		private void replaceOmittedNodesByResolved(List<Node> nodes) {
-			ListIterator<Node> i = nodes.listIterator();
-			while (i.hasNext()) {
-				Node child = i.next();
-				if (child.isOmitted()) {
-					GA childGA = new GA(child.getGroupId(), child.getArtifactId());
-					Node resolved = resolvedNodes.get(childGA);
-					if (resolved == null) {
-						i.remove();
-					} else {
-						i.set(resolved);
-					}
+		/**
+		 * Pre-order traversal of the non omitted nodes, the last node found for a GA wins.
+		 */
+		private void findResolvedNodes() {
+			Deque<Node> toVisit = new ArrayDeque<>();
+			toVisit.push(root);
+			while (!toVisit.isEmpty()) {
+				Node n = toVisit.pop();
+				if (n.isOmitted()) {
+					continue;
+				}
+				Map<String, Integer> artifactIds = ids.computeIfAbsent(n.getGroupId(), k -> new HashMap<>());
+				Integer id = artifactIds.get(n.getArtifactId());
+				if (id == null) {
+					artifactIds.put(n.getArtifactId(), resolvedNodes.size());
+					resolvedNodes.add(n);
+				} else {
+					resolvedNodes.set(id, n);
+				}
+				List<Node> children = n.getChildNodes();
+				ListIterator<Node> i = children.listIterator(children.size());
+				while (i.hasPrevious()) {
+					toVisit.push(i.previous());
 				}
 			}
 		}
 
-		private void findResolvedNodes(Node n) {
-			if (!n.isOmitted()) {
-				GA nGA = new GA(n.getGroupId(), n.getArtifactId());
-				resolvedNodes.put(nGA, n);
-				n.getChildNodes().forEach(this::findResolvedNodes);
+		private void buildGraph() {
+			graph = new int[resolvedNodes.size()][];
+			for (int id = 0; id < graph.length; id++) {
+				List<Node> children = resolvedNodes.get(id).getChildNodes();
+				int[] edges = new int[children.size()];
+				int count = 0;
+				for (Node child : children) {
+					int childId = getId(child);
+					// omitted nodes that are not resolved anywhere in the tree are ignored
+					if (childId >= 0) {
+						edges[count++] = childId;
+					}
+				}
+				graph[id] = count == edges.length ? edges : Arrays.copyOf(edges, count);
 			}
 		}
 
-		private void depthFirst(Node n) {
-			GA nGA = new GA(n.getGroupId(), n.getArtifactId());
-			if (permanentMarkers.contains(nGA)) {
-				return;
-			}
-			stack.push(n);
-			if (temporaryMarkers.contains(nGA)) {
-				String message = buildCycleMessage();
-				if (failOnCycles) {
-					throw new CarnotzetDefinitionException(message);
+		private int getId(Node n) {
+			Map<String, Integer> artifactIds = ids.get(n.getGroupId());
+			Integer id = artifactIds == null ? null : artifactIds.get(n.getArtifactId());
+			return id == null ? -1 : id;
+		}
+
+		private List<Node> depthFirst(int rootId) {
+			List<Node> result = new ArrayList<>(graph.length);
+			byte[] state = new byte[graph.length];
+			// current path from the root, and the index of the next child to visit for each node in the path
+			int[] path = new int[graph.length];
+			int[] nextChild = new int[graph.length];
+			int depth = 0;
+
+			path[depth] = rootId;
+			nextChild[depth] = 0;
+			state[rootId] = TEMPORARY;
+			depth++;
+
+			while (depth > 0) {
+				int id = path[depth - 1];
+				int[] children = graph[id];
+				if (nextChild[depth - 1] < children.length) {
+					int child = children[nextChild[depth - 1]++];
+					if (state[child] == PERMANENT) {
+						continue;
+					}
+					if (state[child] == TEMPORARY) {
+						int start = depth - 1;
+						while (path[start] != child) {
+							start--;
+						}
+						reportCycle(path, start, depth);
+						continue; // ignore the dependency
+					}
+					state[child] = TEMPORARY;
+					path[depth] = child;
+					nextChild[depth] = 0;
+					depth++;
 				} else {
-					log.warn(message);
-					return; // ignore the dependency
+					depth--;
+					state[id] = PERMANENT;
+					result.add(resolvedNodes.get(id));
 				}
-
-			}
-			temporaryMarkers.add(nGA);
-			for (Node child : n.getChildNodes()) {
-				depthFirst(child);
 			}
-			stack.pop();
-			permanentMarkers.add(nGA);
-			result.add(n);
-
+			return result;
 		}
 
-		private String buildCycleMessage() {
-			Stack<Node> s = (Stack<Node>) stack.clone();
-			Node root = s.pop();
-			List<Node> cycle = new LinkedList<>();
-			cycle.add(root);
-			Node current = s.pop();
-			while (current != root) {
-				cycle.add(0, current);
-				current = s.pop();
+		/**
+		 * The cycle goes through ids[from] to ids[to - 1], then back to ids[from]
+		 */
+		private void reportCycle(int[] ids, int from, int to) {
+			String message = buildCycleMessage(ids, from, to);
+			if (failOnCycles) {
+				throw new CarnotzetDefinitionException(message);
 			}
+			log.warn(message);
+		}
+
+		private String buildCycleMessage(int[] ids, int from, int to) {
+			int cycleRoot = ids[from];
 
 			StringBuilder sb = new StringBuilder();
 
 			sb.append("Cycle detected in dependencies graph (not a DAG). This can cause configuration overrides to be ignored.");
 			sb.append(" To ensure correctness, remove the following cycle : ");
 
-			sb.append(formatNode(root));
+			sb.append(formatNode(resolvedNodes.get(cycleRoot)));
 
-			cycle.forEach(node -> {
+			for (int i = from + 1; i < to; i++) {
 				sb.append(" -> ");
-				sb.append(formatNode(node));
-			});
+				sb.append(formatNode(resolvedNodes.get(ids[i])));
+			}
+			sb.append(" -> ");
+			sb.append(formatNode(resolvedNodes.get(cycleRoot)));
 
 			return sb.toString();
 		}
@@ -138,6 +232,223 @@ public class TopologicalSorter {
 			return "[" + n.getGroupId() + ":" + n.getArtifactId() + ":" + n.getVersion() + "]";
 		}
 	}
-}
 
+	/**
+	 * Collapses a graph onto its module nodes, keeping the order in which modules are first reached from each node.<br>
+	 * The non module nodes are grouped in strongly connected components (Tarjan's algorithm, iteratively), all the nodes of a
+	 * component reach the same modules, which are computed once per component. Components of more than one node are cycles made
+	 * of non module nodes, they are given to onCycle.
+	 */
+	private static final class Projection {
+
+		private static final int[] NONE = new int[0];
 
+		private final int[][] graph;
+		private final boolean[] modules;
+		private final Consumer<int[]> onCycle;
+
+		// modules reachable from each non module node, through non module nodes only
+		private final int[][] reachableModules;
+
+		// Tarjan's algorithm state, index 0 means not visited yet
+		private final int[] index;
+		private final int[] lowLink;
+		private final boolean[] onStack;
+		private final int[] stack;
+		private int stackSize;
+		private int nextIndex;
+
+		// shared buffers
+		private final int[] path;
+		private final int[] nextChild;
+		private final int[] collected;
+		private final int[] seen;
+		private int generation;
+
+		Projection(int[][] graph, boolean[] modules, Consumer<int[]> onCycle) {
+			this.graph = graph;
+			this.modules = modules;
+			this.onCycle = onCycle;
+			this.reachableModules = new int[graph.length][];
+			this.index = new int[graph.length];
+			this.lowLink = new int[graph.length];
+			this.onStack = new boolean[graph.length];
+			this.stack = new int[graph.length];
+			this.path = new int[graph.length];
+			this.nextChild = new int[graph.length];
+			this.collected = new int[graph.length];
+			this.seen = new int[graph.length];
+		}
+
+		int[][] compute() {
+			int[][] projected = new int[graph.length][];
+			for (int id = 0; id < graph.length; id++) {
+				if (!modules[id]) {
+					projected[id] = NONE;
+					continue;
+				}
+				for (int child : graph[id]) {
+					if (!modules[child]) {
+						computeReachableModules(child);
+					}
+				}
+				generation++;
+				projected[id] = toArray(collectModules(graph[id], 0));
+			}
+			return projected;
+		}
+
+		/**
+		 * Iterative Tarjan traversal of the non module nodes reachable from start.
+		 */
+		private void computeReachableModules(int start) {
+			if (index[start] != 0) {
+				return;
+			}
+			int depth = 0;
+			visit(start, depth++);
+			while (depth > 0) {
+				int id = path[depth - 1];
+				int[] children = graph[id];
+				if (nextChild[depth - 1] < children.length) {
+					int child = children[nextChild[depth - 1]++];
+					if (modules[child]) {
+						continue;
+					}
+					if (index[child] == 0) {
+						visit(child, depth++);
+					} else if (onStack[child]) {
+						lowLink[id] = Math.min(lowLink[id], index[child]);
+					}
+				} else {
+					depth--;
+					if (depth > 0) {
+						int parent = path[depth - 1];
+						lowLink[parent] = Math.min(lowLink[parent], lowLink[id]);
+					}
+					if (lowLink[id] == index[id]) {
+						completeComponent(id);
+					}
+				}
+			}
+		}
+
+		private void visit(int id, int depth) {
+			index[id] = ++nextIndex;
+			lowLink[id] = index[id];
+			onStack[id] = true;
+			stack[stackSize++] = id;
+			path[depth] = id;
+			nextChild[depth] = 0;
+		}
+
+		/**
+		 * The component of root is at the top of the stack, its members are given the union of the modules they reach.
+		 * The other non module nodes they depend on belong to components that are already complete.
+		 */
+		private void completeComponent(int root) {
+			int first = stackSize - 1;
+			while (stack[first] != root) {
+				first--;
+			}
+			generation++;
+			int count = 0;
+			// in discovery order, so that the modules directly reached by root come first
+			for (int i = first; i < stackSize; i++) {
+				count = collectModules(graph[stack[i]], count);
+			}
+			int[] reachable = toArray(count);
+			int[] members = Arrays.copyOfRange(stack, first, stackSize);
+			for (int member : members) {
+				onStack[member] = false;
+				reachableModules[member] = reachable;
+			}
+			stackSize = first;
+			if (members.length > 1 || contains(graph[root], root)) {
+				onCycle.accept(findCycle(root, members));
+			}
+		}
+
+		/**
+		 * Breadth first search inside a component, for the shortest path from root back to itself.
+		 */
+		private int[] findCycle(int root, int[] members) {
+			generation++;
+			for (int member : members) {
+				seen[member] = generation;
+			}
+			int[] predecessors = new int[graph.length];
+			Deque<Integer> toVisit = new ArrayDeque<>();
+			toVisit.add(root);
+			int generationVisited = ++generation;
+			seen[root] = generationVisited;
+			while (!toVisit.isEmpty()) {
+				int id = toVisit.poll();
+				for (int child : graph[id]) {
+					if (child == root) {
+						return pathFrom(root, id, predecessors);
+					}
+					if (seen[child] == generationVisited - 1) {
+						seen[child] = generationVisited;
+						predecessors[child] = id;
+						toVisit.add(child);
+					}
+				}
+			}
+			throw new IllegalStateException("No cycle found in a strongly connected component");
+		}
+
+		private static int[] pathFrom(int root, int last, int[] predecessors) {
+			int length = 1;
+			for (int id = last; id != root; id = predecessors[id]) {
+				length++;
+			}
+			int[] cycle = new int[length];
+			int id = last;
+			for (int i = length - 1; i >= 0; i--) {
+				cycle[i] = id;
+				id = predecessors[id];
+			}
+			return cycle;
+		}
+
+		private static boolean contains(int[] values, int value) {
+			for (int v : values) {
+				if (v == value) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Appends the modules reached by children to the shared buffer, generation must be incremented before the first call.
+		 */
+		private int collectModules(int[] children, int collectedCount) {
+			int count = collectedCount;
+			for (int child : children) {
+				if (modules[child]) {
+					count = collect(child, count);
+				} else if (reachableModules[child] != null) {
+					for (int module : reachableModules[child]) {
+						count = collect(module, count);
+					}
+				}
+			}
+			return count;
+		}
+
+		private int[] toArray(int count) {
+			return count == 0 ? NONE : Arrays.copyOf(collected, count);
+		}
+
+		private int collect(int module, int count) {
+			if (seen[module] == generation) {
+				return count;
+			}
+			seen[module] = generation;
+			collected[count] = module;
+			return count + 1;
+		}
+	}
+}
@@ -1,81 +1,83 @@
 package com.github.swissquote.carnotzet.core.maven;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 /**
  * Parses the text ouptut of "mvn dependency:tree -Dverbose" into a java object tree.
  * Copied from https://github.com/adutra/maven-dependency-tree-parser/ (apache 2) and modified to keep only text parsing
- * and merge code in single class
+ * and merge code in single class.<br>
+ * The input is parsed in a single streaming pass : lines are never all loaded in memory, and an explicit stack of open nodes
+ * is used instead of recursion, so that deep trees cannot overflow the call stack.
  */
 public class TreeTextParser {
 
-	private int lineIndex;
-
-	private List<String> lines;
-
-	public TreeTextParser() {
-		this.lineIndex = 0;
-		this.lines = null;
-	}
+	/**
+	 * Line read ahead while looking for the artifact of an "active project artifact:" entry, to be parsed next.
+	 */
+	private String pushedBackLine;
 
 	public Node parse(Reader reader) throws ParseException {
+		BufferedReader lines;
+		if (reader instanceof BufferedReader) {
+			lines = (BufferedReader) reader;
+		} else {
+			lines = new BufferedReader(reader);
+		}
+		this.pushedBackLine = null;
 
 		try {
-			this.lines = ParseUtils.splitLines(reader);
+			String line = nextLine(lines);
+			if (line == null) {
+				return null;
+			}
+			Node root = parseLine(lines, line, getArtifactIndex(line));
+
+			// open nodes, the node at the top of the stack has depth stack.size() - 1
+			Deque<Node> stack = new ArrayDeque<>();
+			stack.push(root);
+			while ((line = nextLine(lines)) != null) {
+				int artifactIndex = getArtifactIndex(line);
+				int depth = artifactIndex / 3;
+				if (depth <= 0) {
+					// end of the tree
+					break;
+				}
+				while (stack.size() > depth) {
+					stack.pop();
+				}
+				Node node = parseLine(lines, line, artifactIndex);
+				stack.peek().addChildNode(node);
+				stack.push(node);
+			}
+			return root;
 		}
 		catch (IOException e) {
 			throw new ParseException(e);
 		}
-
-		if (lines.isEmpty()) {
-			return null;
-		}
-
-		return parseInternal(0);
-
 	}
 
-	private Node parseInternal(final int depth) {
-
-		//current node
-		final Node node = this.parseLine();
-
-		this.lineIndex++;
-
-		//children
-		while (this.lineIndex < this.lines.size() && this.computeDepth(this.lines.get(this.lineIndex)) > depth) {
-			final Node child = this.parseInternal(depth + 1);
-			//if (node != null) {
-			node.addChildNode(child);
-			//}
+	private String nextLine(BufferedReader lines) throws IOException {
+		if (pushedBackLine != null) {
+			String line = pushedBackLine;
+			pushedBackLine = null;
+			return line;
 		}
-		return node;
-
-	}
-
-	private int computeDepth(final String line) {
-		return getArtifactIndex(line) / 3;
+		return lines.readLine();
 	}
 
 	/**
-	 * sample lineIndex structure:
+	 * sample line structure:
 	 * <pre>|  |  \- org.apache.activemq:activeio-core:test-jar:tests:3.1.0:compile</pre>
 	 */
-	private Node parseLine() {
-		String line = this.lines.get(this.lineIndex);
-		String artifact;
+	private Node parseLine(BufferedReader lines, String line, int artifactIndex) throws IOException {
 		if (line.contains("active project artifact:")) {
-			artifact = extractActiveProjectArtifact();
-		} else {
-			artifact = extractArtifact(line);
+			return ParseUtils.parseArtifactString(extractActiveProjectArtifact(lines), 0);
 		}
-		return ParseUtils.parseArtifactString(artifact, lineIndex);
-	}
-
-	private String extractArtifact(String line) {
-		return line.substring(getArtifactIndex(line));
+		return ParseUtils.parseArtifactString(line, artifactIndex);
 	}
 
 	private int getArtifactIndex(final String line) {
@@ -150,12 +152,12 @@ public class TreeTextParser {
 	 * </pre>
 	 * @return The artifact's GAV
 	 */
-	protected String extractActiveProjectArtifact() {
+	protected String extractActiveProjectArtifact(BufferedReader lines) throws IOException {
 		String artifact = null;
 		//start at next line and consume all lines containing "artifact =" or "project: "; record the last line containing "artifact =".
 		boolean artifactFound = false;
-		while (this.lineIndex < this.lines.size() - 1) {
-			String tempLine = this.lines.get(this.lineIndex + 1);
+		String tempLine;
+		while ((tempLine = nextLine(lines)) != null) {
 			boolean artifactLine = !artifactFound && tempLine.contains("artifact = ");
 			boolean projectLine = artifactFound && tempLine.contains("project: ");
 			if (artifactLine || projectLine) {
@@ -163,8 +165,8 @@ public class TreeTextParser {
 					artifact = substringBefore(substringAfter(tempLine, "artifact = "), ";");
 					artifactFound = true;
 				}
-				this.lineIndex++;
 			} else {
+				pushedBackLine = tempLine;
 				break;
 			}
 		}
@@ -0,0 +1,46 @@
+package com.github.swissquote.carnotzet.core.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Writes the events of each lifecycle operation to lifecycle-metrics.json in the resources folder, so that they can be collected
+ * by CI jobs.
+ */
+public class JsonFileLifecycleMetrics implements LifecycleMetrics {
+
+	public static final String FILE_NAME = "lifecycle-metrics.json";
+
+	private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+	private final List<LifecycleEvent> events = new ArrayList<>();
+
+	@Override
+	public synchronized void onEvent(LifecycleEvent event) {
+		events.add(event);
+	}
+
+	@Override
+	public synchronized void onLifecycleEnd(Path resourcesFolder) {
+		if (events.isEmpty()) {
+			return;
+		}
+		try {
+			Files.createDirectories(resourcesFolder);
+			MAPPER.writeValue(resourcesFolder.resolve(FILE_NAME).toFile(), events);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		finally {
+			events.clear();
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package com.github.swissquote.carnotzet.core.metrics;
+
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * A phase of the lifecycle of an environment (dependency resolution, extraction, docker compose up of a service...) that started
+ * or ended. Tags identify what the phase applies to, such as the module or the service.
+ */
+@Value
+@Builder
+public class LifecycleEvent {
+
+	public enum Type {
+		START,
+		END
+	}
+
+	private final Type type;
+
+	private final String phase;
+
+	private final Map<String, String> tags;
+
+	/**
+	 * Time of the event, in milliseconds since the epoch
+	 */
+	private final long timestamp;
+
+	/**
+	 * Duration of the phase for END events, -1 for START events
+	 */
+	private final long durationMillis;
+
+}
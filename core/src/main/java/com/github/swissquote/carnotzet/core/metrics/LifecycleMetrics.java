@@ -0,0 +1,22 @@
+package com.github.swissquote.carnotzet.core.metrics;
+
+import java.nio.file.Path;
+
+/**
+ * SPI notified of the phases of the lifecycle of an environment, implementations are loaded with the ServiceLoader.<br>
+ * A new instance is created for each environment, events may be received from several threads.
+ */
+public interface LifecycleMetrics {
+
+	void onEvent(LifecycleEvent event);
+
+	/**
+	 * Called when a lifecycle operation (such as starting the environment) is complete, with the events received since the
+	 * previous call.
+	 *
+	 * @param resourcesFolder the resources folder of the environment
+	 */
+	default void onLifecycleEnd(Path resourcesFolder) {
+	}
+
+}
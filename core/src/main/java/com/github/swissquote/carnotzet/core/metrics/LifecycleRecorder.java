@@ -0,0 +1,142 @@
+package com.github.swissquote.carnotzet.core.metrics;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Dispatches lifecycle events to the LifecycleMetrics implementations found on the classpath.
+ * A failing implementation is logged and never fails the lifecycle itself.<br>
+ * Operations may be nested (starting an environment computes its modules), the sinks are notified of the end of the lifecycle
+ * when the outermost operation is closed.
+ */
+@Slf4j
+public class LifecycleRecorder {
+
+	private final List<LifecycleMetrics> sinks;
+
+	private int openOperations;
+
+	public LifecycleRecorder() {
+		this(loadSinks());
+	}
+
+	public LifecycleRecorder(List<LifecycleMetrics> sinks) {
+		this.sinks = new ArrayList<>(sinks);
+	}
+
+	/**
+	 * @return a new instance of each LifecycleMetrics implementation found on the classpath
+	 */
+	public static List<LifecycleMetrics> loadSinks() {
+		List<LifecycleMetrics> loaded = new ArrayList<>();
+		ServiceLoader.load(LifecycleMetrics.class).forEach(loaded::add);
+		return loaded;
+	}
+
+	/**
+	 * Opens a lifecycle operation, closing it ends the lifecycle unless it is nested in another operation.
+	 */
+	public synchronized Operation operation(Path resourcesFolder) {
+		openOperations++;
+		return new Operation(resourcesFolder);
+	}
+
+	public Span start(String phase) {
+		return start(phase, Collections.emptyMap());
+	}
+
+	public Span start(String phase, Map<String, String> tags) {
+		long timestamp = System.currentTimeMillis();
+		dispatch(LifecycleEvent.builder().type(LifecycleEvent.Type.START).phase(phase).tags(tags)
+				.timestamp(timestamp).durationMillis(-1).build());
+		return new Span(phase, tags, System.nanoTime());
+	}
+
+	/**
+	 * Records a phase that was timed by the caller, only the END event is emitted.
+	 */
+	public void completed(String phase, Map<String, String> tags, long durationMillis) {
+		dispatch(LifecycleEvent.builder().type(LifecycleEvent.Type.END).phase(phase).tags(tags)
+				.timestamp(System.currentTimeMillis()).durationMillis(durationMillis).build());
+	}
+
+	public void lifecycleEnded(Path resourcesFolder) {
+		for (LifecycleMetrics sink : sinks) {
+			try {
+				sink.onLifecycleEnd(resourcesFolder);
+			}
+			catch (RuntimeException e) {
+				log.warn("Lifecycle metrics [{}] failed to report : {}", sink.getClass().getName(), e.toString());
+			}
+		}
+	}
+
+	private void operationClosed(Path resourcesFolder) {
+		synchronized (this) {
+			openOperations--;
+			if (openOperations > 0) {
+				return;
+			}
+		}
+		lifecycleEnded(resourcesFolder);
+	}
+
+	private void dispatch(LifecycleEvent event) {
+		for (LifecycleMetrics sink : sinks) {
+			try {
+				sink.onEvent(event);
+			}
+			catch (RuntimeException e) {
+				log.warn("Lifecycle metrics [{}] failed to record [{}] : {}", sink.getClass().getName(), event, e.toString());
+			}
+		}
+	}
+
+	/**
+	 * A lifecycle operation in progress, such as starting the environment.
+	 */
+	public final class Operation implements AutoCloseable {
+
+		private final Path resourcesFolder;
+		private boolean closed;
+
+		private Operation(Path resourcesFolder) {
+			this.resourcesFolder = resourcesFolder;
+		}
+
+		@Override
+		public void close() {
+			if (!closed) {
+				closed = true;
+				operationClosed(resourcesFolder);
+			}
+		}
+	}
+
+	/**
+	 * A phase in progress, closing it emits the END event.
+	 */
+	public final class Span implements AutoCloseable {
+
+		private final String phase;
+		private final Map<String, String> tags;
+		private final long startNanos;
+
+		private Span(String phase, Map<String, String> tags, long startNanos) {
+			this.phase = phase;
+			this.tags = tags;
+			this.startNanos = startNanos;
+		}
+
+		@Override
+		public void close() {
+			completed(phase, tags, (System.nanoTime() - startNanos) / 1_000_000);
+		}
+	}
+}
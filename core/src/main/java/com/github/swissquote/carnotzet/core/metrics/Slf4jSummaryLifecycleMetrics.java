@@ -0,0 +1,50 @@
+package com.github.swissquote.carnotzet.core.metrics;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Logs a table of the durations of the phases at the end of each lifecycle operation.
+ */
+@Slf4j
+public class Slf4jSummaryLifecycleMetrics implements LifecycleMetrics {
+
+	private final List<LifecycleEvent> completed = new ArrayList<>();
+
+	@Override
+	public synchronized void onEvent(LifecycleEvent event) {
+		if (event.getType() == LifecycleEvent.Type.END) {
+			completed.add(event);
+		}
+	}
+
+	@Override
+	public synchronized void onLifecycleEnd(Path resourcesFolder) {
+		if (completed.isEmpty() || !log.isInfoEnabled()) {
+			completed.clear();
+			return;
+		}
+		List<String> phases = new ArrayList<>();
+		int width = "phase".length();
+		for (LifecycleEvent event : completed) {
+			String phase = event.getPhase();
+			if (!event.getTags().isEmpty()) {
+				phase += " " + event.getTags().entrySet().stream().map(e -> e.getKey() + "=" + e.getValue())
+						.collect(Collectors.joining(",", "[", "]"));
+			}
+			phases.add(phase);
+			width = Math.max(width, phase.length());
+		}
+		StringBuilder table = new StringBuilder("Lifecycle timings :");
+		table.append(String.format("%n  %-" + width + "s  %10s", "phase", "duration"));
+		for (int i = 0; i < completed.size(); i++) {
+			table.append(String.format("%n  %-" + width + "s  %7d ms", phases.get(i), completed.get(i).getDurationMillis()));
+		}
+		log.info(table.toString());
+		completed.clear();
+	}
+}
@@ -17,6 +17,8 @@ import java.util.Set;
 import com.github.swissquote.carnotzet.core.CarnotzetDefinitionException;
 import com.github.swissquote.carnotzet.core.CarnotzetModule;
 import com.github.swissquote.carnotzet.core.docker.DockerUtils;
+import com.github.swissquote.carnotzet.core.docker.engine.DockerEngineClient;
+import com.github.swissquote.carnotzet.core.docker.engine.EngineImage;
 import com.github.swissquote.carnotzet.core.docker.registry.DockerRegistry;
 import com.github.swissquote.carnotzet.core.docker.registry.ImageMetaData;
 import com.github.swissquote.carnotzet.core.docker.registry.ImageRef;
@@ -53,7 +55,20 @@ public final class ContainerStartupWrapperUtils {
 	// Returns null if there is no entrypoint/cmd for the image
 	// throws a CarnotzetDefinitionException if the docker daemon returned an error (ie: the image could not be found)
 	public static String getFromLocalImage(String image, DockerExecutionItem type) {
+		return getFromLocalImage(image, type, null);
+	}
+
+	// Same as getFromLocalImage(image, type), the image is inspected with engine, or with the docker CLI if engine is null
+	public static String getFromLocalImage(String image, DockerExecutionItem type, DockerEngineClient engine) {
 		try {
+			if (engine != null) {
+				EngineImage localImage = engine.inspectImage(image);
+				if (localImage == null) {
+					throw new CarnotzetDefinitionException("Image [" + image + "] not found on the docker host");
+				}
+				List<String> item = type == CMD ? localImage.getConfig().getCmd() : localImage.getConfig().getEntrypoint();
+				return item == null || item.isEmpty() ? null : DockerUtils.formatExecEntrypointOrCmd(item);
+			}
 			String inspectOutput = DefaultCommandRunner.INSTANCE.runCommandAndCaptureOutput(
 					"docker", "inspect", "-f", "{{range .Config." + type.getJsonField() + "}}{{.}}||{{end}}", image).trim();
 			if (inspectOutput.isEmpty()) {
@@ -90,6 +105,12 @@ public final class ContainerStartupWrapperUtils {
 	// Returns null if there is no entrypoint/cmd for the image
 	// throws a CarnotzetDefinitionException if the image could not be found
 	public static String getImageExecutionItem(CarnotzetModule moduleToWrap, Boolean ignoreLocalImages, DockerExecutionItem type) {
+		return getImageExecutionItem(moduleToWrap, ignoreLocalImages, type, null);
+	}
+
+	// Same as getImageExecutionItem(moduleToWrap, ignoreLocalImages, type), local images are inspected with engine (null for the CLI)
+	public static String getImageExecutionItem(CarnotzetModule moduleToWrap, Boolean ignoreLocalImages, DockerExecutionItem type,
+			DockerEngineClient engine) {
 
 		String fromProperties = getFromModuleProperties(moduleToWrap, type);
 
@@ -101,7 +122,7 @@ public final class ContainerStartupWrapperUtils {
 		// Try local image registry
 		if (!ignoreLocalImages) {
 			try {
-				return getFromLocalImage(moduleToWrap.getImageName(), type);
+				return getFromLocalImage(moduleToWrap.getImageName(), type, engine);
 			}
 			catch (CarnotzetDefinitionException e) {
 				log.debug("Failed to get local image [" + moduleToWrap.getImageName() + "] entrypoint", e);
@@ -129,8 +150,13 @@ public final class ContainerStartupWrapperUtils {
 	}
 
 	public static String wrapEntrypoint(CarnotzetModule moduleToWrap, String wrapperCommand, Boolean ignoreLocalImages) {
+		return wrapEntrypoint(moduleToWrap, wrapperCommand, ignoreLocalImages, null);
+	}
+
+	public static String wrapEntrypoint(CarnotzetModule moduleToWrap, String wrapperCommand, Boolean ignoreLocalImages,
+			DockerEngineClient engine) {
 		List<String> res = new ArrayList<>();
-		String existingEntrypoint = getImageExecutionItem(moduleToWrap, ignoreLocalImages, ENTRYPOINT);
+		String existingEntrypoint = getImageExecutionItem(moduleToWrap, ignoreLocalImages, ENTRYPOINT, engine);
 		if (existingEntrypoint != null) {
 			res.addAll(DockerUtils.parseEntrypointOrCmd(existingEntrypoint));
 		}
@@ -148,6 +174,9 @@ public final class ContainerStartupWrapperUtils {
 		// Local images may not be available for target runtime environment (ie : cloud)
 		private final Boolean ignoreLocalImages = false;
 
+		// null to inspect local images with the docker CLI
+		private DockerEngineClient dockerEngineClient;
+
 		@SuppressFBWarnings("CT_CONSTRUCTOR_THROW")
 		public StartupWrapper(@NonNull CarnotzetModule moduleToWrap) {
 			this.moduleToWrap = moduleToWrap;
@@ -168,6 +197,14 @@ public final class ContainerStartupWrapperUtils {
 			return this;
 		}
 
+		/**
+		 * Typically carnotzet.getDockerEngineClient(), null to inspect local images with the docker CLI
+		 */
+		public StartupWrapper usingDockerEngineClient(DockerEngineClient dockerEngineClient) {
+			this.dockerEngineClient = dockerEngineClient;
+			return this;
+		}
+
 		public CarnotzetModule build() {
 			if (resourceFolder == null) {
 				throw new IllegalArgumentException("resourceFolder cannot be null");
@@ -191,10 +228,10 @@ public final class ContainerStartupWrapperUtils {
 
 			log.debug("[{}] Wrapper script generated: {}", wrapperName, scriptName);
 
-			String entryPoint = wrapEntrypoint(moduleToWrap, "/" + scriptName, ignoreLocalImages);
+			String entryPoint = wrapEntrypoint(moduleToWrap, "/" + scriptName, ignoreLocalImages, dockerEngineClient);
 
 			// wrapping the entrypoint deletes the CMD : https://github.com/docker/compose/issues/3140
-			String cmd = getImageExecutionItem(moduleToWrap, ignoreLocalImages, CMD);
+			String cmd = getImageExecutionItem(moduleToWrap, ignoreLocalImages, CMD, dockerEngineClient);
 
 			return moduleToWrap.toBuilder()
 					.dockerVolumes(allVolumes)
@@ -1,62 +1,189 @@
 package com.github.swissquote.carnotzet.core.util;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.util.Properties;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Persistent cache of JSON values, one file per key in a directory.<br>
+ * Values are kept in memory as raw JSON once read, and only deserialized when they are returned.
+ * Files are written atomically under a file lock, so that several builds can share the same directory.
+ * When a value is added, the least recently used entries are evicted to stay under the maximum size, and entries not used for longer than the
+ * maximum age are removed.
+ */
 @Slf4j
 public class FileSystemCache<T> {
 
-	private final Path cachePath;
-	private final Properties cache;
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+	public static final Duration DEFAULT_MAX_AGE = Duration.ofDays(90);
+
+	private static final String ENTRY_SUFFIX = ".json";
+	private static final String LOCK_FILE_NAME = ".lock";
+
+	// file locks are held by the JVM, threads of the same JVM must also be excluded
+	private static final Map<Path, Object> JVM_LOCKS = new ConcurrentHashMap<>();
+
+	private final Path directory;
 	private final Class<T> deserializationType;
 	private final ObjectMapper jsonMapper;
+	private final long maxBytes;
+	private final long maxAgeMillis;
+
+	// key -> raw json of the entries read or written by this instance
+	private final Map<String, byte[]> values = new ConcurrentHashMap<>();
 
 	@SuppressFBWarnings("CT_CONSTRUCTOR_THROW")
-	public FileSystemCache(Path cachePath, Class<T> deserializationType) {
-		this.cachePath = cachePath;
+	public FileSystemCache(Path directory, Class<T> deserializationType) {
+		this(directory, deserializationType, DEFAULT_MAX_BYTES, DEFAULT_MAX_AGE);
+	}
+
+	@SuppressFBWarnings("CT_CONSTRUCTOR_THROW")
+	public FileSystemCache(Path directory, Class<T> deserializationType, long maxBytes, Duration maxAge) {
+		this.directory = directory.toAbsolutePath().normalize();
 		this.deserializationType = deserializationType;
 		this.jsonMapper = new ObjectMapper();
 		this.jsonMapper.registerModule(new JavaTimeModule());
-		cache = new Properties();
-		if (Files.notExists(cachePath)) {
-			try {
-				Files.createFile(cachePath);
-			}
-			catch (Exception e) {
-				throw new RuntimeException(e.getMessage(), e);
-			}
+		this.maxBytes = maxBytes;
+		this.maxAgeMillis = maxAge.toMillis();
+		try {
+			Files.createDirectories(this.directory);
+			withLock(this::evict);
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e.getMessage(), e);
 		}
 	}
 
-	@SuppressFBWarnings(value = "OBL_UNSATISFIED_OBLIGATION", justification = "https://github.com/spotbugs/spotbugs/issues/432")
 	public T computeIfAbsent(String key, Function<String, String> mappingFunction) throws IOException {
-		try (FileInputStream cacheFileInputStream = new FileInputStream(this.cachePath.toFile())) {
-			this.cache.load(cacheFileInputStream);
+		Optional<byte[]> cached = get(key);
+		byte[] value;
+		if (cached.isPresent()) {
+			value = cached.get();
+		} else {
+			value = mappingFunction.apply(key).getBytes(StandardCharsets.UTF_8);
+			put(key, value);
+		}
+		return this.jsonMapper.readValue(value, this.deserializationType);
+	}
+
+	private Optional<byte[]> get(String key) throws IOException {
+		byte[] value = values.get(key);
+		if (value != null) {
+			return Optional.of(value);
+		}
+		Path file = directory.resolve(fileName(key));
+		try {
+			// files are replaced atomically, reading without the lock never sees a partial value
+			value = Files.readAllBytes(file);
+			// the modification time is the last use, for eviction
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		}
+		catch (NoSuchFileException e) {
+			return Optional.empty();
+		}
+		values.put(key, value);
+		return Optional.of(value);
+	}
+
+	private void put(String key, byte[] value) throws IOException {
+		values.put(key, value);
+		String fileName = fileName(key);
+		Path temp = Files.createTempFile(directory, fileName, ".tmp");
+		try {
+			Files.write(temp, value);
+			withLock(() -> {
+				move(temp, directory.resolve(fileName));
+				evict();
+			});
+		}
+		finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, ATOMIC_MOVE, REPLACE_EXISTING);
 		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, REPLACE_EXISTING);
+		}
+	}
 
-		String value = (String) this.cache.get(key);
-		if (value == null) {
-			value = mappingFunction.apply(key);
-			this.cache.put(key, value);
-			try (Writer out = new OutputStreamWriter(new FileOutputStream(this.cachePath.toFile()), StandardCharsets.UTF_8)) {
-				this.cache.store(out, "Added value for key " + key);
+	/**
+	 * Must be called with the lock held, other processes may have added or removed entries
+	 */
+	private void evict() throws IOException {
+		List<Entry> entries = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+			for (Path file : files) {
+				BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+				entries.add(new Entry(directory.relativize(file).toString(), attributes.size(), attributes.lastModifiedTime().toMillis()));
 			}
 		}
+		entries.sort(Comparator.comparingLong(Entry::getLastUsed).reversed());
+		long totalBytes = 0;
+		long oldest = System.currentTimeMillis() - maxAgeMillis;
+		for (Entry entry : entries) {
+			totalBytes += entry.getSize();
+			if (totalBytes > maxBytes || entry.getLastUsed() < oldest) {
+				log.debug("Evicting [{}] from cache [{}]", entry.getFileName(), directory);
+				Files.deleteIfExists(directory.resolve(entry.getFileName()));
+			}
+		}
+	}
 
-		return this.jsonMapper.readValue(value, this.deserializationType);
+	private void withLock(IoAction action) throws IOException {
+		synchronized (JVM_LOCKS.computeIfAbsent(directory, d -> new Object())) {
+			try (FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE_NAME), CREATE, WRITE);
+					FileLock ignored = channel.lock()) {
+				action.run();
+			}
+		}
+	}
+
+	private static String fileName(String key) {
+		// keys such as image digests contain characters that are not allowed in file names on all platforms
+		return Sha256.getSHA(key) + ENTRY_SUFFIX;
+	}
+
+	@FunctionalInterface
+	private interface IoAction {
+		void run() throws IOException;
+	}
+
+	@Value
+	private static class Entry {
+		private final String fileName;
+		private final long size;
+		private final long lastUsed;
 	}
 }
@@ -1,7 +1,10 @@
 package com.github.swissquote.carnotzet.core.util;
 
+import java.io.InputStream;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.MessageDigest;
 
 import lombok.SneakyThrows;
@@ -10,6 +13,7 @@ public final class Sha256 {
 	public static final int RADIX = 16;
 	public static final int PAD = 32;
 	public static final String ALGORITHM = "SHA-256";
+	private static final int BUFFER_SIZE = 8192;
 
 	private Sha256() {
 	}
@@ -25,7 +29,20 @@ public final class Sha256 {
 		return toHexString(md.digest(input.getBytes(StandardCharsets.UTF_8)));
 	}
 
-	private static String toHexString(byte[] hash) {
+	@SneakyThrows
+	public static String getSHA(Path file) {
+		MessageDigest md = MessageDigest.getInstance(ALGORITHM);
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream in = Files.newInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				md.update(buffer, 0, read);
+			}
+		}
+		return toHexString(md.digest());
+	}
+
+	public static String toHexString(byte[] hash) {
 		// Convert byte array into signum representation
 		BigInteger number = new BigInteger(1, hash);
 		// Convert message digest into hex value
@@ -0,0 +1,57 @@
+package com.github.swissquote.carnotzet.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.swissquote.carnotzet.core.maven.CarnotzetModuleCoordinates;
+
+public class CarnotzetTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void resources_left_on_disk_are_reused_on_windows() throws IOException {
+		Path expandedJars = temp.newFolder("expanded-jars").toPath();
+
+		assertFalse(Carnotzet.mustProcessResources(true, false, expandedJars));
+		assertTrue(Carnotzet.mustProcessResources(false, false, expandedJars));
+		assertTrue(Carnotzet.mustProcessResources(true, false, temp.getRoot().toPath().resolve("resolved")));
+	}
+
+	@Test
+	public void virtual_resources_are_processed_even_if_a_previous_run_left_resources_on_disk() throws IOException {
+		// the overlay of virtual resources is built by the extraction, skipping it fails the resolution
+		Path expandedJars = temp.newFolder("expanded-jars").toPath();
+		Path resolved = temp.newFolder("resolved").toPath();
+
+		assertTrue(Carnotzet.mustProcessResources(true, true, expandedJars));
+		assertTrue(Carnotzet.mustProcessResources(true, true, resolved));
+	}
+
+	@Test
+	public void construction_time_is_reported_to_the_metrics_listener() throws IOException {
+		List<String> phases = new ArrayList<>();
+		CarnotzetConfig config = CarnotzetConfig.builder()
+				.topLevelModuleId(new CarnotzetModuleCoordinates("com.test", "app-carnotzet", "1"))
+				.resourcesPath(temp.newFolder("resources").toPath())
+				.metricsListener((phase, durationMillis) -> phases.add(phase))
+				.build();
+
+		new Carnotzet(config);
+
+		assertEquals(Collections.singletonList(CarnotzetMetricsListener.CREATE), phases);
+	}
+
+}
@@ -0,0 +1,136 @@
+package com.github.swissquote.carnotzet.core.docker.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.swissquote.carnotzet.core.runtime.api.ExecResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpDockerEngineClientTest {
+
+	private HttpServer server;
+
+	private HttpDockerEngineClient client;
+
+	private final List<String> requests = new ArrayList<>();
+
+	@Before
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.start();
+		client = new HttpDockerEngineClient(DockerEngineTransport.tcp("127.0.0.1", server.getAddress().getPort()));
+	}
+
+	@After
+	public void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	public void list_containers_with_label_filters() {
+		server.createContext("/containers/json", exchange -> respond(exchange, 200, "[{\"Id\":\"abc\",\"Names\":[\"/redis_1\"],"
+				+ "\"Labels\":{\"com.docker.compose.service\":\"redis\"},\"State\":\"running\","
+				+ "\"NetworkSettings\":{\"Networks\":{\"test_carnotzet\":{\"IPAddress\":\"172.18.0.2\"}}}}]", true));
+
+		List<EngineContainer> containers = client.listContainers(true, Collections.singletonMap("com.docker.compose.project", "test"));
+
+		assertEquals(1, containers.size());
+		assertEquals("abc", containers.get(0).getId());
+		assertEquals("redis", containers.get(0).getLabels().get("com.docker.compose.service"));
+		assertEquals("172.18.0.2", containers.get(0).getNetworkSettings().getNetworks().get("test_carnotzet").getIpAddress());
+		assertEquals("GET /containers/json?all=true&filters={\"label\":[\"com.docker.compose.project=test\"]}", requests.get(0));
+	}
+
+	@Test
+	public void inspect_image_returns_null_when_absent() {
+		server.createContext("/images/", exchange -> {
+			if (exchange.getRequestURI().getPath().startsWith("/images/redis:7/")) {
+				respond(exchange, 200, "{\"Id\":\"sha256:1\",\"Created\":\"2023-05-01T10:00:00.123456789Z\","
+						+ "\"Config\":{\"Cmd\":[\"redis-server\"],\"ExposedPorts\":{\"6379/tcp\":{}}}}", false);
+			} else {
+				respond(exchange, 404, "{\"message\":\"No such image\"}", false);
+			}
+		});
+
+		EngineImage image = client.inspectImage("redis:7");
+
+		assertEquals("2023-05-01T10:00:00.123456789Z", image.getCreated());
+		assertEquals(Collections.singletonList("redis-server"), image.getConfig().getCmd());
+		assertTrue(image.getConfig().getExposedPorts().containsKey("6379/tcp"));
+		assertNull(client.inspectImage("missing:1"));
+	}
+
+	@Test
+	public void exec_returns_stdout_and_exit_code() {
+		server.createContext("/containers/abc/exec", exchange -> respond(exchange, 201, "{\"Id\":\"e1\"}", false));
+		server.createContext("/exec/e1/start", exchange -> {
+			ByteArrayOutputStream frames = new ByteArrayOutputStream();
+			frame(frames, 1, "hello ");
+			frame(frames, 2, "ignored");
+			frame(frames, 1, "world");
+			respond(exchange, 200, frames.toByteArray(), true);
+		});
+		server.createContext("/exec/e1/json", exchange -> respond(exchange, 200, "{\"ExitCode\":3}", false));
+
+		ExecResult result = client.exec("abc", 10, TimeUnit.SECONDS, "echo", "hello world");
+
+		assertEquals(3, result.getExitCode());
+		assertEquals("hello world", result.getOutput());
+	}
+
+	@Test
+	public void error_status_throws_with_daemon_message() {
+		server.createContext("/networks/", exchange -> respond(exchange, 404, "{\"message\":\"network missing not found\"}", false));
+
+		try {
+			client.connectToNetwork("missing", "abc");
+		}
+		catch (DockerEngineException e) {
+			assertEquals(404, e.getStatus());
+			assertTrue(e.getMessage().contains("network missing not found"));
+			return;
+		}
+		fail("Expected a DockerEngineException");
+	}
+
+	private static void frame(ByteArrayOutputStream out, int stream, String content) {
+		byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+		out.write(stream);
+		out.write(new byte[3], 0, 3);
+		out.write(ByteBuffer.allocate(4).putInt(bytes.length).array(), 0, 4);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	private void respond(HttpExchange exchange, int status, String body, boolean chunked) throws IOException {
+		respond(exchange, status, body.getBytes(StandardCharsets.UTF_8), chunked);
+	}
+
+	private void respond(HttpExchange exchange, int status, byte[] body, boolean chunked) throws IOException {
+		String query = exchange.getRequestURI().getRawQuery();
+		requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath()
+				+ (query == null ? "" : "?" + URLDecoder.decode(query, "UTF-8")));
+		exchange.sendResponseHeaders(status, chunked ? 0 : body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.github.swissquote.carnotzet.core.docker.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.github.swissquote.carnotzet.core.CarnotzetDefinitionException;
+import com.github.swissquote.carnotzet.core.CarnotzetModule;
+import com.github.swissquote.carnotzet.core.runtime.api.PullPolicy;
+
+public class ImagePullerTest {
+
+	private static CarnotzetModule module(String name, String image) {
+		return CarnotzetModule.builder().name(name).imageName(image).build();
+	}
+
+	@Test
+	public void images_are_pulled_once_with_bounded_concurrency() {
+		Map<String, AtomicInteger> pulls = new ConcurrentHashMap<>();
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		ImagePuller puller = new ImagePuller(2, (module, policy) -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(20);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			running.decrementAndGet();
+			pulls.computeIfAbsent(module.getImageName(), k -> new AtomicInteger()).incrementAndGet();
+			return !module.getImageName().startsWith("local");
+		});
+		List<CarnotzetModule> modules = Arrays.asList(module("a", "redis:7"), module("b", "redis:7"), module("c", "nginx:1"),
+				module("d", "local/app:1"), module("e", "postgres:15"), module("f", null));
+
+		ImagePullReport report = puller.pull(modules, PullPolicy.ALWAYS);
+
+		assertEquals(4, pulls.size());
+		pulls.values().forEach(count -> assertEquals(1, count.get()));
+		assertTrue(maxRunning.get() <= 2);
+		assertEquals(3, report.getPulled().size());
+		assertEquals(Collections.singletonList("local/app:1"), report.getUpToDate());
+	}
+
+	@Test
+	public void failures_are_reported_without_stopping_other_pulls() {
+		ImagePuller puller = new ImagePuller(4, (module, policy) -> {
+			if (module.getImageName().equals("missing:1")) {
+				throw new CarnotzetDefinitionException("docker pull [missing:1] exited with [1]");
+			}
+			return true;
+		});
+
+		ImagePullReport report = puller.pull(Arrays.asList(module("a", "missing:1"), module("b", "redis:7")), PullPolicy.ALWAYS);
+
+		assertTrue(report.hasFailures());
+		assertEquals(Collections.singletonList("redis:7"), report.getPulled());
+		assertTrue(report.summary().contains("missing:1 : docker pull [missing:1] exited with [1]"));
+	}
+}
@@ -0,0 +1,99 @@
+package com.github.swissquote.carnotzet.core.docker.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.swissquote.carnotzet.core.CarnotzetDefinitionException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class RegistryHttpClientTest {
+
+	private HttpServer registry;
+
+	private String baseUrl;
+
+	private final AtomicInteger tokenRequests = new AtomicInteger();
+
+	private final List<String> authorizations = new CopyOnWriteArrayList<>();
+
+	private final RegistryHttpClient client = new RegistryHttpClient(uri -> Proxy.NO_PROXY);
+
+	@Before
+	public void startRegistry() throws IOException {
+		registry = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		baseUrl = "http://127.0.0.1:" + registry.getAddress().getPort();
+		registry.createContext("/token", exchange -> {
+			tokenRequests.incrementAndGet();
+			assertEquals("service=test-registry&scope=repository:library/redis:pull", exchange.getRequestURI().getQuery());
+			respond(exchange, 200, "{\"token\":\"secret\",\"expires_in\":300}", null);
+		});
+		registry.createContext("/v2/", exchange -> {
+			String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+			authorizations.add(String.valueOf(authorization));
+			if ("Bearer secret".equals(authorization)) {
+				respond(exchange, 200, "{\"path\":\"" + exchange.getRequestURI().getPath() + "\"}", null);
+			} else {
+				respond(exchange, 401, "{\"errors\":[]}", "Bearer realm=\"" + baseUrl + "/token\",service=\"test-registry\","
+						+ "scope=\"repository:library/redis:pull\"");
+			}
+		});
+		registry.start();
+	}
+
+	@After
+	public void stopRegistry() {
+		registry.stop(0);
+	}
+
+	@Test
+	public void bearer_token_is_requested_once_per_scope() throws IOException {
+		String manifest = client.get(new URL(baseUrl + "/v2/library/redis/manifests/7"), "application/json", null);
+		String blob = client.get(new URL(baseUrl + "/v2/library/redis/blobs/sha256:1"), "application/json", null);
+
+		assertEquals("{\"path\":\"/v2/library/redis/manifests/7\"}", manifest);
+		assertEquals("{\"path\":\"/v2/library/redis/blobs/sha256:1\"}", blob);
+		assertEquals(1, tokenRequests.get());
+		// the second request is authenticated upfront
+		assertEquals(3, authorizations.size());
+		assertEquals("Bearer secret", authorizations.get(2));
+	}
+
+	@Test
+	public void error_responses_are_reported() throws IOException {
+		try {
+			client.get(new URL(baseUrl + "/missing"), "application/json", null);
+		}
+		catch (CarnotzetDefinitionException e) {
+			assertTrue(e.getMessage().contains("[404]"));
+			return;
+		}
+		fail("Expected a CarnotzetDefinitionException");
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body, String authenticate) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		if (authenticate != null) {
+			exchange.getResponseHeaders().add("WWW-Authenticate", authenticate);
+		}
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
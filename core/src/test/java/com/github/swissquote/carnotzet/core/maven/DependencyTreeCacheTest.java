@@ -0,0 +1,142 @@
+package com.github.swissquote.carnotzet.core.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedList;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DependencyTreeCacheTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private Path localRepo;
+	private DependencyTreeCache cache;
+	private CarnotzetModuleCoordinates topLevelModuleId;
+
+	@Before
+	public void setUp() throws IOException {
+		localRepo = temp.newFolder("repository").toPath();
+		cache = new DependencyTreeCache(temp.newFolder("cache").toPath());
+		topLevelModuleId = new CarnotzetModuleCoordinates("g", "app", "1.0");
+		writePom("g", "app", "1.0", "<parent><groupId>g</groupId><artifactId>parent</artifactId><version>1</version></parent>");
+		writePom("g", "parent", "1", "");
+		writePom("g", "lib", "2.0-SNAPSHOT", "");
+		write(localRepo.resolve("g/lib/2.0-SNAPSHOT/maven-metadata-local.xml"), "<metadata/>");
+	}
+
+	@Test
+	public void cached_tree_is_restored() {
+		cache.put(topLevelModuleId, localRepo, tree());
+
+		Node restored = cache.get(topLevelModuleId, localRepo);
+
+		assertNotNull(restored);
+		assertEquals("app", restored.getArtifactId());
+		assertNull(restored.getScope());
+		Node lib = restored.getChildNodes().get(0);
+		assertEquals("lib", lib.getArtifactId());
+		assertEquals("2.0-SNAPSHOT", lib.getVersion());
+		assertEquals("compile", lib.getScope());
+		assertSame(restored, lib.getParent());
+		Node omitted = restored.getChildNodes().get(1);
+		assertTrue(omitted.isOmitted());
+		assertEquals("omitted for duplicate", omitted.getDescription());
+	}
+
+	@Test
+	public void missing_entry() {
+		assertNull(cache.get(topLevelModuleId, localRepo));
+	}
+
+	@Test
+	public void pom_change_invalidates_entry() throws IOException {
+		cache.put(topLevelModuleId, localRepo, tree());
+		writePom("g", "app", "1.0", "<dependencies/>");
+
+		assertNull(cache.get(topLevelModuleId, localRepo));
+	}
+
+	@Test
+	public void parent_pom_change_invalidates_entry() throws IOException {
+		cache.put(topLevelModuleId, localRepo, tree());
+		writePom("g", "parent", "1", "<properties><changed>true</changed></properties>");
+
+		assertNull(cache.get(topLevelModuleId, localRepo));
+	}
+
+	@Test
+	public void snapshot_metadata_change_invalidates_entry() throws IOException {
+		cache.put(topLevelModuleId, localRepo, tree());
+		write(localRepo.resolve("g/lib/2.0-SNAPSHOT/maven-metadata-local.xml"), "<metadata><versioning/></metadata>");
+
+		assertNull(cache.get(topLevelModuleId, localRepo));
+	}
+
+	@Test
+	public void remote_snapshot_metadata_change_invalidates_entry() throws IOException {
+		write(localRepo.resolve("g/lib/2.0-SNAPSHOT/maven-metadata-central.xml"), "<metadata/>");
+		cache.put(topLevelModuleId, localRepo, tree());
+		write(localRepo.resolve("g/lib/2.0-SNAPSHOT/maven-metadata-central.xml"), "<metadata><versioning/></metadata>");
+
+		assertNull(cache.get(topLevelModuleId, localRepo));
+	}
+
+	@Test
+	public void imported_bom_change_invalidates_entry() throws IOException {
+		writePom("g", "parent", "1", "<properties><bom.version>3</bom.version></properties>");
+		writePom("g", "app", "1.0", "<parent><groupId>g</groupId><artifactId>parent</artifactId><version>1</version></parent>"
+				+ "<dependencyManagement><dependencies><dependency><groupId>${project.groupId}</groupId><artifactId>bom</artifactId>"
+				+ "<version>${bom.version}</version><type>pom</type><scope>import</scope></dependency></dependencies></dependencyManagement>");
+		writePom("g", "bom", "3", "");
+		cache.put(topLevelModuleId, localRepo, tree());
+		assertNotNull(cache.get(topLevelModuleId, localRepo));
+
+		writePom("g", "bom", "3", "<dependencyManagement><dependencies/></dependencyManagement>");
+
+		assertNull(cache.get(topLevelModuleId, localRepo));
+	}
+
+	@Test
+	public void tree_importing_an_unresolved_bom_is_not_cached() throws IOException {
+		writePom("g", "app", "1.0", "<dependencyManagement><dependencies><dependency><groupId>g</groupId><artifactId>bom</artifactId>"
+				+ "<version>${undefined}</version><type>pom</type><scope>import</scope></dependency></dependencies></dependencyManagement>");
+		cache.put(topLevelModuleId, localRepo, tree());
+
+		assertNull(cache.get(topLevelModuleId, localRepo));
+	}
+
+	private Node tree() {
+		Node root = node("app", "1.0", null, null, false);
+		root.addChildNode(node("lib", "2.0-SNAPSHOT", "compile", null, false));
+		root.addChildNode(node("lib", "2.0-SNAPSHOT", "compile", "omitted for duplicate", true));
+		return root;
+	}
+
+	private Node node(String artifactId, String version, String scope, String description, boolean omitted) {
+		return new Node("g", artifactId, "jar", null, version, scope, description, omitted, null, new LinkedList<>());
+	}
+
+	private void writePom(String groupId, String artifactId, String version, String content) throws IOException {
+		write(localRepo.resolve(groupId).resolve(artifactId).resolve(version).resolve(artifactId + "-" + version + ".pom"),
+				"<project><modelVersion>4.0.0</modelVersion>" + content + "</project>");
+	}
+
+	private void write(Path file, String content) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
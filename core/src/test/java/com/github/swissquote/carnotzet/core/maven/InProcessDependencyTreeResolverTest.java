@@ -0,0 +1,104 @@
+package com.github.swissquote.carnotzet.core.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedList;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class InProcessDependencyTreeResolverTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void same_tree_as_dependency_tree_verbose() throws IOException, ParseException {
+		File remote = temp.newFolder("remote");
+		deploy(remote, "app", "1", dependency("a", "1"), dependency("b", "1"), dependency("d", "1"));
+		deploy(remote, "a", "1", dependency("c", "1"), dependency("d", "1"));
+		deploy(remote, "b", "1", dependency("c", "2"));
+		deploy(remote, "c", "1");
+		deploy(remote, "c", "2");
+		deploy(remote, "d", "1");
+		File settings = temp.newFile("settings.xml");
+		write(settings.toPath(), "<settings><mirrors><mirror>"
+				+ "<id>test</id><mirrorOf>*</mirrorOf><url>" + remote.toURI() + "</url>"
+				+ "</mirror></mirrors></settings>");
+		String expected = "com.test:app:jar:1\n"
+				+ "+- com.test:a:jar:1:compile\n"
+				+ "|  +- com.test:c:jar:1:compile\n"
+				+ "|  \\- (com.test:d:jar:1:compile - omitted for duplicate)\n"
+				+ "+- com.test:b:jar:1:compile\n"
+				+ "|  \\- (com.test:c:jar:2:compile - omitted for conflict with 1)\n"
+				+ "\\- com.test:d:jar:1:compile\n";
+
+		Node actual = new InProcessDependencyTreeResolver(settings, null)
+				.resolveDependencyTree(new CarnotzetModuleCoordinates("com.test", "app", "1"), temp.newFolder("local").toPath());
+
+		assertEquals(TreeTextParserTest.render(new TreeTextParser().parse(new StringReader(expected))), TreeTextParserTest.render(actual));
+	}
+
+	@Test
+	public void falls_back_to_maven_when_in_process_resolution_fails() {
+		Node fromMaven = new Node("com.test", "app", "jar", null, "1", null, null, false, null, new LinkedList<>());
+		MavenDependencyResolver resolver = new MavenDependencyResolver(CarnotzetModuleCoordinates::getArtifactId, temp.getRoot().toPath(), true) {
+			@Override
+			Node resolveDependencyTreeInProcess(CarnotzetModuleCoordinates moduleId) {
+				throw new IllegalStateException("no repository system");
+			}
+
+			@Override
+			Node resolveDependencyTreeWithMaven(CarnotzetModuleCoordinates moduleId) {
+				return fromMaven;
+			}
+		};
+
+		assertSame(fromMaven, resolver.getDependenciesTree(new CarnotzetModuleCoordinates("com.test", "app", "1")));
+	}
+
+	@Test
+	public void falls_back_to_maven_when_resolver_classes_are_missing() {
+		Node fromMaven = new Node("com.test", "app", "jar", null, "1", null, null, false, null, new LinkedList<>());
+		MavenDependencyResolver resolver = new MavenDependencyResolver(CarnotzetModuleCoordinates::getArtifactId, temp.getRoot().toPath(), true) {
+			@Override
+			Node resolveDependencyTreeInProcess(CarnotzetModuleCoordinates moduleId) {
+				throw new NoClassDefFoundError("org/eclipse/aether/RepositorySystem");
+			}
+
+			@Override
+			Node resolveDependencyTreeWithMaven(CarnotzetModuleCoordinates moduleId) {
+				return fromMaven;
+			}
+		};
+
+		assertSame(fromMaven, resolver.getDependenciesTree(new CarnotzetModuleCoordinates("com.test", "app", "1")));
+	}
+
+	private static String dependency(String artifactId, String version) {
+		return "<dependency><groupId>com.test</groupId><artifactId>" + artifactId + "</artifactId>"
+				+ "<version>" + version + "</version></dependency>";
+	}
+
+	private static void deploy(File repository, String artifactId, String version, String... dependencies) throws IOException {
+		Path folder = repository.toPath().resolve("com/test").resolve(artifactId).resolve(version);
+		Files.createDirectories(folder);
+		write(folder.resolve(artifactId + "-" + version + ".pom"), "<project><modelVersion>4.0.0</modelVersion>"
+				+ "<groupId>com.test</groupId><artifactId>" + artifactId + "</artifactId><version>" + version + "</version>"
+				+ "<dependencies>" + String.join("", dependencies) + "</dependencies></project>");
+		write(folder.resolve(artifactId + "-" + version + ".jar"), "");
+	}
+
+	private static void write(Path file, String content) throws IOException {
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
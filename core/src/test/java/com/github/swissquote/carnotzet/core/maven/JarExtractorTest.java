@@ -0,0 +1,100 @@
+package com.github.swissquote.carnotzet.core.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.swissquote.carnotzet.core.CarnotzetConfig;
+import com.github.swissquote.carnotzet.core.CarnotzetDefinitionException;
+
+public class JarExtractorTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void default_filter_skips_metadata_and_classes() {
+		JarExtractor extractor = new JarExtractor(CarnotzetConfig.DEFAULT_RESOURCES_INCLUDES, CarnotzetConfig.DEFAULT_RESOURCES_EXCLUDES);
+
+		assertTrue(extractor.isIncluded("carnotzet.properties"));
+		assertTrue(extractor.isIncluded("service/files/config.properties"));
+		assertTrue(extractor.isIncluded("service/files/"));
+		assertFalse(extractor.isIncluded("META-INF/"));
+		assertFalse(extractor.isIncluded("META-INF/maven/g/a/pom.xml"));
+		assertFalse(extractor.isIncluded("Main.class"));
+		assertFalse(extractor.isIncluded("com/example/Main.class"));
+	}
+
+	@Test
+	public void globs() {
+		JarExtractor extractor = new JarExtractor(Arrays.asList("*.properties", "*/files/**", "env/?.env"), null);
+
+		assertTrue(extractor.isIncluded("carnotzet.properties"));
+		assertFalse(extractor.isIncluded("service/carnotzet.properties"));
+		assertTrue(extractor.isIncluded("service/files/a/b.json"));
+		assertFalse(extractor.isIncluded("a/service/files/b.json"));
+		assertTrue(extractor.isIncluded("env/a.env"));
+		assertFalse(extractor.isIncluded("env/ab.env"));
+	}
+
+	@Test
+	public void extract_filtered_entries() throws IOException {
+		// Given
+		Path jar = temp.newFile("module.jar").toPath();
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+			write(out, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0", 0L);
+			write(out, "com/example/Main.class", "class", 0L);
+			write(out, "carnotzet.properties", "docker.image=example", 1_500_000_000_000L);
+			write(out, "service/files/config.properties", "a=b", 0L);
+		}
+		Path destination = temp.newFolder().toPath().resolve("module");
+
+		// When
+		new JarExtractor(CarnotzetConfig.DEFAULT_RESOURCES_INCLUDES, CarnotzetConfig.DEFAULT_RESOURCES_EXCLUDES).extract(jar, destination);
+
+		// Then
+		assertEquals("docker.image=example", read(destination.resolve("carnotzet.properties")));
+		assertEquals("a=b", read(destination.resolve("service/files/config.properties")));
+		assertFalse(Files.exists(destination.resolve("META-INF")));
+		assertFalse(Files.exists(destination.resolve("com")));
+		assertEquals(1_500_000_000_000L, Files.getLastModifiedTime(destination.resolve("carnotzet.properties")).toMillis());
+	}
+
+	@Test(expected = CarnotzetDefinitionException.class)
+	public void entries_outside_of_destination_are_rejected() throws IOException {
+		Path jar = temp.newFile("evil.jar").toPath();
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+			write(out, "../evil.properties", "evil", 0L);
+		}
+
+		new JarExtractor(Collections.singletonList("**"), null).extract(jar, temp.newFolder().toPath());
+	}
+
+	private void write(ZipOutputStream out, String name, String content, long time) throws IOException {
+		ZipEntry entry = new ZipEntry(name);
+		if (time > 0) {
+			entry.setTime(time);
+		}
+		out.putNextEntry(entry);
+		out.write(content.getBytes(StandardCharsets.UTF_8));
+		out.closeEntry();
+	}
+
+	private String read(Path file) throws IOException {
+		return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,297 @@
+package com.github.swissquote.carnotzet.core.maven;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * The list based, recursive TreeTextParser as it was before the streaming implementation, kept as a baseline for
+ * TreeTextParserTest and TreeTextParserBenchmark.
+ */
+class LegacyTreeTextParser {
+
+	private int lineIndex;
+
+	private List<String> lines;
+
+	LegacyTreeTextParser() {
+		this.lineIndex = 0;
+		this.lines = null;
+	}
+
+	public Node parse(Reader reader) throws ParseException {
+
+		try {
+			this.lines = splitLines(reader);
+		}
+		catch (IOException e) {
+			throw new ParseException(e);
+		}
+
+		if (lines.isEmpty()) {
+			return null;
+		}
+
+		return parseInternal(0);
+
+	}
+
+	private Node parseInternal(final int depth) {
+
+		//current node
+		final Node node = this.parseLine();
+
+		this.lineIndex++;
+
+		//children
+		while (this.lineIndex < this.lines.size() && this.computeDepth(this.lines.get(this.lineIndex)) > depth) {
+			final Node child = this.parseInternal(depth + 1);
+			//if (node != null) {
+			node.addChildNode(child);
+			//}
+		}
+		return node;
+
+	}
+
+	private int computeDepth(final String line) {
+		return getArtifactIndex(line) / 3;
+	}
+
+	/**
+	 * sample lineIndex structure:
+	 * <pre>|  |  \- org.apache.activemq:activeio-core:test-jar:tests:3.1.0:compile</pre>
+	 */
+	private Node parseLine() {
+		String line = this.lines.get(this.lineIndex);
+		String artifact;
+		if (line.contains("active project artifact:")) {
+			artifact = extractActiveProjectArtifact();
+		} else {
+			artifact = extractArtifact(line);
+		}
+		return parseArtifactString(artifact, lineIndex);
+	}
+
+	private String extractArtifact(String line) {
+		return line.substring(getArtifactIndex(line));
+	}
+
+	private int getArtifactIndex(final String line) {
+		for (int i = 0; i < line.length(); i++) {
+			final char c = line.charAt(i);
+			switch (c) {
+				case ' '://whitespace, standard and extended
+				case '|'://standard
+				case '+'://standard
+				case '\\'://standard
+				case '-'://standard
+				case '³'://extended
+				case 'Ã'://extended
+				case 'Ä'://extended
+				case 'À'://extended
+					continue;
+				default:
+					return i;
+			}
+		}
+		return -1;
+	}
+
+	private boolean isEmpty(CharSequence cs) {
+		return cs == null || cs.length() == 0;
+	}
+
+	private String substringAfter(String str, String separator) {
+		if (isEmpty(str)) {
+			return str;
+		} else if (separator == null) {
+			return "";
+		} else {
+			int pos = str.indexOf(separator);
+			return pos == -1 ? "" : str.substring(pos + separator.length());
+		}
+	}
+
+	private String substringBefore(String str, String separator) {
+		if (!isEmpty(str) && separator != null) {
+			if (separator.isEmpty()) {
+				return "";
+			} else {
+				int pos = str.indexOf(separator);
+				return pos == -1 ? str : str.substring(0, pos);
+			}
+		} else {
+			return str;
+		}
+	}
+
+	protected String extractActiveProjectArtifact() {
+		String artifact = null;
+		//start at next line and consume all lines containing "artifact =" or "project: "; record the last line containing "artifact =".
+		boolean artifactFound = false;
+		while (this.lineIndex < this.lines.size() - 1) {
+			String tempLine = this.lines.get(this.lineIndex + 1);
+			boolean artifactLine = !artifactFound && tempLine.contains("artifact = ");
+			boolean projectLine = artifactFound && tempLine.contains("project: ");
+			if (artifactLine || projectLine) {
+				if (tempLine.contains("artifact = ") && !tempLine.contains("active project artifact:")) {
+					artifact = substringBefore(substringAfter(tempLine, "artifact = "), ";");
+					artifactFound = true;
+				}
+				this.lineIndex++;
+			} else {
+				break;
+			}
+		}
+		return artifact;
+	}
+
+	/**
+	 * Parses a string representing a Maven artifact in standard notation.
+	 *
+	 * @return an instance of {@link Node} representing the artifact.
+	 */
+	private static Node parseArtifactString(final String artifact, int id) {
+		final List<String> tokens = new ArrayList<String>(7);
+		int tokenStart = 0;
+		boolean tokenStarted = false;
+		boolean hasDescription = false;
+		boolean omitted = false;
+		int tokenEnd = 0;
+		for (; tokenEnd < artifact.length(); tokenEnd++) {
+			final char c = artifact.charAt(tokenEnd);
+			switch (c) {
+				case ' ': // in descriptions only
+					if (tokenStarted && !hasDescription) {
+						tokens.add(artifact.substring(tokenStart, tokenEnd));
+						tokenStarted = false;
+						hasDescription = true;
+					}
+					continue;
+
+				case ':':
+				case ')': //end of descriptions and omitted artifacts
+					tokens.add(artifact.substring(tokenStart, tokenEnd));
+					tokenStarted = false;
+					continue;
+
+				case '-': // in omitted artifacts descriptions
+					continue;
+
+				case '(': // in omitted artifacts
+					if (tokenEnd == 0) {
+						omitted = true;
+					}
+					continue;
+
+				default:
+					if (!tokenStarted) {
+						tokenStart = tokenEnd;
+						tokenStarted = true;
+					}
+			}
+		}
+
+		//last token
+		if (tokenStarted) {
+			tokens.add(artifact.substring(tokenStart, tokenEnd));
+		}
+
+		String groupId;
+		String artifactId;
+		String packaging;
+		String classifier;
+		String version;
+		String scope;
+		String description;
+
+		if (tokens.size() == 4) {
+
+			groupId = tokens.get(0);
+			artifactId = tokens.get(1);
+			packaging = tokens.get(2);
+			version = tokens.get(3);
+			scope = null;
+			description = null;
+			classifier = null;
+
+		} else if (tokens.size() == 5) {
+
+			groupId = tokens.get(0);
+			artifactId = tokens.get(1);
+			packaging = tokens.get(2);
+			version = tokens.get(3);
+			scope = tokens.get(4);
+			description = null;
+			classifier = null;
+
+		} else if (tokens.size() == 6) {
+
+			if (hasDescription) {
+				groupId = tokens.get(0);
+				artifactId = tokens.get(1);
+				packaging = tokens.get(2);
+				version = tokens.get(3);
+				scope = tokens.get(4);
+				description = tokens.get(5);
+				classifier = null;
+			} else {
+				groupId = tokens.get(0);
+				artifactId = tokens.get(1);
+				packaging = tokens.get(2);
+				classifier = tokens.get(3);
+				version = tokens.get(4);
+				scope = tokens.get(5);
+				description = null;
+			}
+
+		} else if (tokens.size() == 7) {
+
+			groupId = tokens.get(0);
+			artifactId = tokens.get(1);
+			packaging = tokens.get(2);
+			classifier = tokens.get(3);
+			version = tokens.get(4);
+			scope = tokens.get(5);
+			description = tokens.get(6);
+
+		} else {
+			throw new IllegalStateException("Wrong number of tokens: " + tokens.size() + " for artifact: " + artifact);
+		}
+
+		final Node node = new Node(
+				groupId,
+				artifactId,
+				packaging,
+				classifier,
+				version,
+				scope,
+				description,
+				omitted,
+				null,
+				new LinkedList<>()
+		);
+		return node;
+
+	}
+
+	private static List<String> splitLines(final Reader reader) throws IOException {
+		String line = null;
+		final BufferedReader br;
+		if (reader instanceof BufferedReader) {
+			br = (BufferedReader) reader;
+		} else {
+			br = new BufferedReader(reader);
+		}
+		final List<String> lines = new ArrayList<>();
+		while ((line = br.readLine()) != null) {
+			lines.add(line);
+		}
+		return lines;
+	}
+
+}
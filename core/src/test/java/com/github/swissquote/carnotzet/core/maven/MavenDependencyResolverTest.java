@@ -1,22 +1,44 @@
 package com.github.swissquote.carnotzet.core.maven;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.github.swissquote.carnotzet.core.Carnotzet;
 import com.github.swissquote.carnotzet.core.CarnotzetConfig;
+import com.github.swissquote.carnotzet.core.CarnotzetDefinitionException;
+import com.github.swissquote.carnotzet.core.CarnotzetMetricsListener;
 import com.github.swissquote.carnotzet.core.CarnotzetModule;
+import com.github.swissquote.carnotzet.core.metrics.LifecycleEvent;
+import com.github.swissquote.carnotzet.core.metrics.LifecycleRecorder;
 
 public class MavenDependencyResolverTest {
 
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
 	private Function<CarnotzetModuleCoordinates, String>  getDefaultModuleResolver() {
 		Pattern moduleFilterPattern = Pattern.compile(CarnotzetConfig.DEFAULT_MODULE_FILTER_PATTERN);
 		Pattern classifierIncludePattern = Pattern.compile(CarnotzetConfig.DEFAULT_CLASSIFIER_INCLUDE_PATTERN);
@@ -40,4 +62,151 @@ public class MavenDependencyResolverTest {
 
 		assertEquals(modules.size(), 6);
 	}
+
+	@Test
+	public void missing_jars_are_downloaded_in_one_batch_and_reported_together() throws IOException {
+		Path localRepo = temp.newFolder("repository").toPath();
+		createJar(localRepo, "app");
+		createJar(localRepo, "present");
+		List<List<CarnotzetModuleCoordinates>> batches = new ArrayList<>();
+		AtomicInteger mavenDownloads = new AtomicInteger();
+		MavenDependencyResolver resolver = new MavenDependencyResolver(CarnotzetModuleCoordinates::getArtifactId,
+				temp.newFolder("resources").toPath(), true) {
+			@Override
+			Node resolveDependencyTreeInProcess(CarnotzetModuleCoordinates moduleId) {
+				Node root = node("app", null);
+				for (String artifactId : Arrays.asList("present", "downloadable", "unresolvable1", "unresolvable2")) {
+					root.addChildNode(node(artifactId, "compile"));
+				}
+				return root;
+			}
+
+			@Override
+			void downloadJarsInProcess(List<CarnotzetModuleCoordinates> modules) {
+				batches.add(modules);
+				createJar(localRepo, "downloadable");
+			}
+
+			@Override
+			void downloadJarsWithMaven(CarnotzetModuleCoordinates topLevelModuleId) {
+				mavenDownloads.incrementAndGet();
+			}
+		};
+		resolver.setLocalRepoPath(localRepo);
+
+		try {
+			resolver.resolve(new CarnotzetModuleCoordinates("com.test", "app", "1"), true);
+			fail("unresolvable jars must be reported");
+		}
+		catch (CarnotzetDefinitionException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(jarPath(localRepo, "unresolvable1").toString()));
+			assertTrue(e.getMessage(), e.getMessage().contains(jarPath(localRepo, "unresolvable2").toString()));
+			assertFalse(e.getMessage(), e.getMessage().contains("downloadable"));
+		}
+
+		assertEquals(1, batches.size());
+		List<String> requested = new ArrayList<>();
+		batches.get(0).forEach(module -> requested.add(module.getArtifactId()));
+		requested.sort(null);
+		assertEquals(Arrays.asList("downloadable", "unresolvable1", "unresolvable2"), requested);
+		assertEquals(1, mavenDownloads.get());
+	}
+
+	private static Node node(String artifactId, String scope) {
+		return new Node("com.test", artifactId, "jar", null, "1", scope, null, false, null, new LinkedList<>());
+	}
+
+	private static Path jarPath(Path localRepo, String artifactId) {
+		return localRepo.resolve("com/test").resolve(artifactId).resolve("1").resolve(artifactId + "-1.jar");
+	}
+
+	private static void createJar(Path localRepo, String artifactId) {
+		Path jar = jarPath(localRepo, artifactId);
+		try {
+			Files.createDirectories(jar.getParent());
+			Files.createFile(jar);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Test
+	public void maven_is_not_forked_until_needed() throws IOException {
+		AtomicInteger forks = new AtomicInteger();
+		MavenDependencyResolver resolver = new ForkCountingResolver(temp.newFolder("resources").toPath(), forks, null);
+
+		Node tree = resolver.getDependenciesTree(new CarnotzetModuleCoordinates("com.test", "app", "1"));
+
+		assertEquals("app", tree.getArtifactId());
+		assertEquals(0, forks.get());
+	}
+
+	@Test
+	public void stale_cached_maven_home_is_looked_up_again() throws IOException {
+		Path userConfig = temp.newFolder("user-config").toPath();
+		File installed = temp.newFolder("maven");
+		Files.write(userConfig.resolve("mavenHome"), "/does/not/exist/anymore".getBytes(StandardCharsets.UTF_8));
+		AtomicInteger forks = new AtomicInteger();
+
+		assertEquals(installed, new ForkCountingResolver(userConfig, forks, installed).getCachedMavenHome());
+		assertEquals(1, forks.get());
+		assertEquals(installed.getAbsolutePath(), new String(Files.readAllBytes(userConfig.resolve("mavenHome")), StandardCharsets.UTF_8));
+
+		// the refreshed value is used by the next runs
+		assertEquals(installed, new ForkCountingResolver(userConfig, forks, installed).getCachedMavenHome());
+		assertEquals(1, forks.get());
+	}
+
+	@Test
+	public void maven_home_lookup_is_reported_as_a_lifecycle_phase() throws IOException {
+		List<LifecycleEvent> events = new ArrayList<>();
+		MavenDependencyResolver resolver = new ForkCountingResolver(temp.newFolder("user-config").toPath(), new AtomicInteger(),
+				temp.newFolder("maven"));
+		resolver.setLifecycleRecorder(new LifecycleRecorder(Collections.singletonList(events::add)));
+
+		resolver.configureMavenHome();
+		resolver.configureMavenHome();
+
+		assertEquals(1, events.size());
+		assertEquals(CarnotzetMetricsListener.MAVEN_HOME, events.get(0).getPhase());
+	}
+
+	/**
+	 * Counts the forks of maven instead of running them, dependency trees are resolved in-process
+	 */
+	private static final class ForkCountingResolver extends MavenDependencyResolver {
+
+		private final Path userConfigFolder;
+		private final AtomicInteger forks;
+		private final File mavenHome;
+
+		ForkCountingResolver(Path userConfigFolder, AtomicInteger forks, File mavenHome) {
+			super(CarnotzetModuleCoordinates::getArtifactId, userConfigFolder.resolve("maven"), true);
+			this.userConfigFolder = userConfigFolder;
+			this.forks = forks;
+			this.mavenHome = mavenHome;
+		}
+
+		@Override
+		Node resolveDependencyTreeInProcess(CarnotzetModuleCoordinates moduleId) {
+			return node(moduleId.getArtifactId(), null);
+		}
+
+		@Override
+		void executeMavenBuild(List<String> goals, InvocationOutputHandler outputHandler) {
+			forks.incrementAndGet();
+		}
+
+		@Override
+		File getMavenHomeFromMaven() {
+			forks.incrementAndGet();
+			return mavenHome;
+		}
+
+		@Override
+		Path getUserConfigFolder() {
+			return userConfigFolder;
+		}
+	}
 }
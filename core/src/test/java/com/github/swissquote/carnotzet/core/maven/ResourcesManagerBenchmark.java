@@ -0,0 +1,110 @@
+package com.github.swissquote.carnotzet.core.maven;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.github.swissquote.carnotzet.core.CarnotzetModule;
+
+/**
+ * Measures the resolution of resources overrides on a synthetic layout of 100 expanded jars holding 200 files each.
+ * Every module has its own files, and overrides files of some of the modules processed before it.<br>
+ * Not run as part of the build, run the main method from the IDE (or with the test classpath) to get the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ResourcesManagerBenchmark {
+
+	private static final int MODULES = 100;
+	private static final int FILES_PER_MODULE = 200;
+	private static final int OWN_FILES_PER_MODULE = 100;
+
+	private Path resources;
+
+	private List<CarnotzetModule> modules;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		resources = Files.createTempDirectory("carnotzet-resources-benchmark");
+		Path expandedJars = resources.resolve("expanded-jars");
+		Random random = new Random(42);
+		modules = new ArrayList<>();
+		for (int i = 0; i < MODULES; i++) {
+			String name = "service" + i;
+			modules.add(CarnotzetModule.builder().name(name).serviceId(name).build());
+			Path jar = expandedJars.resolve(name);
+			write(jar.resolve("carnotzet.properties"), "docker.image=" + name);
+			for (int f = 0; f < OWN_FILES_PER_MODULE; f++) {
+				write(jar.resolve(name).resolve("files/dir" + f % 10).resolve("file" + f), name);
+			}
+			for (int f = OWN_FILES_PER_MODULE; f < FILES_PER_MODULE; f++) {
+				// overrides go to modules processed before this one
+				String target = i == 0 ? name : "service" + random.nextInt(i);
+				write(jar.resolve(target).resolve("files/dir" + f % 10).resolve("file" + random.nextInt(OWN_FILES_PER_MODULE)), name);
+			}
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void clean() throws IOException {
+		delete(resources.resolve("resolved"));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		delete(resources);
+	}
+
+	@Benchmark
+	public void resolveResources() {
+		new ResourcesManager(resources, null).resolveResources(modules);
+	}
+
+	private static void write(Path file, String content) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void delete(Path path) throws IOException {
+		if (!Files.exists(path)) {
+			return;
+		}
+		try (Stream<Path> walk = Files.walk(path)) {
+			for (Path p : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(p);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ResourcesManagerBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
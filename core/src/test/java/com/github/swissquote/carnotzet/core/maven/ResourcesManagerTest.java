@@ -6,15 +6,22 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.Assert;
 import org.junit.Rule;
@@ -185,4 +192,314 @@ public class ResourcesManagerTest {
 
 	}
 
+	@Test
+	public void extract_resources_in_parallel() throws IOException {
+		// Given
+		Path jars = temp.newFolder().toPath();
+		Path topLevelResources = temp.newFolder().toPath();
+		Files.write(topLevelResources.resolve("carnotzet.properties"), "from=sources".getBytes(StandardCharsets.UTF_8));
+		List<CarnotzetModule> modules = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			Path jar = jars.resolve("service" + i + ".jar");
+			writeJar(jar, "carnotzet.properties", "from=jar" + i, "service0/files/injected.by.service" + i, "service" + i);
+			modules.add(CarnotzetModule.builder().name("service" + i).topLevelModuleName("service19").jarPath(jar).build());
+		}
+		Path resources = temp.newFolder().toPath();
+		ResourcesManager manager = new ResourcesManager(resources, topLevelResources);
+		manager.setParallelExtraction(true);
+
+		// When
+		manager.extractResources(modules);
+
+		// Then
+		for (int i = 0; i < 19; i++) {
+			Assert.assertThat(readFile(resources, "expanded-jars/service" + i + "/carnotzet.properties"), is("from=jar" + i));
+			Assert.assertThat(readFile(resources, "expanded-jars/service" + i + "/service0/files/injected.by.service" + i), is("service" + i));
+		}
+		Assert.assertThat(readFile(resources, "expanded-jars/service19/carnotzet.properties"), is("from=sources"));
+		Assert.assertThat(readFile(resources, "expanded-jars/service19/service0/files/injected.by.service19"), is("service19"));
+	}
+
+	@Test
+	public void extract_resources_incrementally() throws IOException {
+		// Given
+		Path jars = temp.newFolder().toPath();
+		Path unchangedJar = jars.resolve("unchanged.jar");
+		Path changedJar = jars.resolve("changed.jar");
+		Path removedJar = jars.resolve("removed.jar");
+		Path topJar = jars.resolve("top.jar");
+		writeJar(unchangedJar, "carnotzet.properties", "v1");
+		writeJar(changedJar, "carnotzet.properties", "v1");
+		writeJar(removedJar, "carnotzet.properties", "v1");
+		writeJar(topJar, "carnotzet.properties", "v1");
+		CarnotzetModule unchanged = CarnotzetModule.builder().name("unchanged").topLevelModuleName("top").jarPath(unchangedJar).build();
+		CarnotzetModule changed = CarnotzetModule.builder().name("changed").topLevelModuleName("top").jarPath(changedJar).build();
+		CarnotzetModule removed = CarnotzetModule.builder().name("removed").topLevelModuleName("top").jarPath(removedJar).build();
+		CarnotzetModule top = CarnotzetModule.builder().name("top").topLevelModuleName("top").jarPath(topJar).build();
+		Path resources = temp.newFolder().toPath();
+		ResourcesManager manager = new ResourcesManager(resources, null);
+		manager.setIncrementalExtraction(true);
+		manager.extractResources(Arrays.asList(unchanged, changed, removed, top));
+		Files.createDirectories(resources.resolve("resolved"));
+		for (String module : Arrays.asList("unchanged", "changed", "top")) {
+			Files.write(resources.resolve("expanded-jars/" + module + "/marker"), new byte[0]);
+		}
+
+		// When
+		writeJar(changedJar, "carnotzet.properties", "v2");
+		manager.extractResources(Arrays.asList(unchanged, changed, top));
+
+		// Then
+		assertTrue(Files.exists(resources.resolve("expanded-jars/unchanged/marker")));
+		Assert.assertFalse(Files.exists(resources.resolve("expanded-jars/changed/marker")));
+		Assert.assertThat(readFile(resources, "expanded-jars/changed/carnotzet.properties"), is("v2"));
+		Assert.assertFalse(Files.exists(resources.resolve("expanded-jars/top/marker")));
+		Assert.assertFalse(Files.exists(resources.resolve("expanded-jars/removed")));
+		Assert.assertFalse(Files.exists(resources.resolve("resolved")));
+	}
+
+	@Test
+	public void resolve_resources_incrementally() throws IOException {
+		// Given
+		URL url = Thread.currentThread().getContextClassLoader().getResource("example_override");
+		File example = new File(url.getPath());
+		Path resources = temp.newFolder().toPath();
+		copyDirectory(example.toString(), resources.toString());
+		ResourcesManager manager = new ResourcesManager(resources, null);
+		manager.setIncrementalResolution(true);
+		List<CarnotzetModule> modules = Arrays.asList(
+				CarnotzetModule.builder().name("service3").serviceId("service3").build(),
+				CarnotzetModule.builder().name("service2").serviceId("service2").build(),
+				CarnotzetModule.builder().name("service1").serviceId("service1").build()
+		);
+		manager.resolveResources(modules);
+		Files.write(resources.resolve("resolved/service2/marker"), new byte[0]);
+		Files.write(resources.resolve("resolved/service3/marker"), new byte[0]);
+
+		// When only the own resources of service1 change
+		Files.write(resources.resolve("expanded-jars/service1/Unrelated/should.not.be.touched"), "changed".getBytes(StandardCharsets.UTF_8));
+		manager.resolveResources(modules);
+
+		// Then
+		Assert.assertThat(readFile(resources, "resolved/service1/Unrelated/should.not.be.touched"), is("changed"));
+		assertTrue(Files.exists(resources.resolve("resolved/service2/marker")));
+		assertTrue(Files.exists(resources.resolve("resolved/service3/marker")));
+
+		// When service1 changes a file it injects in service3
+		Files.write(resources.resolve("expanded-jars/service1/service3/files/injected.by.service1"), "changed".getBytes(StandardCharsets.UTF_8));
+		manager.resolveResources(modules);
+
+		// Then
+		Assert.assertThat(readFile(resources, "resolved/service3/files/injected.by.service1"), is("changed"));
+		Assert.assertThat(readFile(resources, "resolved/service3/files/overridden.by.service2"), is("service2"));
+		Assert.assertFalse(Files.exists(resources.resolve("resolved/service3/marker")));
+		assertTrue(Files.exists(resources.resolve("resolved/service2/marker")));
+
+		// And the result is the same as a full resolution
+		Files.delete(resources.resolve("resolved/service2/marker"));
+		Path fullResources = temp.newFolder().toPath();
+		copyDirectory(resources.resolve("expanded-jars").toString(), fullResources.resolve("expanded-jars").toString());
+		new ResourcesManager(fullResources, null).resolveResources(modules);
+		Assert.assertEquals(listFiles(fullResources.resolve("resolved")), listFiles(resources.resolve("resolved")));
+	}
+
+	@Test
+	public void modified_mounted_files_are_resolved_again() throws IOException {
+		// Given
+		URL url = Thread.currentThread().getContextClassLoader().getResource("example_override");
+		File example = new File(url.getPath());
+		Path resources = temp.newFolder().toPath();
+		copyDirectory(example.toString(), resources.toString());
+		ResourcesManager manager = new ResourcesManager(resources, null);
+		manager.setIncrementalResolution(true);
+		List<CarnotzetModule> modules = Arrays.asList(
+				CarnotzetModule.builder().name("service3").serviceId("service3").build(),
+				CarnotzetModule.builder().name("service2").serviceId("service2").build(),
+				CarnotzetModule.builder().name("service1").serviceId("service1").build()
+		);
+		manager.resolveResources(modules);
+		Files.write(resources.resolve("resolved/service2/marker"), new byte[0]);
+		Files.write(resources.resolve("resolved/service3/marker"), new byte[0]);
+
+		// When a container writes to a mounted file
+		Files.write(resources.resolve("resolved/service3/files/injected.by.service1"), "written by a container".getBytes(StandardCharsets.UTF_8));
+		manager.resolveResources(modules);
+
+		// Then only that service is resolved again
+		Assert.assertThat(readFile(resources, "resolved/service3/files/injected.by.service1"), is("service1"));
+		Assert.assertFalse(Files.exists(resources.resolve("resolved/service3/marker")));
+		assertTrue(Files.exists(resources.resolve("resolved/service2/marker")));
+	}
+
+	@Test
+	public void resolved_folders_are_kept_when_jars_are_extracted_again() throws IOException {
+		// Given
+		URL url = Thread.currentThread().getContextClassLoader().getResource("example_merge");
+		Path expandedJars = new File(url.getPath()).toPath().resolve("expanded-jars");
+		Path jars = temp.newFolder().toPath();
+		List<CarnotzetModule> modules = new ArrayList<>();
+		for (String name : Arrays.asList("service3", "service2", "service1")) {
+			Path jar = jars.resolve(name + ".jar");
+			zipDirectory(expandedJars.resolve(name), jar);
+			modules.add(CarnotzetModule.builder().name(name).serviceId(name).topLevelModuleName("service1").jarPath(jar).build());
+		}
+		Path resources = temp.newFolder().toPath();
+		ResourcesManager manager = new ResourcesManager(resources, null);
+		manager.setIncrementalResolution(true);
+		manager.extractResources(modules);
+		manager.resolveResources(modules);
+		Files.write(resources.resolve("resolved/service2/marker"), new byte[0]);
+
+		// When the jars are extracted again, without incremental extraction
+		manager.extractResources(modules);
+		manager.resolveResources(modules);
+
+		// Then the resolved folders of unchanged services are reused
+		assertTrue(Files.exists(resources.resolve("resolved/service2/marker")));
+	}
+
+	@Test
+	public void link_resources_and_detach_merged_files() throws IOException {
+		// Given
+		URL url = Thread.currentThread().getContextClassLoader().getResource("example_merge");
+		File example = new File(url.getPath());
+		Path resources = temp.newFolder().toPath();
+		copyDirectory(example.toString(), resources.toString());
+		String originalConfig = readFile(resources, "expanded-jars/service3/service3/files/config.properties");
+		ResourcesManager manager = new ResourcesManager(resources, null);
+		manager.setCopyStrategy(ResourcesCopyStrategy.HARDLINK);
+		List<CarnotzetModule> modules = Arrays.asList(
+				CarnotzetModule.builder().name("service3").serviceId("service3").build(),
+				CarnotzetModule.builder().name("service2").serviceId("service2").build(),
+				CarnotzetModule.builder().name("service1").serviceId("service1").build()
+		);
+
+		// When
+		manager.resolveResources(modules);
+
+		// Then mounted files are copied
+		Assert.assertFalse(Files.isSameFile(resources.resolve("expanded-jars/service3/service3/files/data.json"),
+				resources.resolve("resolved/service3/files/data.json")));
+
+		// And merged files are detached from the expanded jars
+		Properties service3config = new Properties();
+		service3config.load(Files.newInputStream(resources.resolve("resolved/service3/files/config.properties")));
+		assertThat(service3config.getProperty("added.from.service1"), is("service1value"));
+		Assert.assertFalse(Files.isSameFile(resources.resolve("expanded-jars/service3/service3/files/config.properties"),
+				resources.resolve("resolved/service3/files/config.properties")));
+		assertThat(readFile(resources, "expanded-jars/service3/service3/files/config.properties"), is(originalConfig));
+	}
+
+	@Test
+	public void mounted_files_are_never_linked() throws IOException {
+		for (ResourcesCopyStrategy strategy : Arrays.asList(ResourcesCopyStrategy.HARDLINK, ResourcesCopyStrategy.SYMLINK)) {
+			// Given
+			Path resources = temp.newFolder().toPath();
+			Path expanded = resources.resolve("expanded-jars/service1/service1");
+			writeFile(expanded.resolve("files/mounted.txt"), "original");
+			writeFile(expanded.resolve("env/service1.env"), "KEY=original");
+			writeFile(expanded.resolve("other/not-mounted.txt"), "original");
+			ResourcesManager manager = new ResourcesManager(resources, null);
+			manager.setCopyStrategy(strategy);
+
+			// When
+			manager.resolveResources(Arrays.asList(CarnotzetModule.builder().name("service1").serviceId("service1").build()));
+			// a container writes to the mounted files
+			writeFile(resources.resolve("resolved/service1/files/mounted.txt"), "written by a container");
+			writeFile(resources.resolve("resolved/service1/env/service1.env"), "KEY=written by a container");
+
+			// Then the expanded jar is unchanged
+			assertThat(readFile(expanded.resolve("files/mounted.txt")), is("original"));
+			assertThat(readFile(expanded.resolve("env/service1.env")), is("KEY=original"));
+
+			// And files that are not mounted are still linked
+			assertTrue(Files.isSameFile(expanded.resolve("other/not-mounted.txt"),
+					resources.resolve("resolved/service1/other/not-mounted.txt")));
+		}
+	}
+
+	private static void writeFile(Path file, String content) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void resolve_resources_virtually() throws IOException {
+		// Given the same jars resolved on disk and in memory
+		URL url = Thread.currentThread().getContextClassLoader().getResource("example_merge");
+		Path expandedJars = new File(url.getPath()).toPath().resolve("expanded-jars");
+		Path jars = temp.newFolder().toPath();
+		List<CarnotzetModule> modules = new ArrayList<>();
+		for (String name : Arrays.asList("service3", "service2", "service1")) {
+			Path jar = jars.resolve(name + ".jar");
+			zipDirectory(expandedJars.resolve(name), jar);
+			modules.add(CarnotzetModule.builder().name(name).serviceId(name).topLevelModuleName("service1").jarPath(jar).build());
+		}
+		Path onDisk = temp.newFolder().toPath();
+		ResourcesManager diskManager = new ResourcesManager(onDisk, null);
+		diskManager.extractResources(modules);
+		diskManager.resolveResources(modules);
+		Path virtual = temp.newFolder().toPath();
+		ResourcesManager virtualManager = new ResourcesManager(virtual, null);
+		virtualManager.setVirtualResources(true);
+
+		// When
+		virtualManager.extractResources(modules);
+		virtualManager.resolveResources(modules);
+
+		// Then only mounted directories are written, with the same content
+		Assert.assertFalse(Files.exists(virtual.resolve("expanded-jars")));
+		Assert.assertFalse(Files.exists(virtual.resolve("resolved/service3/carnotzet.properties")));
+		Assert.assertEquals(listFiles(onDisk.resolve("resolved/service3/files")), listFiles(virtual.resolve("resolved/service3/files")));
+		Assert.assertEquals(listFiles(onDisk.resolve("resolved/service3/files")).size(),
+				virtualManager.listResolvedFiles(modules.get(0), "files").size());
+
+		// And other files are read from memory
+		try (InputStream in = virtualManager.openResolvedResource(modules.get(0), "carnotzet.properties")) {
+			Properties service3carnotzet = new Properties();
+			service3carnotzet.load(in);
+			assertThat(service3carnotzet.getProperty("network.aliases"), is("my-service3"));
+		}
+		Assert.assertNull(virtualManager.openOwnResource(modules.get(2), "carnotzet.properties"));
+	}
+
+	private void zipDirectory(Path directory, Path jar) throws IOException {
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar));
+				Stream<Path> walk = Files.walk(directory)) {
+			for (Path file : (Iterable<Path>) walk.filter(Files::isRegularFile)::iterator) {
+				out.putNextEntry(new ZipEntry(directory.relativize(file).toString().replace('\\', '/')));
+				out.write(Files.readAllBytes(file));
+				out.closeEntry();
+			}
+		}
+	}
+
+	private List<String> listFiles(Path root) throws IOException {
+		try (Stream<Path> walk = Files.walk(root)) {
+			return walk.filter(Files::isRegularFile)
+					.map(p -> root.relativize(p) + "=" + readFile(p))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+	private String readFile(Path file) {
+		try {
+			return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void writeJar(Path jar, String... namesAndContents) throws IOException {
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+			for (int i = 0; i < namesAndContents.length; i += 2) {
+				out.putNextEntry(new ZipEntry(namesAndContents[i]));
+				out.write(namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+				out.closeEntry();
+			}
+		}
+	}
+
 }
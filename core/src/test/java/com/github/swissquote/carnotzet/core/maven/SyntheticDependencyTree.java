@@ -0,0 +1,63 @@
+package com.github.swissquote.carnotzet.core.maven;
+
+import java.util.Random;
+
+/**
+ * Generates "mvn dependency:tree -Dverbose" like outputs of arbitrary size, for tests and benchmarks.
+ */
+final class SyntheticDependencyTree {
+
+	private static final int MAX_DEPTH = 12;
+
+	private SyntheticDependencyTree() {
+	}
+
+	static String generate(int lines, long seed) {
+		Random random = new Random(seed);
+		StringBuilder out = new StringBuilder(lines * 80);
+		out.append("com.example:root:jar:1.0.0-SNAPSHOT\n");
+		int previousDepth = 0;
+		for (int i = 1; i < lines; i++) {
+			int depth = 1 + random.nextInt(Math.min(previousDepth + 1, MAX_DEPTH));
+			for (int level = 1; level < depth; level++) {
+				out.append("|  ");
+			}
+			out.append(random.nextInt(4) == 0 ? "\\- " : "+- ");
+			out.append(artifact(i));
+			out.append('\n');
+			previousDepth = depth;
+		}
+		return out.toString();
+	}
+
+	/**
+	 * A single chain of dependencies, each one being the only child of the previous one.
+	 */
+	static String chain(int depth) {
+		StringBuilder out = new StringBuilder();
+		out.append("com.example:root:jar:1.0.0\n");
+		for (int i = 1; i < depth; i++) {
+			for (int level = 1; level < i; level++) {
+				out.append("   ");
+			}
+			out.append("\\- com.example:a").append(i).append(":jar:1.0:compile\n");
+		}
+		return out.toString();
+	}
+
+	private static String artifact(int i) {
+		String groupId = "com.example.group" + (i % 50);
+		String artifactId = "artifact-" + i;
+		switch (i % 5) {
+			case 0:
+				return "(" + groupId + ":" + artifactId + ":jar:1." + (i % 7) + ":compile - omitted for duplicate)";
+			case 1:
+				return "(" + groupId + ":" + artifactId + ":jar:1." + (i % 7) + ":runtime - omitted for conflict with 2.0)";
+			case 2:
+				return groupId + ":" + artifactId + ":test-jar:tests:1." + (i % 7) + ":test";
+			default:
+				return groupId + ":" + artifactId + ":jar:1." + (i % 7) + "-SNAPSHOT:compile";
+		}
+	}
+
+}
@@ -2,8 +2,14 @@ package com.github.swissquote.carnotzet.core.maven;
 
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 import org.junit.Assert;
@@ -165,4 +171,208 @@ public class TopologicalSorterTest {
 
 	}
 
+	@Test
+	public void cycle_message() {
+		Node a = createNode("a", "1");
+		Node b = createNode("b", "1");
+		Node c = createNode("c", "1");
+		Node ob = createOmittedNode("b", "2");
+
+		a.addChildNode(b);
+		b.addChildNode(c);
+		c.addChildNode(ob);
+
+		try {
+			new TopologicalSorter().sort(a, true);
+		}
+		catch (CarnotzetDefinitionException e) {
+			Assert.assertEquals("Cycle detected in dependencies graph (not a DAG). This can cause configuration overrides to be ignored."
+					+ " To ensure correctness, remove the following cycle : [com.test:b:1] -> [com.test:c:1] -> [com.test:b:1]", e.getMessage());
+			return;
+		}
+
+		fail("Expected a CarnotzetDefinitionException to be thrown, but it was not.");
+	}
+
+	@Test
+	public void input_tree_is_not_modified() {
+		Node a = createNode("a", "1");
+		Node b = createNode("b", "1");
+		Node c = createNode("c", "1");
+		Node oc = createOmittedNode("c", "1");
+
+		a.addChildNode(b);
+		a.addChildNode(c);
+		b.addChildNode(oc);
+
+		new TopologicalSorter().sort(a, true);
+
+		Assert.assertSame(oc, b.getChildNodes().get(0));
+	}
+
+	@Test
+	public void deep_graph() {
+		int depth = 100_000;
+		Node root = createNode("a0", "1");
+		Node current = root;
+		for (int i = 1; i < depth; i++) {
+			Node child = createNode("a" + i, "1");
+			current.addChildNode(child);
+			current = child;
+		}
+
+		List<Node> resultNodes = new TopologicalSorter().sort(root, true);
+
+		Assert.assertEquals(depth, resultNodes.size());
+		Assert.assertSame(current, resultNodes.get(0));
+		Assert.assertSame(root, resultNodes.get(depth - 1));
+	}
+
+	@Test
+	public void projection_keeps_transitive_edges_through_non_modules() {
+		Node a = createNode("a", "1");
+		Node lib1 = createNode("lib1", "1");
+		Node lib2 = createNode("lib2", "1");
+		Node b = createNode("b", "1");
+		Node c = createNode("c", "1");
+		Node olib2 = createOmittedNode("lib2", "2");
+		Node d = createNode("d", "1");
+
+		a.addChildNode(lib1);
+		lib1.addChildNode(lib2);
+		lib2.addChildNode(b);
+		b.addChildNode(d);
+		a.addChildNode(c);
+		c.addChildNode(olib2);
+		// unexpressed : olib2 depends on b, which depends on d
+
+		List<Node> resultNodes = new TopologicalSorter().sort(a, true, n -> !n.getArtifactId().startsWith("lib"));
+		List<String> r = resultNodes.stream().map(Node::getArtifactId).collect(Collectors.toList());
+		Assert.assertEquals(4, r.size());
+		Assert.assertTrue(r.indexOf("a") > r.indexOf("b"));
+		Assert.assertTrue(r.indexOf("a") > r.indexOf("c"));
+		Assert.assertTrue(r.indexOf("b") > r.indexOf("d"));
+		Assert.assertTrue(r.indexOf("c") > r.indexOf("b"));
+	}
+
+	@Test
+	public void projection_reports_direct_module_dependencies() {
+		Node a = createNode("a", "1");
+		Node lib = createNode("lib", "1");
+		Node b = createNode("b", "1");
+		Node c = createNode("c", "1");
+		Node ob = createOmittedNode("b", "2");
+
+		a.addChildNode(lib);
+		lib.addChildNode(b);
+		a.addChildNode(c);
+		c.addChildNode(ob);
+
+		Map<String, List<String>> dependencies = new HashMap<>();
+		new TopologicalSorter().sort(a, true, n -> !"lib".equals(n.getArtifactId()), (n, deps) ->
+				dependencies.put(n.getArtifactId(), deps.stream().map(Node::getArtifactId).collect(Collectors.toList())));
+
+		Assert.assertEquals(Arrays.asList("b", "c"), dependencies.get("a"));
+		Assert.assertEquals(Collections.singletonList("b"), dependencies.get("c"));
+		Assert.assertEquals(Collections.emptyList(), dependencies.get("b"));
+	}
+
+	@Test
+	public void projection_detects_cycles_through_non_modules() {
+		Node a = createNode("a", "1");
+		Node b = createNode("b", "1");
+		Node lib = createNode("lib", "1");
+		Node ob = createOmittedNode("b", "1");
+
+		a.addChildNode(b);
+		b.addChildNode(lib);
+		lib.addChildNode(ob);
+
+		try {
+			new TopologicalSorter().sort(a, true, n -> !"lib".equals(n.getArtifactId()));
+		}
+		catch (CarnotzetDefinitionException e) {
+			Assert.assertTrue(e.getMessage().contains("[com.test:b:1] -> [com.test:b:1]"));
+			return;
+		}
+
+		fail("Expected a CarnotzetDefinitionException to be thrown, but it was not.");
+	}
+
+	private Node createNonModuleCycle(Node a) {
+		Node lib1 = createNode("lib1", "1");
+		Node lib2 = createNode("lib2", "1");
+		Node b = createNode("b", "1");
+		Node c = createNode("c", "1");
+
+		a.addChildNode(lib1);
+		lib1.addChildNode(lib2);
+		lib2.addChildNode(createOmittedNode("lib1", "1"));
+		lib1.addChildNode(b);
+		a.addChildNode(c);
+		c.addChildNode(createOmittedNode("lib2", "1"));
+		// unexpressed : olib2 depends on lib1, which depends on b
+		return a;
+	}
+
+	@Test
+	public void projection_keeps_edges_through_cycles_of_non_modules() {
+		Node a = createNonModuleCycle(createNode("a", "1"));
+
+		Map<String, List<String>> dependencies = new HashMap<>();
+		List<String> r = new TopologicalSorter().sort(a, false, n -> !n.getArtifactId().startsWith("lib"), (n, deps) ->
+				dependencies.put(n.getArtifactId(), deps.stream().map(Node::getArtifactId).collect(Collectors.toList())))
+				.stream().map(Node::getArtifactId).collect(Collectors.toList());
+
+		Assert.assertEquals(Arrays.asList("b", "c", "a"), r);
+		Assert.assertEquals(Collections.singletonList("b"), dependencies.get("c"));
+		Assert.assertEquals(Arrays.asList("b", "c"), dependencies.get("a"));
+	}
+
+	@Test
+	public void projection_detects_cycles_of_non_modules() {
+		Node a = createNonModuleCycle(createNode("a", "1"));
+
+		try {
+			new TopologicalSorter().sort(a, true, n -> !n.getArtifactId().startsWith("lib"));
+		}
+		catch (CarnotzetDefinitionException e) {
+			Assert.assertTrue(e.getMessage().contains("[com.test:lib1:1] -> [com.test:lib2:1] -> [com.test:lib1:1]"));
+			return;
+		}
+
+		fail("Expected a CarnotzetDefinitionException to be thrown, but it was not.");
+	}
+
+	@Test
+	public void projection_same_order_as_full_sort() {
+		Node root = createNode("root", "1");
+		List<Node> nodes = new ArrayList<>();
+		nodes.add(root);
+		Random random = new Random(7);
+		for (int i = 0; i < 3_000; i++) {
+			int parentIndex = random.nextInt(nodes.size());
+			Node parent = nodes.get(parentIndex);
+			String artifactId = (i % 100 == 0 ? "module" : "lib") + i;
+			Node child = createNode(artifactId, "1");
+			parent.addChildNode(child);
+			nodes.add(child);
+			if (i % 10 == 0) {
+				// only add edges to nodes created after the parent, to avoid cycles
+				Node target = nodes.get(parentIndex + 1 + random.nextInt(nodes.size() - parentIndex - 1));
+				parent.addChildNode(createOmittedNode(target.getArtifactId(), "2"));
+			}
+		}
+
+		List<String> expected = new TopologicalSorter().sort(root, true).stream()
+				.map(Node::getArtifactId)
+				.filter(id -> !id.startsWith("lib"))
+				.collect(Collectors.toList());
+		List<String> actual = new TopologicalSorter().sort(root, true, n -> !n.getArtifactId().startsWith("lib")).stream()
+				.map(Node::getArtifactId)
+				.collect(Collectors.toList());
+
+		Assert.assertEquals(expected, actual);
+	}
+
 }
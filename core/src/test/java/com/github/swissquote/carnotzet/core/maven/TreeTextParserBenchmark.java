@@ -0,0 +1,57 @@
+package com.github.swissquote.carnotzet.core.maven;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the streaming TreeTextParser with the previous list based implementation on synthetic dependency trees.<br>
+ * Not run as part of the build, run the main method from the IDE (or with the test classpath) to get the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreeTextParserBenchmark {
+
+	@Param({"10000", "100000"})
+	private int lines;
+
+	private String tree;
+
+	@Setup
+	public void setUp() {
+		tree = SyntheticDependencyTree.generate(lines, 42);
+	}
+
+	@Benchmark
+	public Node streaming() throws ParseException {
+		return new TreeTextParser().parse(new StringReader(tree));
+	}
+
+	@Benchmark
+	public Node legacy() throws ParseException {
+		return new LegacyTreeTextParser().parse(new StringReader(tree));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(TreeTextParserBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
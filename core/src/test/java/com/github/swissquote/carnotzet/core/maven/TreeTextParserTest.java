@@ -0,0 +1,84 @@
+package com.github.swissquote.carnotzet.core.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class TreeTextParserTest {
+
+	@Test
+	public void same_tree_as_legacy_parser() throws ParseException {
+		String text = SyntheticDependencyTree.generate(10_000, 42);
+
+		Node expected = new LegacyTreeTextParser().parse(new StringReader(text));
+		Node actual = new TreeTextParser().parse(new StringReader(text));
+
+		assertEquals(render(expected), render(actual));
+	}
+
+	@Test
+	public void active_project_artifact() throws ParseException {
+		String text = "com.acme:root:jar:1.0\n"
+				+ "+- active project artifact:\n"
+				+ "    artifact = active project artifact:\n"
+				+ "    artifact = com.acme.org:foobar:jar:1.0.41-SNAPSHOT:compile;\n"
+				+ "    project: MavenProject: com.acme.org:foobar:1.0.41-SNAPSHOT @ /tmp/foobar/pom.xml;\n"
+				+ "    project: MavenProject: com.acme.org:foobar:1.0.41-SNAPSHOT @ /tmp/foobar/pom.xml\n"
+				+ "|  \\- com.acme:child:jar:2.0:compile\n"
+				+ "\\- (com.acme:other:jar:3.0:runtime - omitted for duplicate)\n";
+
+		Node root = new TreeTextParser().parse(new StringReader(text));
+
+		assertEquals(2, root.getChildNodes().size());
+		Node foobar = root.getChildNodes().get(0);
+		assertEquals("foobar", foobar.getArtifactId());
+		assertEquals("1.0.41-SNAPSHOT", foobar.getVersion());
+		assertEquals("child", foobar.getChildNodes().get(0).getArtifactId());
+		Node other = root.getChildNodes().get(1);
+		assertTrue(other.isOmitted());
+		assertEquals("omitted for duplicate", other.getDescription());
+		assertEquals(render(new LegacyTreeTextParser().parse(new StringReader(text))), render(root));
+	}
+
+	@Test
+	public void deep_tree() throws ParseException {
+		int depth = 3_000;
+
+		Node node = new TreeTextParser().parse(new StringReader(SyntheticDependencyTree.chain(depth)));
+
+		int actualDepth = 1;
+		while (!node.getChildNodes().isEmpty()) {
+			node = node.getChildNodes().get(0);
+			actualDepth++;
+		}
+		assertEquals(depth, actualDepth);
+	}
+
+	@Test
+	public void empty_input() throws ParseException {
+		assertNull(new TreeTextParser().parse(new StringReader("")));
+	}
+
+	static String render(Node root) {
+		StringBuilder out = new StringBuilder();
+		render(root, 0, out);
+		return out.toString();
+	}
+
+	private static void render(Node node, int depth, StringBuilder out) {
+		for (int i = 0; i < depth; i++) {
+			out.append(' ');
+		}
+		out.append(node.getGroupId()).append(':').append(node.getArtifactId()).append(':').append(node.getPackaging())
+				.append(':').append(node.getClassifier()).append(':').append(node.getVersion()).append(':').append(node.getScope())
+				.append(':').append(node.getDescription()).append(':').append(node.isOmitted()).append('\n');
+		for (Node child : node.getChildNodes()) {
+			render(child, depth + 1, out);
+		}
+	}
+
+}
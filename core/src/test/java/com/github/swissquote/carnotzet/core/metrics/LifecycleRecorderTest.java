@@ -0,0 +1,113 @@
+package com.github.swissquote.carnotzet.core.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class LifecycleRecorderTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void spans_emit_start_and_end_events() {
+		List<LifecycleEvent> events = new ArrayList<>();
+		LifecycleRecorder recorder = new LifecycleRecorder(Collections.singletonList(events::add));
+
+		try (LifecycleRecorder.Span ignored = recorder.start("up", Collections.singletonMap("service", "redis"))) {
+			assertEquals(1, events.size());
+		}
+
+		assertEquals(2, events.size());
+		assertEquals(LifecycleEvent.Type.START, events.get(0).getType());
+		assertEquals(-1, events.get(0).getDurationMillis());
+		assertEquals(LifecycleEvent.Type.END, events.get(1).getType());
+		assertEquals("up", events.get(1).getPhase());
+		assertEquals("redis", events.get(1).getTags().get("service"));
+		assertTrue(events.get(1).getDurationMillis() >= 0);
+	}
+
+	@Test
+	public void failing_sink_does_not_fail_the_lifecycle() {
+		List<LifecycleEvent> events = new ArrayList<>();
+		LifecycleMetrics failing = event -> {
+			throw new IllegalStateException("failing sink");
+		};
+		LifecycleRecorder recorder = new LifecycleRecorder(Arrays.asList(failing, events::add));
+
+		recorder.completed("resolve", Collections.emptyMap(), 12);
+
+		assertEquals(1, events.size());
+	}
+
+	@Test
+	public void json_file_contains_the_events_of_the_lifecycle() throws IOException {
+		Path resources = temp.newFolder().toPath();
+		LifecycleRecorder recorder = new LifecycleRecorder(Arrays.asList(new JsonFileLifecycleMetrics(), new Slf4jSummaryLifecycleMetrics()));
+		recorder.completed("resolve", Collections.emptyMap(), 12);
+		recorder.start("up", Collections.singletonMap("service", "redis")).close();
+
+		recorder.lifecycleEnded(resources);
+
+		JsonNode json = new ObjectMapper().readTree(resources.resolve(JsonFileLifecycleMetrics.FILE_NAME).toFile());
+		assertEquals(3, json.size());
+		assertEquals("resolve", json.get(0).get("phase").asText());
+		assertEquals(12, json.get(0).get("durationMillis").asLong());
+		assertEquals("redis", json.get(2).get("tags").get("service").asText());
+	}
+
+	@Test
+	public void nested_operations_end_the_lifecycle_once() throws IOException {
+		Path resources = temp.newFolder().toPath();
+		List<Path> ends = new ArrayList<>();
+		LifecycleMetrics sink = new LifecycleMetrics() {
+			@Override
+			public void onEvent(LifecycleEvent event) {
+			}
+
+			@Override
+			public void onLifecycleEnd(Path resourcesFolder) {
+				ends.add(resourcesFolder);
+			}
+		};
+		LifecycleRecorder recorder = new LifecycleRecorder(Collections.singletonList(sink));
+
+		try (LifecycleRecorder.Operation start = recorder.operation(resources)) {
+			recorder.operation(resources).close();
+			assertTrue(ends.isEmpty());
+			start.close();
+		}
+
+		assertEquals(Collections.singletonList(resources), ends);
+	}
+
+	@Test
+	public void events_of_an_operation_are_not_reported_again_by_the_next_one() throws IOException {
+		Path resources = temp.newFolder().toPath();
+		LifecycleRecorder recorder = new LifecycleRecorder(Collections.singletonList(new JsonFileLifecycleMetrics()));
+		try (LifecycleRecorder.Operation ignored = recorder.operation(resources)) {
+			recorder.completed("resolve", Collections.emptyMap(), 12);
+		}
+		Path json = resources.resolve(JsonFileLifecycleMetrics.FILE_NAME);
+		assertTrue(json.toFile().delete());
+
+		recorder.operation(resources).close();
+
+		assertFalse(json.toFile().exists());
+	}
+
+}
@@ -0,0 +1,97 @@
+package com.github.swissquote.carnotzet.core.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileSystemCacheTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void values_are_shared_between_instances() throws Exception {
+		Path directory = temp.getRoot().toPath().resolve("cache");
+		AtomicInteger computed = new AtomicInteger();
+
+		FileSystemCache<String> first = new FileSystemCache<>(directory, String.class);
+		assertEquals("a:b@sha256:1", first.computeIfAbsent("a:b@sha256:1", k -> json(computed, k)));
+		assertEquals("a:b@sha256:1", first.computeIfAbsent("a:b@sha256:1", k -> json(computed, k)));
+
+		FileSystemCache<String> second = new FileSystemCache<>(directory, String.class);
+		assertEquals("a:b@sha256:1", second.computeIfAbsent("a:b@sha256:1", k -> json(computed, k)));
+		assertEquals(1, computed.get());
+	}
+
+	@Test
+	public void least_recently_used_entries_are_evicted_above_the_maximum_size() throws Exception {
+		Path directory = temp.getRoot().toPath().resolve("cache");
+		FileSystemCache<String> cache = new FileSystemCache<>(directory, String.class, 10, Duration.ofDays(1));
+		AtomicInteger computed = new AtomicInteger();
+
+		cache.computeIfAbsent("k1", k -> json(computed, k));
+		setLastUsed(directory, "k1", Duration.ofHours(2));
+		cache.computeIfAbsent("k2", k -> json(computed, k));
+		setLastUsed(directory, "k2", Duration.ofHours(1));
+		cache.computeIfAbsent("k3", k -> json(computed, k));
+
+		try (Stream<Path> files = Files.list(directory)) {
+			assertEquals(2L, files.filter(p -> p.toString().endsWith(".json")).count());
+		}
+		FileSystemCache<String> reloaded = new FileSystemCache<>(directory, String.class, 10, Duration.ofDays(1));
+		reloaded.computeIfAbsent("k1", k -> json(computed, k));
+		assertEquals(4, computed.get());
+	}
+
+	@Test
+	public void concurrent_writers_do_not_corrupt_entries() throws Exception {
+		Path directory = temp.getRoot().toPath().resolve("cache");
+		AtomicInteger computed = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < 64; i++) {
+				String key = "key" + (i % 8);
+				results.add(executor.submit(() -> new FileSystemCache<>(directory, String.class).computeIfAbsent(key, k -> json(computed, k))));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				assertEquals("key" + (i % 8), results.get(i).get());
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		FileSystemCache<String> cache = new FileSystemCache<>(directory, String.class);
+		for (int i = 0; i < 8; i++) {
+			assertEquals("key" + i, cache.computeIfAbsent("key" + i, k -> "\"recomputed\""));
+		}
+	}
+
+	/**
+	 * The modification time of an entry is its last use, it is set explicitly to avoid depending on the file system time resolution
+	 */
+	private static void setLastUsed(Path directory, String key, Duration ago) throws IOException {
+		Path entry = directory.resolve(Sha256.getSHA(key) + ".json");
+		Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis() - ago.toMillis()));
+	}
+
+	private static String json(AtomicInteger computed, String key) {
+		computed.incrementAndGet();
+		return "\"" + key + "\"";
+	}
+}
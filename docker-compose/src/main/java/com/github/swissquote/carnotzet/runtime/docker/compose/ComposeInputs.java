@@ -0,0 +1,98 @@
+package com.github.swissquote.carnotzet.runtime.docker.compose;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.github.swissquote.carnotzet.core.CarnotzetModule;
+import com.github.swissquote.carnotzet.core.util.Sha256;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hash of everything docker-compose.yml is generated from, stored next to the file to skip generating it again when nothing changed.
+ */
+@Slf4j
+final class ComposeInputs {
+
+	private static final String HASH_FILE_NAME = ".docker-compose.yml.sha256";
+
+	private ComposeInputs() {
+	}
+
+	/**
+	 * @param settings runtime settings that influence the generated file, in a stable order. Maps and sets are sorted.
+	 */
+	static String hash(List<CarnotzetModule> modules, List<Object> settings) {
+		StringBuilder canonical = new StringBuilder();
+		for (Object setting : settings) {
+			canonical.append(canonical(setting)).append('\n');
+		}
+		for (CarnotzetModule module : modules) {
+			// maps and sets are sorted, so that equal modules always have the same representation
+			canonical.append(module.toBuilder()
+					.properties(sorted(module.getProperties()))
+					.labels(sorted(module.getLabels()))
+					.env(sorted(module.getEnv()))
+					.dockerVolumes(sorted(module.getDockerVolumes()))
+					.dockerEnvFiles(sorted(module.getDockerEnvFiles()))
+					.dependencies(sorted(module.getDependencies()))
+					.build()).append('\n');
+		}
+		return Sha256.getSHA(canonical.toString());
+	}
+
+	static boolean isUpToDate(Path composeFile, String hash) {
+		Path hashFile = composeFile.resolveSibling(HASH_FILE_NAME);
+		if (!Files.exists(composeFile) || !Files.exists(hashFile)) {
+			return false;
+		}
+		try {
+			return hash.equals(new String(Files.readAllBytes(hashFile), StandardCharsets.UTF_8).trim());
+		}
+		catch (IOException e) {
+			log.debug("Cannot read [{}], docker-compose.yml will be generated again", hashFile, e);
+			return false;
+		}
+	}
+
+	static void record(Path composeFile, String hash) {
+		try {
+			Files.write(composeFile.resolveSibling(HASH_FILE_NAME), hash.getBytes(StandardCharsets.UTF_8));
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Failed to write the hash of docker-compose.yml", e);
+		}
+	}
+
+	private static Object canonical(Object value) {
+		if (value instanceof Map) {
+			Map<String, Object> sorted = new TreeMap<>();
+			((Map<?, ?>) value).forEach((k, v) -> sorted.put(String.valueOf(k), canonical(v)));
+			return sorted;
+		}
+		if (value instanceof Set) {
+			Set<String> sorted = new TreeSet<>();
+			for (Object element : (Set<?>) value) {
+				sorted.add(String.valueOf(canonical(element)));
+			}
+			return sorted;
+		}
+		return value;
+	}
+
+	private static <V> Map<String, V> sorted(Map<String, V> map) {
+		return map == null ? null : new TreeMap<>(map);
+	}
+
+	private static Set<String> sorted(Set<String> set) {
+		return set == null ? null : new TreeSet<>(set);
+	}
+}
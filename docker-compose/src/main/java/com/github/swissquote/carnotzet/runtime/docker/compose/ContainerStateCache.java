@@ -0,0 +1,198 @@
+package com.github.swissquote.carnotzet.runtime.docker.compose;
+
+import static java.util.stream.Collectors.groupingBy;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.StartedProcess;
+import org.zeroturnaround.exec.listener.ProcessListener;
+import org.zeroturnaround.exec.stream.LogOutputStream;
+
+import com.github.swissquote.carnotzet.core.runtime.api.Container;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Containers of a docker compose project, loaded once and kept until "docker events" reports a change on one of them.<br>
+ * Entries older than the maximum staleness are reloaded anyway, in case events are missed.
+ */
+@Slf4j
+/* package */ class ContainerStateCache {
+
+	// "docker events" exiting faster than this cannot reach the daemon (permissions, daemon down...), it is not restarted
+	private static final long MIN_WATCH_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+	private static final class Snapshot {
+		private final List<Container> containers;
+		private final Map<String, List<Container>> byService;
+		private final Map<String, Map<Integer, Container>> byServiceAndReplica = new HashMap<>();
+		private final long generation;
+		private final long loadedAt;
+
+		private Snapshot(List<Container> containers, long generation, long loadedAt) {
+			this.containers = containers;
+			this.byService = containers.stream().collect(groupingBy(Container::getServiceName));
+			for (Container c : containers) {
+				byServiceAndReplica.computeIfAbsent(c.getServiceName(), k -> new HashMap<>()).putIfAbsent(c.getReplicaNumber(), c);
+			}
+			this.generation = generation;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+	private final Supplier<List<Container>> loader;
+
+	private final List<String> eventsCommand;
+
+	private final long maxStalenessNanos;
+
+	// incremented on each event, a snapshot loaded in an older generation is stale
+	private final AtomicLong generation = new AtomicLong();
+
+	private volatile Snapshot snapshot;
+
+	// guarded by this
+	private StartedProcess eventsWatcher;
+
+	// read without locking on each lookup
+	private volatile boolean watching;
+	private volatile boolean eventsUnavailable;
+	private volatile boolean closed;
+
+	/**
+	 * @param loader        loads the containers of the project, in order
+	 * @param eventsCommand "docker events" command printing a line for each change on the containers of the project
+	 */
+	/* package */ ContainerStateCache(Supplier<List<Container>> loader, List<String> eventsCommand, Duration maxStaleness) {
+		this.loader = loader;
+		this.eventsCommand = eventsCommand;
+		this.maxStalenessNanos = maxStaleness.toNanos();
+	}
+
+	// lists are copied, callers are free to modify them
+
+	/* package */ List<Container> getContainers() {
+		return new ArrayList<>(current().containers);
+	}
+
+	/* package */ List<Container> getContainers(String serviceName) {
+		return new ArrayList<>(current().byService.getOrDefault(serviceName, Collections.emptyList()));
+	}
+
+	/* package */ Container getContainer(String serviceName) {
+		List<Container> containers = current().byService.get(serviceName);
+		return containers == null ? null : containers.get(0);
+	}
+
+	/* package */ Container getContainer(String serviceName, int number) {
+		return current().byServiceAndReplica.getOrDefault(serviceName, Collections.emptyMap()).get(number);
+	}
+
+	/**
+	 * The next lookup reloads the containers
+	 */
+	/* package */ void invalidate() {
+		generation.incrementAndGet();
+	}
+
+	private Snapshot current() {
+		ensureWatchingEvents();
+		Snapshot s = snapshot;
+		if (isFresh(s)) {
+			return s;
+		}
+		synchronized (this) {
+			s = snapshot;
+			if (isFresh(s)) {
+				return s;
+			}
+			long loadedGeneration = generation.get();
+			s = new Snapshot(loader.get(), loadedGeneration, System.nanoTime());
+			snapshot = s;
+			return s;
+		}
+	}
+
+	private boolean isFresh(Snapshot s) {
+		return s != null && s.generation == generation.get() && System.nanoTime() - s.loadedAt <= maxStalenessNanos;
+	}
+
+	/**
+	 * Stops watching docker events, lookups then only rely on the maximum staleness
+	 */
+	/* package */ synchronized void close() {
+		closed = true;
+		if (eventsWatcher != null) {
+			eventsWatcher.getProcess().destroy();
+			eventsWatcher.getFuture().cancel(true);
+			eventsWatcher = null;
+		}
+	}
+
+	/* package */ boolean isWatchingEvents() {
+		return watching;
+	}
+
+	/* package */ boolean isClosed() {
+		return closed;
+	}
+
+	private void ensureWatchingEvents() {
+		if (watching || eventsUnavailable || closed) {
+			return;
+		}
+		startWatchingEvents();
+	}
+
+	private synchronized void startWatchingEvents() {
+		if (watching || eventsUnavailable || closed) {
+			return;
+		}
+		// events may have been missed while nobody was watching
+		invalidate();
+		long startedAt = System.nanoTime();
+		watching = true;
+		try {
+			eventsWatcher = new ProcessExecutor()
+					.command(eventsCommand)
+					.redirectOutput(new LogOutputStream() {
+						@Override
+						protected void processLine(String line) {
+							log.debug("docker event : {}", line);
+							invalidate();
+						}
+					})
+					.addListener(new ProcessListener() {
+						@Override
+						public void afterStop(Process process) {
+							watcherStopped(startedAt);
+						}
+					})
+					.destroyOnExit()
+					.start();
+		}
+		catch (IOException e) {
+			log.debug("Cannot watch docker events, containers will be reloaded after the maximum staleness", e);
+			eventsUnavailable = true;
+			watching = false;
+		}
+	}
+
+	private void watcherStopped(long startedAt) {
+		if (!closed && System.nanoTime() - startedAt < MIN_WATCH_NANOS) {
+			log.debug("docker events exited right after it was started, containers will be reloaded after the maximum staleness");
+			eventsUnavailable = true;
+		}
+		watching = false;
+	}
+}
@@ -10,6 +10,7 @@ import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -25,8 +26,6 @@ import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.BiFunction;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -37,7 +36,12 @@ import com.github.swissquote.carnotzet.core.Carnotzet;
 import com.github.swissquote.carnotzet.core.CarnotzetConfig;
 import com.github.swissquote.carnotzet.core.CarnotzetModule;
 import com.github.swissquote.carnotzet.core.docker.DockerUtils;
+import com.github.swissquote.carnotzet.core.docker.engine.DockerEngineClient;
+import com.github.swissquote.carnotzet.core.docker.engine.EngineContainer;
 import com.github.swissquote.carnotzet.core.docker.registry.DockerRegistry;
+import com.github.swissquote.carnotzet.core.docker.registry.ImagePullReport;
+import com.github.swissquote.carnotzet.core.docker.registry.ImagePuller;
+import com.github.swissquote.carnotzet.core.metrics.LifecycleRecorder;
 import com.github.swissquote.carnotzet.core.runtime.CommandRunner;
 import com.github.swissquote.carnotzet.core.runtime.DefaultCommandRunner;
 import com.github.swissquote.carnotzet.core.runtime.api.Container;
@@ -50,6 +54,7 @@ import com.github.swissquote.carnotzet.core.runtime.spi.ContainerOrchestrationRu
 import com.github.swissquote.carnotzet.core.util.Sha256;
 
 import lombok.NonNull;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -68,6 +73,27 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 
 	private final List<String> dockerComposeCommand;
 
+	@Setter
+	@NonNull
+	private StartMode startMode = StartMode.SEQUENTIAL;
+
+	private volatile ContainerStateCache containerStateCache;
+
+	private volatile Duration containerStateMaxStaleness;
+
+	/**
+	 * Skip the generation of docker-compose.yml when the modules, settings, network and exposed ports of the images it is generated
+	 * from did not change
+	 */
+	@Setter
+	private boolean composeGenerationCache = true;
+
+	/**
+	 * Maximum number of images pulled concurrently by pull(PullPolicy)
+	 */
+	@Setter
+	private int pullParallelism = ImagePuller.DEFAULT_PARALLELISM;
+
 	private static final boolean IS_OS_WINDOWS = isWindows();
 
 	private static final boolean IS_OS_MAC = isMac();
@@ -147,10 +173,41 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 	}
 
 	private void computeDockerComposeFile() {
+		Path composeFile = carnotzet.getResourcesFolder().resolve("docker-compose.yml");
+		List<CarnotzetModule> modules = carnotzet.getModules();
+
+		// everything the file is generated from is resolved before hashing, images may have been rebuilt or pulled outside carnotzet
+		Map<String, Set<String>> imagePorts = Collections.emptyMap();
+		if (shouldExposePorts) {
+			// all images are pulled and inspected upfront, instead of once per module
+			invokeAllExtensions((e, m) -> e.beforePull(m, this, this.carnotzet));
+			imagePorts = ImageExposedPorts.lookup(modules, commandRunner, carnotzet.getDockerEngineClient(),
+					m -> DockerRegistry.pullImage(m, PullPolicy.IF_LOCAL_IMAGE_ABSENT, carnotzet.getDockerEngineClient()));
+			invokeAllExtensions((e, m) -> e.afterPull(m, this, this.carnotzet));
+		}
+		// looking up the external network forks docker, do it once
+		String networkName = genNetworkName();
+		String hostname = null;
+		try {
+			hostname = InetAddress.getLocalHost().getHostName();
+		}
+		catch (UnknownHostException e) {
+			log.error("Cannot determine hostname", e);
+		}
+
+		String inputsHash = ComposeInputs.hash(modules, Arrays.asList(instanceId, shouldExposePorts, startMode, networkName, hostname,
+				carnotzet.getUseExternalNetwork(), carnotzet.getSupportLegacyDnsNames(), carnotzet.getResourcesFolder(), imagePorts));
+		if (composeGenerationCache && ComposeInputs.isUpToDate(composeFile, inputsHash)) {
+			log.debug("docker-compose.yml is up to date");
+			return;
+		}
 		log.debug(String.format("Building docker-compose.yml for [%s]", carnotzet.getConfig().getTopLevelModuleId()));
 
 		Map<String, Service> services = new HashMap<>();
-		List<CarnotzetModule> modules = carnotzet.getModules();
+		// depends_on makes "docker compose up" start the dependencies, it is only emitted when everything is started at once
+		Map<String, Set<String>> dependsOn = startMode == StartMode.SINGLE
+				? ServiceDependencies.compute(modules, DockerComposeRuntime::shouldStartByDefault)
+				: Collections.emptyMap();
 		for (CarnotzetModule module : modules) {
 			if (module.getImageName() == null) {
 				log.debug("Module [{}] has no docker image", module.getName());
@@ -167,7 +224,8 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 			serviceBuilder.environment(module.getEnv());
 			serviceBuilder.env_file(module.getDockerEnvFiles());
 			if (shouldExposePorts) {
-				serviceBuilder.ports(getExposedPorts(module.getImageName(), module.getProperties()));
+				serviceBuilder.ports(getExposedPorts(imagePorts.getOrDefault(module.getImageName(), Collections.emptySet()),
+						module.getProperties()));
 			}
 
 			Map<String, ContainerNetwork> networks = new HashMap<>();
@@ -184,7 +242,7 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 			}
 
 			ContainerNetwork network = ContainerNetwork.builder().aliases(networkAliases).build();
-			networks.put(genNetworkName(), network);
+			networks.put(networkName, network);
 			serviceBuilder.networks(networks);
 
 			Map<String, String> labels = new HashMap<>();
@@ -192,13 +250,9 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 				labels.putAll(module.getLabels());
 			}
 
-			try {
-				String hostname = InetAddress.getLocalHost().getHostName();
+			if (hostname != null) {
 				labels.put("carnotzet.instance.source", hostname);
 			}
-			catch (UnknownHostException e) {
-				log.error("Cannot determine hostname", e);
-			}
 
 			labels.put("com.dnsdock.alias", String.join(",", networkAliases));
 			labels.put("carnotzet.instance.id", instanceId);
@@ -208,6 +262,10 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 
 			serviceBuilder.labels(labels);
 			serviceBuilder.extra_hosts(lookUpExtraHosts(module));
+			Set<String> serviceDependencies = dependsOn.get(serviceId);
+			if (serviceDependencies != null && !serviceDependencies.isEmpty()) {
+				serviceBuilder.depends_on(serviceDependencies);
+			}
 
 			services.put(serviceId, serviceBuilder.build());
 		}
@@ -215,15 +273,13 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 		Network network =
 				carnotzet.getUseExternalNetwork() ? Network.builder().external(true).build() : Network.builder().driver("bridge").build();
 		Map<String, Network> networks = new HashMap<>();
-		networks.put(genNetworkName(), network);
+		networks.put(networkName, network);
 
 		DockerCompose compose = DockerCompose.builder().version("2").services(services).networks(networks).build();
 		DockerComposeGenerator generator = new DockerComposeGenerator(compose);
 		try {
-			Files.write(
-					carnotzet.getResourcesFolder().resolve("docker-compose.yml"),
-					generator.generateDockerComposeFile().getBytes(StandardCharsets.UTF_8)
-			);
+			Files.write(composeFile, generator.generateDockerComposeFile().getBytes(StandardCharsets.UTF_8));
+			ComposeInputs.record(composeFile, inputsHash);
 		}
 		catch (IOException e) {
 			throw new UncheckedIOException("Failed to write docker-compose.yml", e);
@@ -300,20 +356,53 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 	@Override
 	public void start() {
 		Instant start = Instant.now();
-		invokeAllExtensions((e, m) -> e.beforeStart(m, this, this.carnotzet));
-		log.debug("Forcing update of docker-compose.yml before start");
-		computeDockerComposeFile();
+		LifecycleRecorder metrics = carnotzet.getLifecycleRecorder();
+		try (LifecycleRecorder.Operation operation = metrics.operation(carnotzet.getResourcesFolder())) {
+			// resolve the modules first, so that extensions are timed on their own
+			carnotzet.getModules();
+			try (LifecycleRecorder.Span ignored = metrics.start("before-start-extensions")) {
+				invokeAllExtensions((e, m) -> e.beforeStart(m, this, this.carnotzet));
+			}
+			log.debug("Forcing update of docker-compose.yml before start");
+			try (LifecycleRecorder.Span ignored = metrics.start("compose-generation")) {
+				computeDockerComposeFile();
+			}
 
-		carnotzet.getModules().stream().filter(this::shouldStartByDefault).forEach(m -> {
-			runCommand(buildDockerComposeCommand("-p", getDockerComposeProjectName(), "up", "-d",
-					"--scale", m.getServiceId() + "=" + m.getReplicas(), m.getServiceId()));
-		});
-		ensureNetworkCommunicationIsPossible();
-		logManager.ensureCapturingLogs(start, getContainers());
-		invokeAllExtensions((e, m) -> e.afterStart(m, this, this.carnotzet));
+			// in sequential mode, each module is a wave of its own, in single mode there is only one wave
+			List<List<CarnotzetModule>> waves;
+			if (startMode == StartMode.SINGLE) {
+				waves = Collections.singletonList(carnotzet.getModules());
+			} else if (startMode == StartMode.WAVES) {
+				waves = StartWaves.compute(carnotzet.getModules());
+			} else {
+				waves = carnotzet.getModules().stream().map(Collections::singletonList).collect(toList());
+			}
+			for (List<CarnotzetModule> wave : waves) {
+				List<CarnotzetModule> toStart = wave.stream().filter(DockerComposeRuntime::shouldStartByDefault).collect(toList());
+				if (toStart.isEmpty()) {
+					continue;
+				}
+				String services = toStart.stream().map(CarnotzetModule::getServiceId).collect(Collectors.joining(","));
+				List<String> command = new ArrayList<>(Arrays.asList("-p", getDockerComposeProjectName(), "up", "-d"));
+				command.addAll(StartWaves.upArguments(toStart));
+				try (LifecycleRecorder.Span ignored = metrics.start("up", Collections.singletonMap("service", services))) {
+					runCommand(buildDockerComposeCommand(command.toArray(new String[0])));
+				}
+			}
+			try (LifecycleRecorder.Span ignored = metrics.start("network-attach")) {
+				ensureNetworkCommunicationIsPossible();
+			}
+			try (LifecycleRecorder.Span ignored = metrics.start("log-capture")) {
+				logManager.ensureCapturingLogs(start, getContainers());
+			}
+			try (LifecycleRecorder.Span ignored = metrics.start("after-start-extensions")) {
+				invokeAllExtensions((e, m) -> e.afterStart(m, this, this.carnotzet));
+			}
+		}
 	}
 
-	private boolean shouldStartByDefault(CarnotzetModule m) {
+	// package-private for tests
+	static boolean shouldStartByDefault(CarnotzetModule m) {
 		if (m.getImageName() == null) {
 			return false;
 		}
@@ -333,21 +422,34 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 	@Override
 	public void start(String services) {
 		log.debug("Forcing update of docker-compose.yml before start");
-		Set<CarnotzetModule> resolvedModules = resolveModules(services);
+		LifecycleRecorder metrics = carnotzet.getLifecycleRecorder();
+		try (LifecycleRecorder.Operation operation = metrics.operation(carnotzet.getResourcesFolder())) {
+			Set<CarnotzetModule> resolvedModules = resolveModules(services);
 
-		for (CarnotzetModule carnotzetModule : resolvedModules) {
-			invokeAllExtensions((e, m) -> e.beforeStart(m, this, this.carnotzet), carnotzetModule);
-		}
+			for (CarnotzetModule carnotzetModule : resolvedModules) {
+				invokeAllExtensions((e, m) -> e.beforeStart(m, this, this.carnotzet), carnotzetModule);
+			}
 
-		computeDockerComposeFile();
+			try (LifecycleRecorder.Span ignored = metrics.start("compose-generation")) {
+				computeDockerComposeFile();
+			}
 
-		for (CarnotzetModule carnotzetModule : resolvedModules) {
-			String service = carnotzetModule.getServiceId();
-			Instant start = Instant.now();
-			runCommand(buildDockerComposeCommand("-p", getDockerComposeProjectName(), "up", "-d", service));
-			ensureNetworkCommunicationIsPossible();
-			logManager.ensureCapturingLogs(start, Collections.singletonList(getContainer(service)));
-			invokeAllExtensions((e, m) -> e.afterStart(m, this, this.carnotzet), carnotzetModule);
+			for (CarnotzetModule carnotzetModule : resolvedModules) {
+				String service = carnotzetModule.getServiceId();
+				Map<String, String> tags = Collections.singletonMap("service", service);
+				Instant start = Instant.now();
+				try (LifecycleRecorder.Span ignored = metrics.start("up", tags)) {
+					// the file may declare depends_on edges, only the requested service is started
+					runCommand(buildDockerComposeCommand("-p", getDockerComposeProjectName(), "up", "-d", "--no-deps", service));
+				}
+				try (LifecycleRecorder.Span ignored = metrics.start("network-attach", tags)) {
+					ensureNetworkCommunicationIsPossible();
+				}
+				try (LifecycleRecorder.Span ignored = metrics.start("log-capture", tags)) {
+					logManager.ensureCapturingLogs(start, Collections.singletonList(getContainer(service)));
+				}
+				invokeAllExtensions((e, m) -> e.afterStart(m, this, this.carnotzet), carnotzetModule);
+			}
 		}
 	}
 
@@ -363,8 +465,15 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 		}
 
 		if (carnotzet.getAttachToCarnotzetNetwork()) {
-			String buildContainerId =
-					runCommandAndCaptureOutput("/bin/bash", "-c", "docker ps | grep $(hostname) | grep -v k8s_POD | cut -d ' ' -f 1");
+			DockerEngineClient engine = carnotzet.getDockerEngineClient();
+			String buildContainerId;
+			if (engine != null) {
+				EngineContainer buildContainer = EngineContainers.findOwnContainer(engine);
+				buildContainerId = buildContainer == null ? null : buildContainer.getId();
+			} else {
+				buildContainerId =
+						runCommandAndCaptureOutput("/bin/bash", "-c", "docker ps | grep $(hostname) | grep -v k8s_POD | cut -d ' ' -f 1");
+			}
 
 			if (buildContainerId == null || buildContainerId.trim().isEmpty()) {
 				// we are probably not running inside a container, networking should be fine
@@ -373,7 +482,11 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 
 			log.debug("Execution from inside a container detected! Attempting to configure container networking to allow communication.");
 			log.debug("attaching container [" + buildContainerId + "] to network [" + getDockerNetworkName() + "]");
-			runCommand("/bin/bash", "-c", "docker network connect " + getDockerNetworkName() + " " + buildContainerId);
+			if (engine != null) {
+				engine.connectToNetwork(getDockerNetworkName(), buildContainerId);
+			} else {
+				runCommand("/bin/bash", "-c", "docker network connect " + getDockerNetworkName() + " " + buildContainerId);
+			}
 		}
 	}
 
@@ -388,6 +501,12 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 		}
 
 		// Try to find network name based on the current docker network setting of container
+		DockerEngineClient engine = carnotzet.getDockerEngineClient();
+		if (engine != null) {
+			EngineContainer buildContainer = EngineContainers.findOwnContainer(engine);
+			List<String> networkNames = buildContainer == null ? Collections.emptyList() : EngineContainers.networkNames(buildContainer);
+			return networkNames.isEmpty() ? carnotzet.getExternalNetworkName() : networkNames.get(0);
+		}
 		String buildContainerId =
 				runCommandAndCaptureOutput("/bin/sh", "-c", "docker ps | grep $(hostname) | grep -v k8s_POD | cut -d ' ' -f 1");
 
@@ -452,6 +571,8 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 		invokeAllExtensions((e, m) -> e.beforeClean(m, this, this.carnotzet));
 		ensureDockerComposeFileIsPresent();
 		runCommand(buildDockerComposeCommand("-p", getDockerComposeProjectName(), "rm", "-f"));
+		// there are no containers left to watch, "docker events" is started again by the next lookup
+		restartContainerStateCache();
 		// The resources folder cannot be deleted while the sandbox is running on windows.
 		// So we do it here instead
 		if (IS_OS_WINDOWS) {
@@ -491,8 +612,13 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 	@Override
 	public void pull(PullPolicy policy) {
 		invokeAllExtensions((e, m) -> e.beforePull(m, this, this.carnotzet));
-		// We need to check service by service if a newer version exists or not
-		carnotzet.getModules().forEach(module -> pull(module.getServiceId(), policy));
+		// We need to check image by image if a newer version exists or not
+		ImagePullReport report = new ImagePuller(pullParallelism, carnotzet.getDockerEngineClient()).pull(carnotzet.getModules(), policy);
+		if (report.hasFailures()) {
+			log.warn(report.summary());
+		} else {
+			log.info(report.summary());
+		}
 		invokeAllExtensions((e, m) -> e.afterPull(m, this, this.carnotzet));
 	}
 
@@ -505,13 +631,61 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 	public void pull(@NonNull String services, PullPolicy policy) {
 		for (CarnotzetModule serviceModule : resolveModules(services)) {
 			invokeAllExtensions((e, m) -> e.beforePull(m, this, this.carnotzet), serviceModule);
-			DockerRegistry.pullImage(serviceModule, policy);
+			DockerRegistry.pullImage(serviceModule, policy, carnotzet.getDockerEngineClient());
 			invokeAllExtensions((e, m) -> e.afterPull(m, this, this.carnotzet), serviceModule);
 		}
 	}
 
 	@Override
 	public List<Container> getContainers() {
+		ContainerStateCache cache = containerStateCache;
+		return cache != null ? cache.getContainers() : loadContainers();
+	}
+
+	/**
+	 * Keep the state of the containers in memory, and only reload it when docker reports an event on a container of this instance
+	 * (or after maxStaleness, in case events are missed). null disables the cache, which is the default.<br>
+	 * The cache watches docker events in a separate process, it is stopped by clean(). Set null to stop it once the runtime is no longer
+	 * used without being cleaned.
+	 */
+	public void setContainerStateMaxStaleness(Duration maxStaleness) {
+		ContainerStateCache previous = containerStateCache;
+		containerStateMaxStaleness = maxStaleness;
+		if (maxStaleness == null) {
+			containerStateCache = null;
+		} else {
+			List<String> eventsCommand = Arrays.asList("docker", "events", "--filter", "label=carnotzet.instance.id=" + instanceId);
+			containerStateCache = new ContainerStateCache(this::loadContainers, eventsCommand, maxStaleness);
+		}
+		if (previous != null) {
+			previous.close();
+		}
+	}
+
+	// package-private for tests
+	ContainerStateCache restartContainerStateCache() {
+		Duration maxStaleness = containerStateMaxStaleness;
+		if (maxStaleness != null) {
+			setContainerStateMaxStaleness(maxStaleness);
+		}
+		return containerStateCache;
+	}
+
+	/**
+	 * Forces the next container lookup to query docker, when the container state cache is enabled
+	 */
+	public void refresh() {
+		ContainerStateCache cache = containerStateCache;
+		if (cache != null) {
+			cache.invalidate();
+		}
+	}
+
+	private List<Container> loadContainers() {
+		DockerEngineClient engine = carnotzet.getDockerEngineClient();
+		if (engine != null) {
+			return EngineContainers.list(engine, getDockerComposeProjectName());
+		}
 		String commandOutput = runCommandAndCaptureOutput(buildDockerComposeCommand("-p", getDockerComposeProjectName(),
 				"ps", "-q")).replaceAll(System.lineSeparator(), " ");
 		log.debug("docker-compose ps output : " + commandOutput);
@@ -549,16 +723,28 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 
 	@Override
 	public Container getContainer(String serviceName) {
+		ContainerStateCache cache = containerStateCache;
+		if (cache != null) {
+			return cache.getContainer(serviceName);
+		}
 		return getContainers().stream().filter(c -> c.getServiceName().equals(serviceName)).findFirst().orElse(null);
 	}
 
 	@Override
 	public List<Container> getContainers(String serviceName) {
+		ContainerStateCache cache = containerStateCache;
+		if (cache != null) {
+			return cache.getContainers(serviceName);
+		}
 		return getContainers().stream().filter(c -> c.getServiceName().equals(serviceName)).collect(toList());
 	}
 
 	@Override
 	public Container getContainer(String serviceName, int number) {
+		ContainerStateCache cache = containerStateCache;
+		if (cache != null) {
+			return cache.getContainer(serviceName, number);
+		}
 		return getContainers().stream().filter(c -> c.getServiceName().equals(serviceName) && c.getReplicaNumber() == number).findFirst()
 				.orElse(null);
 	}
@@ -572,6 +758,15 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 	@Override
 	public ExecResult exec(String serviceName, int timeout, TimeUnit timeoutUnit, String... command) {
 		Container container = getContainer(serviceName);
+		DockerEngineClient engine = carnotzet.getDockerEngineClient();
+		if (engine != null) {
+			try {
+				return engine.exec(container.getId(), timeout, timeoutUnit, command);
+			}
+			catch (RuntimeException e) {
+				throw new RuntimeException("Failed to execute " + Arrays.toString(command) + " in container [" + serviceName + "]", e);
+			}
+		}
 		List<String> fullCommand = new ArrayList<>(Arrays.asList("docker", "exec", container.getId()));
 		fullCommand.addAll(Arrays.asList(command));
 		try {
@@ -594,7 +789,13 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 	}
 
 	private int runCommand(String... command) {
-		return commandRunner.runCommand(carnotzet.getResourcesFolder().toFile(), command);
+		try {
+			return commandRunner.runCommand(carnotzet.getResourcesFolder().toFile(), command);
+		}
+		finally {
+			// commands change the state of the containers, do not wait for the corresponding events
+			refresh();
+		}
 	}
 
 	private String runCommandAndCaptureOutput(String... command) {
@@ -623,20 +824,12 @@ public class DockerComposeRuntime implements ContainerOrchestrationRuntime {
 		}
 	}
 
-	private final static Pattern PORT_PATTERN = Pattern.compile(".*?(\\d*\\/\\w*)");
-
-	private Set<String> getExposedPorts(String dockerImage, Map<String, String> props) {
+	private Set<String> getExposedPorts(Set<String> imagePorts, Map<String, String> props) {
 
 		Map<String, String> mapping = new HashMap<>();
 
 		// lower priority
-		pull(PullPolicy.IF_LOCAL_IMAGE_ABSENT);
-		String output = commandRunner.runCommandAndCaptureOutput("docker", "inspect", "--format={{ .Config.ExposedPorts }}", dockerImage);
-		Matcher m = PORT_PATTERN.matcher(output);
-
-		while (m.find()) {
-			mapping.put(m.group(1), null);
-		}
+		imagePorts.forEach(port -> mapping.put(port, null));
 
 		// static mappings defined in .properties file
 		String customPorts = props.get("exposed.ports");
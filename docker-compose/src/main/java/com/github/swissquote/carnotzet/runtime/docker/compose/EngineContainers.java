@@ -0,0 +1,87 @@
+package com.github.swissquote.carnotzet.runtime.docker.compose;
+
+import static java.util.stream.Collectors.toList;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.swissquote.carnotzet.core.docker.engine.DockerEngineClient;
+import com.github.swissquote.carnotzet.core.docker.engine.EngineContainer;
+import com.github.swissquote.carnotzet.core.runtime.api.Container;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Docker engine API counterparts of the docker CLI pipelines used by DockerComposeRuntime.
+ */
+@Slf4j
+final class EngineContainers {
+
+	private EngineContainers() {
+	}
+
+	/**
+	 * Same as "docker compose ps -q" followed by "docker inspect" on each container
+	 */
+	static List<Container> list(DockerEngineClient engine, String projectName) {
+		Map<String, String> labels = new HashMap<>();
+		labels.put("com.docker.compose.project", projectName);
+		labels.put("com.docker.compose.oneoff", "False");
+		return engine.listContainers(true, labels).stream()
+				.map(EngineContainers::toContainer)
+				.sorted(Comparator.comparing(Container::getServiceName).thenComparing(Container::getReplicaNumber))
+				.collect(toList());
+	}
+
+	private static Container toContainer(EngineContainer c) {
+		Map<String, String> labels = c.getLabels() == null ? Collections.emptyMap() : c.getLabels();
+		String number = labels.get("com.docker.compose.container-number");
+		StringBuilder ip = new StringBuilder();
+		if (c.getNetworkSettings() != null && c.getNetworkSettings().getNetworks() != null) {
+			c.getNetworkSettings().getNetworks().values().forEach(n -> ip.append(n.getIpAddress() == null ? "" : n.getIpAddress()));
+		}
+		return new Container(c.getId(), labels.get("com.docker.compose.service"), "running".equals(c.getState()),
+				number == null ? 1 : Integer.parseInt(number), ip.length() == 0 ? null : ip.toString());
+	}
+
+	/**
+	 * Same as "docker ps | grep $(hostname) | grep -v k8s_POD" : the running container carnotzet is executed in, if any
+	 *
+	 * @return null when not running inside a container
+	 */
+	static EngineContainer findOwnContainer(DockerEngineClient engine) {
+		String hostname;
+		try {
+			hostname = InetAddress.getLocalHost().getHostName();
+		}
+		catch (UnknownHostException e) {
+			log.debug("Cannot determine hostname", e);
+			return null;
+		}
+		for (EngineContainer c : engine.listContainers(false, Collections.emptyMap())) {
+			List<String> names = c.getNames() == null ? Collections.emptyList() : c.getNames();
+			if (names.stream().anyMatch(n -> n.contains("k8s_POD"))) {
+				continue;
+			}
+			if (c.getId().startsWith(hostname) || names.stream().anyMatch(n -> n.contains(hostname))) {
+				return c;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the networks of the container, except the default bridge
+	 */
+	static List<String> networkNames(EngineContainer c) {
+		if (c.getNetworkSettings() == null || c.getNetworkSettings().getNetworks() == null) {
+			return Collections.emptyList();
+		}
+		return c.getNetworkSettings().getNetworks().keySet().stream().filter(n -> !"bridge".equals(n)).collect(toList());
+	}
+}
@@ -0,0 +1,159 @@
+package com.github.swissquote.carnotzet.runtime.docker.compose;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.swissquote.carnotzet.core.CarnotzetModule;
+import com.github.swissquote.carnotzet.core.docker.engine.DockerEngineClient;
+import com.github.swissquote.carnotzet.core.docker.engine.EngineImage;
+import com.github.swissquote.carnotzet.core.runtime.CommandRunner;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Exposed ports of all the images of an environment, computed in a single pass before generating docker-compose.yml :
+ * images are inspected together, the missing ones are pulled concurrently and inspected again.
+ */
+@Slf4j
+final class ImageExposedPorts {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private ImageExposedPorts() {
+	}
+
+	/**
+	 * @param pullIfAbsent pulls the image of a module when it is not present on the docker host
+	 * @param engine       used instead of the docker CLI when not null
+	 * @return image name -> ports exposed by the image (ex: 8080/tcp)
+	 */
+	static Map<String, Set<String>> lookup(Collection<CarnotzetModule> modules, CommandRunner commandRunner, DockerEngineClient engine,
+										   Consumer<CarnotzetModule> pullIfAbsent) {
+		// one module per image, the pull policy only depends on the image
+		Map<String, CarnotzetModule> byImage = new LinkedHashMap<>();
+		for (CarnotzetModule module : modules) {
+			if (module.getImageName() != null) {
+				byImage.putIfAbsent(module.getImageName(), module);
+			}
+		}
+		if (byImage.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		int threads = Math.min(Runtime.getRuntime().availableProcessors(), byImage.size());
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			if (engine != null) {
+				return inParallel(byImage.keySet(), executor, image -> {
+					EngineImage inspected = engine.inspectImage(image);
+					if (inspected == null) {
+						pullIfAbsent.accept(byImage.get(image));
+						inspected = engine.inspectImage(image);
+					}
+					return inspected == null || inspected.getConfig() == null || inspected.getConfig().getExposedPorts() == null
+							? Collections.emptySet()
+							: inspected.getConfig().getExposedPorts().keySet();
+				});
+			}
+			List<String> images = new ArrayList<>(byImage.keySet());
+			Map<String, Set<String>> result = inspectAll(commandRunner, images);
+			if (result == null) {
+				// docker inspect fails as soon as one image is missing
+				log.debug("Some images are missing on the docker host, pulling them");
+				inParallel(images, executor, image -> {
+					pullIfAbsent.accept(byImage.get(image));
+					return Collections.emptySet();
+				});
+				result = inspectAll(commandRunner, images);
+			}
+			if (result == null) {
+				// report the failure of the first image that cannot be inspected
+				result = inParallel(images, executor, image -> inspect(commandRunner, Collections.singletonList(image)).get(0));
+			}
+			return result;
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * @return null if an image could not be inspected
+	 */
+	private static Map<String, Set<String>> inspectAll(CommandRunner commandRunner, List<String> images) {
+		List<Set<String>> ports;
+		try {
+			ports = inspect(commandRunner, images);
+		}
+		catch (RuntimeException e) {
+			log.debug("Batch inspection of images failed", e);
+			return null;
+		}
+		Map<String, Set<String>> result = new HashMap<>();
+		for (int i = 0; i < images.size(); i++) {
+			result.put(images.get(i), ports.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * A single docker inspect prints one line per image, in the order of the arguments
+	 */
+	private static List<Set<String>> inspect(CommandRunner commandRunner, List<String> images) {
+		List<String> command = new ArrayList<>(Arrays.asList("docker", "image", "inspect", "--format={{json .Config.ExposedPorts}}"));
+		command.addAll(images);
+		String[] lines = commandRunner.runCommandAndCaptureOutput(command.toArray(new String[0])).split("\\r?\\n");
+		if (lines.length != images.size()) {
+			throw new IllegalStateException("Expected one line per image in docker inspect output, got " + Arrays.asList(lines));
+		}
+		List<Set<String>> result = new ArrayList<>();
+		for (String line : lines) {
+			try {
+				JsonNode ports = MAPPER.readTree(line);
+				Set<String> exposed = new HashSet<>();
+				ports.fieldNames().forEachRemaining(exposed::add);
+				result.add(exposed);
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("Cannot parse exposed ports [" + line + "]", e);
+			}
+		}
+		return result;
+	}
+
+	private static Map<String, Set<String>> inParallel(Collection<String> images, ExecutorService executor,
+													   Function<String, Set<String>> task) {
+		Map<String, CompletableFuture<Set<String>>> futures = new LinkedHashMap<>();
+		for (String image : images) {
+			futures.put(image, CompletableFuture.supplyAsync(() -> task.apply(image), executor));
+		}
+		Map<String, Set<String>> result = new HashMap<>();
+		try {
+			futures.forEach((image, future) -> result.put(image, future.join()));
+		}
+		catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw e;
+		}
+		return result;
+	}
+}
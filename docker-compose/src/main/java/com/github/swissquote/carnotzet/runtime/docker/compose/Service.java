@@ -48,6 +48,10 @@ public class Service {
 	//CHECKSTYLE:OFF
 	private final Set<String> extra_hosts;
 	//CHECKSTYLE:ON
+	@JsonProperty
+	//CHECKSTYLE:OFF
+	private final Set<String> depends_on;
+	//CHECKSTYLE:ON
 
 	@JsonPOJOBuilder(withPrefix = "")
 	public static final class ServiceBuilder {
@@ -0,0 +1,58 @@
+package com.github.swissquote.carnotzet.runtime.docker.compose;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import com.github.swissquote.carnotzet.core.CarnotzetModule;
+
+/**
+ * Translates carnotzet module dependencies into docker compose depends_on edges.
+ */
+final class ServiceDependencies {
+
+	private ServiceDependencies() {
+	}
+
+	/**
+	 * Modules that are not services (no image, or not started) are transparent : a service depends on the services reachable through them.
+	 *
+	 * @param modules   all the modules of the environment
+	 * @param isService modules that will be started as docker compose services
+	 * @return service id -> service ids it depends on, sorted to keep the generated file stable
+	 */
+	static Map<String, Set<String>> compute(List<CarnotzetModule> modules, Predicate<CarnotzetModule> isService) {
+		Map<String, CarnotzetModule> byName = new HashMap<>();
+		for (CarnotzetModule module : modules) {
+			byName.put(module.getName(), module);
+		}
+		Map<String, Set<String>> result = new HashMap<>();
+		for (CarnotzetModule module : modules) {
+			if (!isService.test(module)) {
+				continue;
+			}
+			Set<String> dependsOn = new TreeSet<>();
+			Set<String> visited = new HashSet<>();
+			Deque<String> toVisit = new ArrayDeque<>(module.getDependencies());
+			while (!toVisit.isEmpty()) {
+				CarnotzetModule dependency = byName.get(toVisit.pop());
+				if (dependency == null || dependency == module || !visited.add(dependency.getName())) {
+					continue;
+				}
+				if (isService.test(dependency)) {
+					dependsOn.add(dependency.getServiceId());
+				} else {
+					toVisit.addAll(dependency.getDependencies());
+				}
+			}
+			result.put(module.getServiceId(), dependsOn);
+		}
+		return result;
+	}
+}
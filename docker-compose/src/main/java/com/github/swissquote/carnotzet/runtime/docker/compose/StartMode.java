@@ -0,0 +1,22 @@
+package com.github.swissquote.carnotzet.runtime.docker.compose;
+
+/**
+ * How DockerComposeRuntime.start() brings the services up.
+ */
+public enum StartMode {
+	/**
+	 * One "docker compose up" per service, in topological order.
+	 */
+	SEQUENTIAL,
+	/**
+	 * Services are grouped into waves by dependency depth, each wave is started with a single "docker compose up".
+	 * Services of the same wave do not depend on each other, so docker compose starts them concurrently.
+	 * Modules added by extensions have no known dependencies, they are started in a last wave after all the other services.
+	 */
+	WAVES,
+	/**
+	 * The generated docker-compose.yml declares depends_on edges following the carnotzet dependencies, and all the services are started
+	 * with a single "docker compose up", letting docker compose parallelize the creation of the containers.
+	 */
+	SINGLE
+}
@@ -0,0 +1,68 @@
+package com.github.swissquote.carnotzet.runtime.docker.compose;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.swissquote.carnotzet.core.CarnotzetModule;
+
+/**
+ * Groups modules into waves by dependency depth : a module only depends on modules of earlier waves.<br>
+ * Modules added by extensions were not resolved from maven, their dependencies are unknown. They are started in a last wave of
+ * their own, after every resolved module.
+ */
+final class StartWaves {
+
+	private StartWaves() {
+	}
+
+	/**
+	 * @param modules in topological order (dependencies first), as returned by Carnotzet.getModules()
+	 * @return the waves, modules keep their relative order inside a wave
+	 */
+	static List<List<CarnotzetModule>> compute(List<CarnotzetModule> modules) {
+		Map<String, Integer> depths = new HashMap<>();
+		List<List<CarnotzetModule>> waves = new ArrayList<>();
+		List<CarnotzetModule> unresolved = new ArrayList<>();
+		for (CarnotzetModule module : modules) {
+			if (module.getJarPath() == null) {
+				unresolved.add(module);
+				continue;
+			}
+			int depth = 0;
+			for (String dependency : module.getDependencies()) {
+				// dependencies that are not sorted before the module (unknown modules or ignored cycles) do not constrain it
+				Integer dependencyDepth = depths.get(dependency);
+				if (dependencyDepth != null) {
+					depth = Math.max(depth, dependencyDepth + 1);
+				}
+			}
+			depths.put(module.getName(), depth);
+			while (waves.size() <= depth) {
+				waves.add(new ArrayList<>());
+			}
+			waves.get(depth).add(module);
+		}
+		waves.removeIf(List::isEmpty);
+		if (!unresolved.isEmpty()) {
+			waves.add(unresolved);
+		}
+		return waves;
+	}
+
+	/**
+	 * Arguments of "docker compose up -d" for a whole wave : the scale of each service followed by the services.
+	 */
+	static List<String> upArguments(List<CarnotzetModule> wave) {
+		List<String> args = new ArrayList<>();
+		for (CarnotzetModule module : wave) {
+			args.add("--scale");
+			args.add(module.getServiceId() + "=" + module.getReplicas());
+		}
+		for (CarnotzetModule module : wave) {
+			args.add(module.getServiceId());
+		}
+		return args;
+	}
+}
@@ -0,0 +1,60 @@
+package com.github.swissquote.carnotzet.runtime.docker.compose;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.swissquote.carnotzet.core.CarnotzetModule;
+
+public class ComposeInputsTest {
+
+	private static CarnotzetModule module(String... keys) {
+		Map<String, String> env = new LinkedHashMap<>();
+		Set<String> volumes = new LinkedHashSet<>();
+		for (String key : keys) {
+			env.put(key, "value-" + key);
+			volumes.add("/" + key + ":/" + key);
+		}
+		return CarnotzetModule.builder().name("app").imageName("app:1").env(env).dockerVolumes(volumes).build();
+	}
+
+	private static Map<String, Set<String>> ports(String... imageAndPorts) {
+		Map<String, Set<String>> ports = new LinkedHashMap<>();
+		for (String imageAndPort : imageAndPorts) {
+			String[] parts = imageAndPort.split("=");
+			ports.computeIfAbsent(parts[0], k -> new LinkedHashSet<>()).add(parts[1]);
+		}
+		return ports;
+	}
+
+	private static String hash(CarnotzetModule module, String networkName, String hostname, Map<String, Set<String>> ports) {
+		List<Object> settings = Arrays.asList("instance", true, networkName, hostname, ports);
+		return ComposeInputs.hash(Collections.singletonList(module), settings);
+	}
+
+	@Test
+	public void hash_does_not_depend_on_map_and_set_ordering() {
+		assertEquals(hash(module("a", "b", "c"), "net", "host", ports("db=5432/tcp", "app=8080/tcp", "app=8443/tcp")),
+				hash(module("c", "a", "b"), "net", "host", ports("app=8443/tcp", "db=5432/tcp", "app=8080/tcp")));
+	}
+
+	@Test
+	public void hash_changes_with_the_resolved_inputs() {
+		String reference = hash(module("a"), "net", "host", ports("app=8080/tcp"));
+
+		assertNotEquals(reference, hash(module("b"), "net", "host", ports("app=8080/tcp")));
+		assertNotEquals(reference, hash(module("a"), "external-net", "host", ports("app=8080/tcp")));
+		assertNotEquals(reference, hash(module("a"), "net", "other-host", ports("app=8080/tcp")));
+		assertNotEquals(reference, hash(module("a"), "net", "host", ports("app=8080/tcp", "app=9090/tcp")));
+		assertEquals(reference, hash(module("a"), "net", "host", ports("app=8080/tcp")));
+	}
+}
@@ -0,0 +1,89 @@
+package com.github.swissquote.carnotzet.runtime.docker.compose;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import com.github.swissquote.carnotzet.core.runtime.api.Container;
+
+public class ContainerStateCacheTest {
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private final Supplier<List<Container>> loader = () -> {
+		loads.incrementAndGet();
+		return Arrays.asList(new Container("1", "db", true, 1, null), new Container("2", "app", true, 1, null),
+				new Container("3", "app", true, 2, null));
+	};
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean()) {
+			assertTrue("Timed out", System.nanoTime() < deadline);
+			Thread.sleep(20);
+		}
+	}
+
+	@Test
+	public void containers_are_loaded_once_until_invalidated() {
+		ContainerStateCache cache = new ContainerStateCache(loader, Collections.singletonList("/does/not/exist"), Duration.ofHours(1));
+
+		assertEquals(3, cache.getContainers().size());
+		assertEquals(2, cache.getContainers("app").size());
+		assertEquals("3", cache.getContainer("app", 2).getId());
+		assertEquals("1", cache.getContainer("db").getId());
+		assertEquals(1, loads.get());
+
+		cache.invalidate();
+		cache.getContainers();
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void containers_are_reloaded_after_the_maximum_staleness() {
+		ContainerStateCache cache = new ContainerStateCache(loader, Collections.singletonList("/does/not/exist"), Duration.ZERO);
+
+		cache.getContainers();
+		cache.getContainers();
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void events_invalidate_the_containers() throws InterruptedException {
+		ContainerStateCache cache = new ContainerStateCache(loader, Arrays.asList("sh", "-c", "sleep 1; echo event; exec sleep 60"),
+				Duration.ofHours(1));
+		try {
+			cache.getContainers();
+			assertEquals(1, loads.get());
+			await(() -> cache.getContainers() != null && loads.get() == 2);
+		}
+		finally {
+			cache.close();
+		}
+		await(() -> !cache.isWatchingEvents());
+	}
+
+	@Test
+	public void events_are_not_watched_again_when_the_command_exits_immediately() throws InterruptedException {
+		ContainerStateCache cache = new ContainerStateCache(loader, Collections.singletonList("true"), Duration.ofHours(1));
+
+		cache.getContainers();
+		await(() -> !cache.isWatchingEvents());
+		int loaded = loads.get();
+		cache.getContainers();
+		cache.getContainers();
+		assertFalse(cache.isWatchingEvents());
+		assertEquals(loaded, loads.get());
+	}
+}
@@ -0,0 +1,95 @@
+package com.github.swissquote.carnotzet.runtime.docker.compose;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.swissquote.carnotzet.core.Carnotzet;
+import com.github.swissquote.carnotzet.core.CarnotzetConfig;
+import com.github.swissquote.carnotzet.core.maven.CarnotzetModuleCoordinates;
+import com.github.swissquote.carnotzet.core.runtime.CommandRunner;
+
+public class DockerComposeRuntimeTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private final CommandRunner noDocker = new CommandRunner() {
+		@Override
+		public int runCommand(String... command) {
+			return 1;
+		}
+
+		@Override
+		public int runCommand(Boolean inheritIo, String... command) {
+			return 1;
+		}
+
+		@Override
+		public int runCommand(File directoryForRunning, String... command) {
+			return 1;
+		}
+
+		@Override
+		public int runCommand(Boolean inheritIo, File directoryForRunning, String... command) {
+			return 1;
+		}
+
+		@Override
+		public String runCommandAndCaptureOutput(String... command) {
+			return "";
+		}
+
+		@Override
+		public String runCommandAndCaptureOutput(File directoryForRunning, String... command) {
+			return "";
+		}
+	};
+
+	private DockerComposeRuntime runtime() throws IOException {
+		Carnotzet carnotzet = new Carnotzet(CarnotzetConfig.builder()
+				.topLevelModuleId(new CarnotzetModuleCoordinates("com.test", "app-carnotzet", "1"))
+				.resourcesPath(temp.newFolder("resources").toPath())
+				.build());
+		return new DockerComposeRuntime(carnotzet, "test", noDocker, false, Collections.emptyList());
+	}
+
+	@Test
+	public void cleaning_stops_watching_docker_events() throws IOException {
+		DockerComposeRuntime runtime = runtime();
+		runtime.setContainerStateMaxStaleness(Duration.ofHours(1));
+
+		ContainerStateCache watched = runtime.restartContainerStateCache();
+		ContainerStateCache next = runtime.restartContainerStateCache();
+
+		assertTrue(watched.isClosed());
+		// the cache stays enabled, the events of the next sandbox are watched once containers are looked up
+		assertNotSame(watched, next);
+		assertFalse(next.isClosed());
+		assertFalse(next.isWatchingEvents());
+	}
+
+	@Test
+	public void cleaning_without_container_state_cache() throws IOException {
+		DockerComposeRuntime runtime = runtime();
+
+		assertNull(runtime.restartContainerStateCache());
+
+		runtime.setContainerStateMaxStaleness(Duration.ofHours(1));
+		ContainerStateCache disabled = runtime.restartContainerStateCache();
+		runtime.setContainerStateMaxStaleness(null);
+		assertTrue(disabled.isClosed());
+		assertNull(runtime.restartContainerStateCache());
+	}
+
+}
@@ -0,0 +1,215 @@
+package com.github.swissquote.carnotzet.runtime.docker.compose;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+import com.github.swissquote.carnotzet.core.CarnotzetModule;
+import com.github.swissquote.carnotzet.core.docker.engine.DockerEngineClient;
+import com.github.swissquote.carnotzet.core.docker.engine.EngineContainer;
+import com.github.swissquote.carnotzet.core.docker.engine.EngineImage;
+import com.github.swissquote.carnotzet.core.docker.registry.ContainerImageConfig;
+import com.github.swissquote.carnotzet.core.docker.registry.EmptyObject;
+import com.github.swissquote.carnotzet.core.runtime.CommandRunner;
+import com.github.swissquote.carnotzet.core.runtime.api.ExecResult;
+
+public class ImageExposedPortsTest {
+
+	/**
+	 * Images present on the docker host -> output of "docker inspect --format={{json .Config.ExposedPorts}}" for the image
+	 */
+	private final Map<String, String> host = new ConcurrentHashMap<>();
+
+	/**
+	 * Images that can be pulled -> their inspect output once pulled
+	 */
+	private final Map<String, String> registry = new HashMap<>();
+
+	private final List<CarnotzetModule> modules = Arrays.asList(
+			module("app1", "app:1"),
+			module("app2", "app:1"),
+			module("redis", "redis:6"),
+			module("config", null));
+
+	private final List<List<String>> inspections = new CopyOnWriteArrayList<>();
+
+	private final List<String> pulls = new CopyOnWriteArrayList<>();
+
+	private final Consumer<CarnotzetModule> pull = module -> {
+		pulls.add(module.getImageName());
+		String ports = registry.get(module.getImageName());
+		if (ports != null) {
+			host.put(module.getImageName(), ports);
+		}
+	};
+
+	private final CommandRunner docker = new CommandRunner() {
+		@Override
+		public int runCommand(String... command) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int runCommand(Boolean inheritIo, String... command) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int runCommand(File directoryForRunning, String... command) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int runCommand(Boolean inheritIo, File directoryForRunning, String... command) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String runCommandAndCaptureOutput(String... command) {
+			List<String> images = Arrays.asList(command).subList(4, command.length);
+			inspections.add(images);
+			StringBuilder output = new StringBuilder();
+			for (String image : images) {
+				if (!host.containsKey(image)) {
+					throw new RuntimeException("Error: No such image: " + image);
+				}
+				output.append(host.get(image)).append('\n');
+			}
+			return output.toString();
+		}
+
+		@Override
+		public String runCommandAndCaptureOutput(File directoryForRunning, String... command) {
+			return runCommandAndCaptureOutput(command);
+		}
+	};
+
+	private final DockerEngineClient engine = new DockerEngineClient() {
+		@Override
+		public List<EngineContainer> listContainers(boolean all, Map<String, String> labels) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public EngineImage inspectImage(String image) {
+			inspections.add(Collections.singletonList(image));
+			String ports = host.get(image);
+			if (ports == null) {
+				return null;
+			}
+			EngineImage inspected = new EngineImage();
+			inspected.setConfig(new ContainerImageConfig());
+			if (!"null".equals(ports)) {
+				Map<String, EmptyObject> exposed = new HashMap<>();
+				for (String port : ports.replaceAll("[{}\"]", "").split(",")) {
+					exposed.put(port.replace(":", ""), new EmptyObject());
+				}
+				inspected.getConfig().setExposedPorts(exposed);
+			}
+			return inspected;
+		}
+
+		@Override
+		public ExecResult exec(String containerId, long timeout, TimeUnit timeoutUnit, String... command) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void connectToNetwork(String network, String containerId) {
+			throw new UnsupportedOperationException();
+		}
+	};
+
+	private static CarnotzetModule module(String name, String image) {
+		return CarnotzetModule.builder().name(name).imageName(image).build();
+	}
+
+	@Test
+	public void all_images_are_inspected_with_a_single_command() {
+		host.put("app:1", "{\"8080/tcp\":{},\"8443/tcp\":{}}");
+		host.put("redis:6", "null");
+
+		Map<String, Set<String>> ports = ImageExposedPorts.lookup(modules, docker, null, pull);
+
+		assertEquals(set("8080/tcp", "8443/tcp"), ports.get("app:1"));
+		assertEquals(Collections.emptySet(), ports.get("redis:6"));
+		assertEquals(2, ports.size());
+		assertEquals(Collections.singletonList(Arrays.asList("app:1", "redis:6")), inspections);
+		assertTrue(pulls.isEmpty());
+	}
+
+	@Test
+	public void missing_images_are_pulled_then_inspected_again() {
+		host.put("app:1", "{\"8080/tcp\":{}}");
+		registry.put("redis:6", "{\"6379/tcp\":{}}");
+
+		Map<String, Set<String>> ports = ImageExposedPorts.lookup(modules, docker, null, pull);
+
+		assertEquals(set("8080/tcp"), ports.get("app:1"));
+		assertEquals(set("6379/tcp"), ports.get("redis:6"));
+		assertEquals(2, inspections.size());
+		// the pull policy decides whether a present image is pulled, each image is given once
+		assertEquals(set("app:1", "redis:6"), new HashSet<>(pulls));
+		assertEquals(2, pulls.size());
+	}
+
+	@Test
+	public void image_that_cannot_be_inspected_is_reported() {
+		host.put("app:1", "{\"8080/tcp\":{}}");
+
+		try {
+			ImageExposedPorts.lookup(modules, docker, null, pull);
+			fail("missing image must be reported");
+		}
+		catch (RuntimeException e) {
+			assertEquals("Error: No such image: redis:6", e.getMessage());
+		}
+		// batch, batch after pull, then one inspection per image
+		List<List<String>> perImage = new ArrayList<>(inspections.subList(2, inspections.size()));
+		assertEquals(set(Collections.singletonList("app:1"), Collections.singletonList("redis:6")), new HashSet<>(perImage));
+	}
+
+	@Test
+	public void docker_engine_pulls_only_missing_images() {
+		host.put("app:1", "{\"8080/tcp\":{}}");
+		host.put("redis:6", "null");
+		registry.put("nginx:1", "{\"80/tcp\":{}}");
+		List<CarnotzetModule> withNginx = new ArrayList<>(modules);
+		withNginx.add(module("nginx", "nginx:1"));
+
+		Map<String, Set<String>> ports = ImageExposedPorts.lookup(withNginx, docker, engine, pull);
+
+		assertEquals(set("8080/tcp"), ports.get("app:1"));
+		assertEquals(Collections.emptySet(), ports.get("redis:6"));
+		assertEquals(set("80/tcp"), ports.get("nginx:1"));
+		assertEquals(Collections.singletonList("nginx:1"), pulls);
+	}
+
+	@Test
+	public void no_image_no_inspection() {
+		assertEquals(Collections.emptyMap(), ImageExposedPorts.lookup(Collections.singletonList(module("config", null)), docker, null, pull));
+		assertTrue(inspections.isEmpty());
+	}
+
+	@SafeVarargs
+	private static <T> Set<T> set(T... values) {
+		return new HashSet<>(Arrays.asList(values));
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.github.swissquote.carnotzet.runtime.docker.compose;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.swissquote.carnotzet.core.CarnotzetModule;
+
+public class ServiceDependenciesTest {
+
+	private static CarnotzetModule service(String name, String... dependencies) {
+		return CarnotzetModule.builder()
+				.name(name)
+				.serviceId(name + "-svc")
+				.imageName(name + ":1")
+				.dependencies(new HashSet<>(Arrays.asList(dependencies)))
+				.build();
+	}
+
+	private static CarnotzetModule withoutImage(String name, String... dependencies) {
+		return service(name, dependencies).toBuilder().imageName(null).build();
+	}
+
+	private static CarnotzetModule notStartedByDefault(String name, String... dependencies) {
+		Map<String, String> properties = new HashMap<>();
+		properties.put("start.by.default", " FALSE ");
+		return service(name, dependencies).toBuilder().properties(properties).build();
+	}
+
+	private static Map<String, Set<String>> compute(CarnotzetModule... modules) {
+		return ServiceDependencies.compute(Arrays.asList(modules), DockerComposeRuntime::shouldStartByDefault);
+	}
+
+	private static Set<String> set(String... values) {
+		return new HashSet<>(Arrays.asList(values));
+	}
+
+	@Test
+	public void direct_dependencies_are_translated_to_service_ids() {
+		Map<String, Set<String>> dependsOn = compute(service("db"), service("app", "db"));
+
+		assertEquals(Collections.emptySet(), dependsOn.get("db-svc"));
+		assertEquals(set("db-svc"), dependsOn.get("app-svc"));
+	}
+
+	@Test
+	public void modules_without_image_are_skipped_and_transparent() {
+		Map<String, Set<String>> dependsOn = compute(service("db"), withoutImage("config", "db"), service("app", "config"));
+
+		assertFalse(dependsOn.containsKey("config-svc"));
+		assertEquals(set("db-svc"), dependsOn.get("app-svc"));
+	}
+
+	@Test
+	public void modules_not_started_by_default_are_skipped_and_transparent() {
+		Map<String, Set<String>> dependsOn = compute(service("db"), notStartedByDefault("mock", "db"), service("app", "mock"));
+
+		assertFalse(dependsOn.containsKey("mock-svc"));
+		assertEquals(set("db-svc"), dependsOn.get("app-svc"));
+	}
+
+	@Test
+	public void self_dependencies_and_cycles_terminate() {
+		Map<String, Set<String>> dependsOn = compute(
+				service("self", "self"),
+				service("a", "hidden"),
+				withoutImage("hidden", "b"),
+				withoutImage("b", "hidden", "a"));
+
+		assertEquals(Collections.emptySet(), dependsOn.get("self-svc"));
+		// "a" reaches itself through modules without image, it must not depend on itself
+		assertEquals(Collections.emptySet(), dependsOn.get("a-svc"));
+	}
+
+	@Test
+	public void unknown_dependencies_are_ignored() {
+		Map<String, Set<String>> dependsOn = compute(service("app", "not-a-module"));
+
+		assertEquals(Collections.emptySet(), dependsOn.get("app-svc"));
+	}
+
+	@Test
+	public void dependencies_are_sorted() {
+		Map<String, Set<String>> dependsOn = compute(service("c"), service("a"), service("b"), service("app", "c", "b", "a"));
+
+		List<String> expected = Arrays.asList("a-svc", "b-svc", "c-svc");
+		assertEquals(expected, Arrays.asList(dependsOn.get("app-svc").toArray()));
+	}
+
+}
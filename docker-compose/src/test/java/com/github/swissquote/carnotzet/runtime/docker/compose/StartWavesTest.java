@@ -0,0 +1,88 @@
+package com.github.swissquote.carnotzet.runtime.docker.compose;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.swissquote.carnotzet.core.CarnotzetModule;
+
+public class StartWavesTest {
+
+	private static CarnotzetModule module(String name, String... dependencies) {
+		return CarnotzetModule.builder()
+				.name(name)
+				.serviceId(name)
+				.jarPath(Paths.get(name + ".jar"))
+				.dependencies(new LinkedHashSet<>(Arrays.asList(dependencies)))
+				.build();
+	}
+
+	private static List<List<String>> names(List<List<CarnotzetModule>> waves) {
+		return waves.stream().map(wave -> wave.stream().map(CarnotzetModule::getName).collect(toList())).collect(toList());
+	}
+
+	@Test
+	public void modules_are_grouped_by_dependency_depth() {
+		List<CarnotzetModule> modules = Arrays.asList(
+				module("db"),
+				module("cache"),
+				module("backend", "db", "cache"),
+				module("worker", "db"),
+				module("frontend", "backend"));
+
+		List<List<CarnotzetModule>> waves = StartWaves.compute(modules);
+
+		assertEquals(Arrays.asList(
+				Arrays.asList("db", "cache"),
+				Arrays.asList("backend", "worker"),
+				Collections.singletonList("frontend")), names(waves));
+	}
+
+	@Test
+	public void unknown_and_cyclic_dependencies_do_not_constrain_a_module() {
+		// "b" depends on "a" which is sorted after it, as the topological sort does when cycles are ignored
+		List<CarnotzetModule> modules = Arrays.asList(
+				module("b", "a"),
+				module("a", "b"),
+				module("c", "not-a-module"));
+
+		List<List<CarnotzetModule>> waves = StartWaves.compute(modules);
+
+		assertEquals(Arrays.asList(Arrays.asList("b", "c"), Collections.singletonList("a")), names(waves));
+	}
+
+	@Test
+	public void modules_added_by_extensions_start_in_the_last_wave() {
+		CarnotzetModule added = CarnotzetModule.builder().name("added").serviceId("added").build();
+		List<CarnotzetModule> modules = Arrays.asList(added, module("db"), module("app", "db"));
+
+		List<List<CarnotzetModule>> waves = StartWaves.compute(modules);
+
+		assertEquals(Arrays.asList(
+				Collections.singletonList("db"),
+				Collections.singletonList("app"),
+				Collections.singletonList("added")), names(waves));
+	}
+
+	@Test
+	public void empty_modules() {
+		assertEquals(Collections.emptyList(), StartWaves.compute(Collections.emptyList()));
+	}
+
+	@Test
+	public void up_arguments_scale_every_service_of_the_wave() {
+		CarnotzetModule scaled = module("worker").toBuilder().serviceId("worker-svc").replicas(3).build();
+
+		List<String> args = StartWaves.upArguments(Arrays.asList(module("db"), scaled));
+
+		assertEquals(Arrays.asList("--scale", "db=1", "--scale", "worker-svc=3", "db", "worker-svc"), args);
+	}
+
+}
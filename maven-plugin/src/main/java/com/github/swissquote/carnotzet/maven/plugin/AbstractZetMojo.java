@@ -25,6 +25,7 @@ import com.github.swissquote.carnotzet.core.Carnotzet;
 import com.github.swissquote.carnotzet.core.CarnotzetConfig;
 import com.github.swissquote.carnotzet.core.CarnotzetExtension;
 import com.github.swissquote.carnotzet.core.maven.CarnotzetModuleCoordinates;
+import com.github.swissquote.carnotzet.core.maven.ResourcesCopyStrategy;
 import com.github.swissquote.carnotzet.core.runtime.DefaultCommandRunner;
 import com.github.swissquote.carnotzet.core.runtime.api.ContainerOrchestrationRuntime;
 import com.github.swissquote.carnotzet.core.runtime.api.ContainerOrchestrationRuntimeExtension;
@@ -35,6 +36,7 @@ import com.github.swissquote.carnotzet.maven.plugin.spi.CarnotzetExtensionsFacto
 import com.github.swissquote.carnotzet.maven.plugin.spi.ContainerOrchestrationRuntimeExtensionsFactory;
 import com.github.swissquote.carnotzet.maven.plugin.spi.ExtensionFactory;
 import com.github.swissquote.carnotzet.runtime.docker.compose.DockerComposeRuntime;
+import com.github.swissquote.carnotzet.runtime.docker.compose.StartMode;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import lombok.Getter;
@@ -91,6 +93,58 @@ public abstract class AbstractZetMojo extends AbstractMojo {
 	@Getter
 	private Boolean bindLocalPorts;
 
+	@Parameter(property = "resolveDependenciesInProcess")
+	@Getter
+	private Boolean resolveDependenciesInProcess;
+
+	@Parameter(property = "cacheDependencyTrees")
+	@Getter
+	private Boolean cacheDependencyTrees;
+
+	@Parameter(property = "parallelResourceExtraction")
+	@Getter
+	private Boolean parallelResourceExtraction;
+
+	@Parameter(property = "incrementalResourceExtraction")
+	@Getter
+	private Boolean incrementalResourceExtraction;
+
+	@Parameter(property = "incrementalResourceResolution")
+	@Getter
+	private Boolean incrementalResourceResolution;
+
+	@Parameter(property = "resourcesCopyStrategy")
+	@Getter
+	private ResourcesCopyStrategy resourcesCopyStrategy;
+
+	@Parameter(property = "resourcesIncludes")
+	@Getter
+	private List<String> resourcesIncludes;
+
+	@Parameter(property = "resourcesExcludes")
+	@Getter
+	private List<String> resourcesExcludes;
+
+	@Parameter(property = "virtualResources")
+	@Getter
+	private Boolean virtualResources;
+
+	@Parameter(property = "parallelModuleConfiguration")
+	@Getter
+	private Boolean parallelModuleConfiguration;
+
+	@Parameter(property = "dockerEngineApi")
+	@Getter
+	private Boolean dockerEngineApi;
+
+	@Parameter(property = "pullParallelism")
+	@Getter
+	private Integer pullParallelism;
+
+	@Parameter(property = "startMode")
+	@Getter
+	private StartMode startMode;
+
 	@Getter
 	@Setter
 	private Carnotzet carnotzet;
@@ -172,6 +226,17 @@ public abstract class AbstractZetMojo extends AbstractMojo {
 				.useExternalNetwork(useExternalNetwork)
 				.externalNetworkName(externalNetworkName)
 				.supportLegacyDnsNames(supportLegacyDnsNames)
+				.resolveDependenciesInProcess(resolveDependenciesInProcess)
+				.cacheDependencyTrees(cacheDependencyTrees)
+				.parallelResourceExtraction(parallelResourceExtraction)
+				.incrementalResourceExtraction(incrementalResourceExtraction)
+				.incrementalResourceResolution(incrementalResourceResolution)
+				.resourcesCopyStrategy(resourcesCopyStrategy)
+				.resourcesIncludes(resourcesIncludes)
+				.resourcesExcludes(resourcesExcludes)
+				.virtualResources(virtualResources)
+				.parallelModuleConfiguration(parallelModuleConfiguration)
+				.dockerEngineApi(dockerEngineApi)
 				.extensions(extensions)
 				.build();
 
@@ -180,7 +245,15 @@ public abstract class AbstractZetMojo extends AbstractMojo {
 			bindLocalPorts = !IS_OS_LINUX;
 		}
 
-		runtime = new DockerComposeRuntime(carnotzet, instanceId, DefaultCommandRunner.INSTANCE, bindLocalPorts, runtimeExtensions);
+		DockerComposeRuntime dockerComposeRuntime =
+				new DockerComposeRuntime(carnotzet, instanceId, DefaultCommandRunner.INSTANCE, bindLocalPorts, runtimeExtensions);
+		if (startMode != null) {
+			dockerComposeRuntime.setStartMode(startMode);
+		}
+		if (pullParallelism != null) {
+			dockerComposeRuntime.setPullParallelism(pullParallelism);
+		}
+		runtime = dockerComposeRuntime;
 
 		executeInternal();
 